@@ -0,0 +1,44 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Encoders;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import pl.skowrxn.springecommerce.SpringEcommerceApplication;
+
+import java.util.Map;
+
+/**
+ * Starts the full application against a named in-memory H2 database, for benchmarks that go through
+ * the service layer.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String database) {
+        Map<String, String> properties = Map.ofEntries(
+                Map.entry("spring.datasource.url", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1"),
+                Map.entry("spring.datasource.driver-class-name", "org.h2.Driver"),
+                Map.entry("spring.datasource.username", "sa"),
+                Map.entry("spring.datasource.password", ""),
+                Map.entry("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect"),
+                Map.entry("spring.jpa.hibernate.ddl-auto", "create-drop"),
+                Map.entry("spring.app.jwtSecret", Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded())),
+                Map.entry("spring.app.jwtExpirationMs", "3600000"),
+                Map.entry("spring.app.jwtCookieName", "JWT-TOKEN"),
+                Map.entry("spring.app.password.strength", "10"),
+                Map.entry("server.port", "0"),
+                Map.entry("logging.level.root", "WARN"),
+                Map.entry("logging.level.org.springframework.web", "WARN"),
+                Map.entry("logging.level.org.springframework.security", "WARN"),
+                Map.entry("logging.level.pl.skowrxn.springecommerce", "WARN"));
+        // Passed as arguments, default properties would lose to the placeholders in application.properties
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(SpringEcommerceApplication.class).run(args);
+    }
+
+}
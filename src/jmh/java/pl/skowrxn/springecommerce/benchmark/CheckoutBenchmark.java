@@ -0,0 +1,116 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import pl.skowrxn.springecommerce.dto.CartOperationDTO;
+import pl.skowrxn.springecommerce.dto.OrderDTO;
+import pl.skowrxn.springecommerce.dto.OrderRequestDTO;
+import pl.skowrxn.springecommerce.entity.Address;
+import pl.skowrxn.springecommerce.entity.Category;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.repository.AddressRepository;
+import pl.skowrxn.springecommerce.repository.CategoryRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
+import pl.skowrxn.springecommerce.service.CartService;
+import pl.skowrxn.springecommerce.service.OrderService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code placeNewOrder} for a cart of {@code cartSize} distinct products, through the full application context on
+ * an in-memory H2 database. Checkout empties the cart, so it is filled again before every invocation with one
+ * cart batch per 100 products; the refill is not measured. The time per checkout should stay flat across sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutBenchmark {
+
+    private static final int STOCK = 1_000_000_000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1", "20", "100"})
+    public int cartSize;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private OrderService orderService;
+    private Long buyerId;
+    private OrderRequestDTO orderRequest;
+    private List<List<CartOperationDTO>> refill;
+
+    @Setup
+    public void setUp() {
+        this.context = BenchmarkApplication.start("checkout-" + this.cartSize);
+        this.cartService = this.context.getBean(CartService.class);
+        this.orderService = this.context.getBean(OrderService.class);
+
+        UserRepository userRepository = this.context.getBean(UserRepository.class);
+        User seller = userRepository.save(new User("bench-seller", "seller@benchmark.test", "{noop}"));
+        User buyer = userRepository.save(new User("bench-buyer", "buyer@benchmark.test", "{noop}"));
+        this.buyerId = buyer.getId();
+
+        Category category = this.context.getBean(CategoryRepository.class).save(new Category(null, "Benchmarks"));
+        ProductRepository productRepository = this.context.getBean(ProductRepository.class);
+        List<CartOperationDTO> operations = new ArrayList<>();
+        for (int i = 0; i < this.cartSize; i++) {
+            Product product = new Product();
+            product.setName("Benchmark product " + i);
+            product.setStockQuantity(STOCK);
+            product.setPrice(10.0);
+            product.setRegularPrice(10.0);
+            product.setCategory(category);
+            product.setUser(seller);
+            Long productId = productRepository.save(product).getId();
+            operations.add(new CartOperationDTO(CartOperationDTO.Type.ADD, productId, null, 1));
+        }
+        this.refill = new ArrayList<>();
+        for (int from = 0; from < operations.size(); from += BATCH_SIZE) {
+            this.refill.add(operations.subList(from, Math.min(from + BATCH_SIZE, operations.size())));
+        }
+
+        Address address = new Address();
+        address.setUser(buyer);
+        address.setStreet("Benchmark Street 1");
+        address.setCity("Warsaw");
+        address.setProvince("Mazowieckie");
+        address.setCountry("Poland");
+        address.setPostalCode("00-001");
+        address.setPhoneNumber("123456789");
+        address = this.context.getBean(AddressRepository.class).save(address);
+        this.orderRequest = new OrderRequestDTO(address.getId(), "Card");
+
+        // JMH may run the benchmark on another thread than the setup
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        UserDetailsImpl userDetails = UserDetailsImpl.build(buyer);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        this.refill.forEach(this.cartService::applyBatch);
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        this.context.close();
+    }
+
+    @Benchmark
+    public OrderDTO placeNewOrder() {
+        return this.orderService.placeNewOrder(this.orderRequest, this.buyerId);
+    }
+
+}
@@ -0,0 +1,91 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import pl.skowrxn.springecommerce.dto.ProductDTO;
+import pl.skowrxn.springecommerce.exception.GlobalExceptionHandler;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
+import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an exception into the serialized error body, as {@link GlobalExceptionHandler}
+ * and the message converter do for every failed request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler exceptionHandler;
+    private ObjectMapper objectMapper;
+
+    private ResourceNotFoundException notFoundException;
+    private ResourceConflictException conflictException;
+    private MethodArgumentNotValidException validationException;
+    private RuntimeException unexpectedException;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        this.exceptionHandler = new GlobalExceptionHandler();
+        this.objectMapper = new ObjectMapper();
+
+        this.notFoundException = new ResourceNotFoundException("Product", "id", 1L);
+        this.conflictException = new ResourceConflictException("User", "username", "taken");
+        this.unexpectedException = new IllegalStateException("boom");
+
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(new ProductDTO(), "productDTO");
+        bindingResult.addError(new FieldError("productDTO", "name", "Name cannot be blank"));
+        bindingResult.addError(new FieldError("productDTO", "name", "Product name must be at least 3 character long"));
+        bindingResult.addError(new FieldError("productDTO", "price", "Price cannot be lower than 0"));
+        MethodParameter parameter = new MethodParameter(
+                ExceptionHandlerBenchmark.class.getDeclaredMethod("validatedProduct", ProductDTO.class), 0);
+        this.validationException = new MethodArgumentNotValidException(parameter, bindingResult);
+    }
+
+    @SuppressWarnings("unused")
+    private void validatedProduct(ProductDTO productDTO) {
+    }
+
+    @Benchmark
+    public byte[] resourceNotFound() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(
+                this.exceptionHandler.handleResourceNotFoundException(this.notFoundException).getBody());
+    }
+
+    @Benchmark
+    public byte[] resourceConflict() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(
+                this.exceptionHandler.handleResourceConflictException(this.conflictException).getBody());
+    }
+
+    @Benchmark
+    public byte[] validationFailure() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(
+                this.exceptionHandler.handleMethodNotValidException(this.validationException).getBody());
+    }
+
+    @Benchmark
+    public byte[] unexpectedError() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(
+                this.exceptionHandler.handleGenericException(this.unexpectedException).getBody());
+    }
+
+    @Benchmark
+    public ResourceNotFoundException createAndRenderNotFound() throws JsonProcessingException {
+        // Includes filling in the stack trace, which every thrown exception pays
+        ResourceNotFoundException exception = new ResourceNotFoundException("Product", "id", 1L);
+        this.objectMapper.writeValueAsBytes(this.exceptionHandler.handleResourceNotFoundException(exception).getBody());
+        return exception;
+    }
+
+}
@@ -0,0 +1,73 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import pl.skowrxn.springecommerce.entity.Role;
+import pl.skowrxn.springecommerce.entity.RoleType;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.security.JWTClaims;
+import pl.skowrxn.springecommerce.security.JWTUtils;
+import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request token verification cost: the legacy path (decode the secret, build a parser and
+ * verify the token twice, as {@code AuthTokenFilter} used to) against the cached single-pass parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JWTUtilsBenchmark {
+
+    private String secret;
+    private JWTUtils jwtUtils;
+    private String token;
+    private UserDetailsImpl userDetails;
+
+    @Setup
+    public void setUp() {
+        this.secret = Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded());
+        this.jwtUtils = new JWTUtils(this.secret, 3_600_000L, "JWT-TOKEN", "primary", List.of());
+        this.token = this.jwtUtils.generateJWTToken("benchmark-user");
+
+        User user = new User("benchmark-user", "benchmark@example.com", "hash");
+        user.setId(1L);
+        user.setRoles(List.of(new Role(RoleType.ROLE_USER), new Role(RoleType.ROLE_SELLER)));
+        this.userDetails = UserDetailsImpl.build(user);
+    }
+
+    @Benchmark
+    public String legacyValidateThenExtract() {
+        SecretKey validationKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(this.secret));
+        Jwts.parser().verifyWith(validationKey).build().parseSignedClaims(this.token);
+        SecretKey extractionKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(this.secret));
+        return Jwts.parser().verifyWith(extractionKey).build()
+                .parseSignedClaims(this.token)
+                .getPayload().getSubject();
+    }
+
+    @Benchmark
+    public JWTClaims cachedSinglePass() {
+        return this.jwtUtils.parseJwtToken(this.token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return this.jwtUtils.generateJWTToken("benchmark-user");
+    }
+
+    @Benchmark
+    public JWTClaims principalRoundTrip() {
+        return this.jwtUtils.parseJwtToken(this.jwtUtils.generateJWTToken(this.userDetails));
+    }
+
+}
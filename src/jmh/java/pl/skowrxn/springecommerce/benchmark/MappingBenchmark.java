@@ -0,0 +1,134 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.OrderDTO;
+import pl.skowrxn.springecommerce.dto.ProductDTO;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.mapper.CartItemMapper;
+import pl.skowrxn.springecommerce.mapper.MapperConfiguration;
+import pl.skowrxn.springecommerce.mapper.OrderMapper;
+import pl.skowrxn.springecommerce.mapper.ProductMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-object mapping cost of the reflective ModelMapper path against the generated mappers.
+ * Run with {@code -prof gc} to compare allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    private AnnotationConfigApplicationContext context;
+    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
+    private CartItemMapper cartItemMapper;
+    private OrderMapper orderMapper;
+
+    private Product product;
+    private CartItem cartItem;
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        this.context = new AnnotationConfigApplicationContext(MapperConfiguration.class.getPackageName());
+        this.productMapper = this.context.getBean(ProductMapper.class);
+        this.cartItemMapper = this.context.getBean(CartItemMapper.class);
+        this.orderMapper = this.context.getBean(OrderMapper.class);
+        this.modelMapper = new ModelMapper();
+
+        this.product = new Product();
+        this.product.setId(1L);
+        this.product.setName("Keyboard");
+        this.product.setDescription("Mechanical keyboard");
+        this.product.setImage("keyboard.png");
+        this.product.setStockQuantity(5);
+        this.product.setPrice(90.0);
+        this.product.setDiscount(10.0);
+        this.product.setRegularPrice(100.0);
+        this.product.setCategory(new Category(2L, "Peripherals"));
+        this.product.setUser(new User("seller", "seller@example.com", "hash"));
+
+        Cart cart = new Cart();
+        cart.setId(3L);
+        this.cartItem = new CartItem();
+        this.cartItem.setId(4L);
+        this.cartItem.setCart(cart);
+        this.cartItem.setProduct(this.product);
+        this.cartItem.setQuantity(2);
+        this.cartItem.setSinglePrice(90.0);
+        this.cartItem.setTotalPrice(180.0);
+
+        User buyer = new User("buyer", "buyer@example.com", "hash");
+        Address address = new Address();
+        address.setId(UUID.randomUUID());
+        address.setCity("Warsaw");
+        this.order = new Order();
+        this.order.setId(UUID.randomUUID());
+        this.order.setUser(buyer);
+        this.order.setOrderDate(LocalDate.now());
+        this.order.setShippingAddress(address);
+        this.order.setStatus("Pending payment");
+        this.order.setTotalPrice(900.0);
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setId((long) i);
+            orderItem.setProduct(this.product);
+            orderItem.setOrder(this.order);
+            orderItem.setQuantity(1);
+            orderItem.setPrice(90.0);
+            orderItems.add(orderItem);
+        }
+        this.order.setOrderItems(orderItems);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public ProductDTO productModelMapper() {
+        return this.modelMapper.map(this.product, ProductDTO.class);
+    }
+
+    @Benchmark
+    public ProductDTO productGenerated() {
+        return this.productMapper.toDTO(this.product);
+    }
+
+    @Benchmark
+    public CartItemDTO cartItemModelMapper() {
+        CartItemDTO dto = this.modelMapper.map(this.cartItem, CartItemDTO.class);
+        dto.setProduct(this.modelMapper.map(this.cartItem.getProduct(), ProductDTO.class));
+        return dto;
+    }
+
+    @Benchmark
+    public CartItemDTO cartItemGenerated() {
+        return this.cartItemMapper.toDTO(this.cartItem);
+    }
+
+    @Benchmark
+    public OrderDTO orderModelMapper() {
+        return this.modelMapper.map(this.order, OrderDTO.class);
+    }
+
+    @Benchmark
+    public OrderDTO orderGenerated() {
+        return this.orderMapper.toDTO(this.order);
+    }
+
+}
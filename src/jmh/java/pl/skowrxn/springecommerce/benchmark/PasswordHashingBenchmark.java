@@ -0,0 +1,40 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logins per second on a single core for each BCrypt strength; multiply by the number of
+ * hashing threads to size {@code spring.app.password.hashingThreads} and the latency budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(1)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10", "11", "12"})
+    private int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        this.encoder = new BCryptPasswordEncoder(this.strength);
+        this.hash = this.encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean login() {
+        return this.encoder.matches(PASSWORD, this.hash);
+    }
+
+}
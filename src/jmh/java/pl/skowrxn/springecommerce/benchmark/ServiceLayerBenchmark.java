@@ -0,0 +1,93 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.entity.Category;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.repository.CategoryRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
+import pl.skowrxn.springecommerce.service.CartService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart paths through the full application context, backed by an in-memory H2 database.
+ * The cart is pre-filled with {@code cartSize} distinct products, so the cost of changing and reading
+ * the cart can be compared across sizes. Checkout empties the cart and is measured by {@link CheckoutBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceLayerBenchmark {
+
+    private static final int STOCK = 1_000_000_000;
+
+    @Param({"1", "20"})
+    public int cartSize;
+
+    private ConfigurableApplicationContext context;
+    private CartService cartService;
+    private Long productId;
+
+    @Setup
+    public void setUp() {
+        this.context = BenchmarkApplication.start("benchmark-" + this.cartSize);
+        this.cartService = this.context.getBean(CartService.class);
+
+        UserRepository userRepository = this.context.getBean(UserRepository.class);
+        User seller = userRepository.save(new User("bench-seller", "seller@benchmark.test", "{noop}"));
+        User buyer = userRepository.save(new User("bench-buyer", "buyer@benchmark.test", "{noop}"));
+
+        Category category = this.context.getBean(CategoryRepository.class).save(new Category(null, "Benchmarks"));
+        ProductRepository productRepository = this.context.getBean(ProductRepository.class);
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < this.cartSize; i++) {
+            Product product = new Product();
+            product.setName("Benchmark product " + i);
+            product.setStockQuantity(STOCK);
+            product.setPrice(10.0);
+            product.setRegularPrice(10.0);
+            product.setCategory(category);
+            product.setUser(seller);
+            productIds.add(productRepository.save(product).getId());
+        }
+        this.productId = productIds.get(0);
+
+        // JMH may run the benchmark on another thread than the setup
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        UserDetailsImpl userDetails = UserDetailsImpl.build(buyer);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        productIds.forEach(id -> this.cartService.addToCart(id, 1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        this.context.close();
+    }
+
+    @Benchmark
+    public CartItemDTO addToCart() {
+        return this.cartService.addToCart(this.productId, 1);
+    }
+
+    @Benchmark
+    public CartContentResponse getCartContent() {
+        return this.cartService.getCartContent();
+    }
+
+}
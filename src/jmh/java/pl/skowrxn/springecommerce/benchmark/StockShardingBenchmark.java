@@ -0,0 +1,74 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import pl.skowrxn.springecommerce.entity.Category;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.repository.CategoryRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.service.StockReservationService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservations of one product from many threads at once, as during a flash sale. {@code shards = 0} keeps
+ * the stock in the product row, any other value splits it across that many shard rows.
+ * H2 only approximates the row locking of MySQL; point the comparison at the production database
+ * before drawing conclusions about absolute numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class StockShardingBenchmark {
+
+    private static final int STOCK = 1_000_000_000;
+
+    @Param({"0", "16"})
+    public int shards;
+
+    private ConfigurableApplicationContext context;
+    private StockReservationService stockReservationService;
+    private Product product;
+
+    @Setup
+    public void setUp() {
+        this.context = BenchmarkApplication.start("stock-sharding-" + this.shards);
+        this.stockReservationService = this.context.getBean(StockReservationService.class);
+
+        User seller = this.context.getBean(UserRepository.class)
+                .save(new User("bench-seller", "seller@benchmark.test", "{noop}"));
+        Category category = this.context.getBean(CategoryRepository.class).save(new Category(null, "Benchmarks"));
+        ProductRepository productRepository = this.context.getBean(ProductRepository.class);
+
+        Product product = new Product();
+        product.setName("Flash sale product");
+        product.setStockQuantity(STOCK);
+        product.setPrice(10.0);
+        product.setRegularPrice(10.0);
+        product.setCategory(category);
+        product.setUser(seller);
+        Long productId = productRepository.save(product).getId();
+
+        if (this.shards > 0) {
+            this.stockReservationService.shard(productId, this.shards);
+        }
+        this.product = productRepository.findById(productId).orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public int reserve() {
+        return this.stockReservationService.reserve(this.product, 1);
+    }
+
+}
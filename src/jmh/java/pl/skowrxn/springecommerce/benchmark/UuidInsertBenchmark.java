@@ -0,0 +1,111 @@
+package pl.skowrxn.springecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pl.skowrxn.springecommerce.entity.TimeOrderedUuidGenerator;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order-sized rows inserted into a table already holding {@code preloadedRows}, keyed by random (version 4) or
+ * time-ordered (version 7) UUIDs stored as {@code binary(16)}. Random keys land on any page of the primary key,
+ * which stops fitting in the buffer pool as the table grows; time-ordered keys always land on the last one.
+ * <p>
+ * Runs on plain JDBC so only the key differs. The in-memory H2 default only checks that it runs; the comparison
+ * means something against MySQL with a table larger than its buffer pool, e.g.
+ * {@code -p jdbcUrl=jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true -p user=... -p password=...
+ * -p preloadedRows=10000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class UuidInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int PRELOAD_BATCH_SIZE = 10_000;
+
+    public enum Keys {
+        RANDOM,
+        TIME_ORDERED
+    }
+
+    @Param({"RANDOM", "TIME_ORDERED"})
+    public Keys keys;
+
+    @Param({"1000000"})
+    public int preloadedRows;
+
+    @Param({"jdbc:h2:mem:uuid-insert;DB_CLOSE_DELAY=-1"})
+    public String jdbcUrl;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup
+    public void setUp() throws SQLException {
+        this.connection = DriverManager.getConnection(this.jdbcUrl, this.user, this.password);
+        try (Statement statement = this.connection.createStatement()) {
+            statement.execute("drop table if exists uuid_insert_benchmark");
+            statement.execute("create table uuid_insert_benchmark (id binary(16) not null primary key, "
+                    + "user_id bigint not null, order_date date not null, total_price double, status varchar(32))");
+        }
+        this.connection.setAutoCommit(false);
+        this.insert = this.connection.prepareStatement("insert into uuid_insert_benchmark "
+                + "(id, user_id, order_date, total_price, status) values (?, ?, current_date, ?, 'Pending payment')");
+        for (int inserted = 0; inserted < this.preloadedRows; inserted += PRELOAD_BATCH_SIZE) {
+            this.insertRows(Math.min(PRELOAD_BATCH_SIZE, this.preloadedRows - inserted));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = this.connection.createStatement()) {
+            statement.execute("drop table uuid_insert_benchmark");
+        }
+        this.connection.commit();
+        this.connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertOrders() throws SQLException {
+        this.insertRows(BATCH_SIZE);
+    }
+
+    private void insertRows(int rows) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < rows; i++) {
+            this.insert.setBytes(1, this.nextKey());
+            this.insert.setLong(2, random.nextLong(1, 100_000));
+            this.insert.setDouble(3, random.nextInt(1, 100_000) / 100.0);
+            this.insert.addBatch();
+        }
+        this.insert.executeBatch();
+        this.connection.commit();
+    }
+
+    private byte[] nextKey() {
+        UUID key = this.keys == Keys.RANDOM ? UUID.randomUUID() : TimeOrderedUuidGenerator.next();
+        return ByteBuffer.allocate(16)
+                .putLong(key.getMostSignificantBits())
+                .putLong(key.getLeastSignificantBits())
+                .array();
+    }
+
+}
@@ -0,0 +1,56 @@
+package pl.skowrxn.springecommerce.configuration;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import pl.skowrxn.springecommerce.util.QueryCountInspector;
+
+import java.io.IOException;
+
+/**
+ * Reports how many SQL statements each request executed, including the ones issued by the security filters.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCountFilter.class);
+
+    private final DistributionSummary queriesPerRequest;
+    private final long warnThreshold;
+
+    public QueryCountFilter(MeterRegistry meterRegistry,
+                            @Value("${app.query-count.warn-threshold:20}") long warnThreshold) {
+        this.queriesPerRequest = DistributionSummary.builder("http.server.requests.queries")
+                .description("SQL statements executed per HTTP request")
+                .register(meterRegistry);
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryCountInspector.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long queries = QueryCountInspector.getCount();
+            this.queriesPerRequest.record(queries);
+            if (queries > this.warnThreshold) {
+                logger.warn("{} {} executed {} SQL statements", request.getMethod(), request.getRequestURI(), queries);
+            } else {
+                logger.debug("{} {} executed {} SQL statements", request.getMethod(), request.getRequestURI(), queries);
+            }
+        }
+    }
+
+}
@@ -5,7 +5,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import pl.skowrxn.springecommerce.dto.AddressDTO;
 import pl.skowrxn.springecommerce.dto.response.AddressListResponse;
-import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.service.AddressService;
 import pl.skowrxn.springecommerce.util.AuthUtil;
 
@@ -25,8 +24,8 @@ public class AddressController {
 
     @PostMapping("/addresses")
     public ResponseEntity<AddressDTO> createAddress(@RequestBody @Valid AddressDTO addressDTO) {
-        User user = this.authUtil.getLoggedInUser();
-        AddressDTO address = this.addressService.createAddress(addressDTO, user.getId());
+        Long userId = this.authUtil.getLoggedInUserId();
+        AddressDTO address = this.addressService.createAddress(addressDTO, userId);
         return ResponseEntity.created(URI.create("/addresses/" + address.getId()))
                 .body(address);
     }
@@ -40,8 +39,8 @@ public class AddressController {
 
     @GetMapping("/addresses")
     public ResponseEntity<AddressListResponse> getAllAddresses() {
-        User user = this.authUtil.getLoggedInUser();
-        return ResponseEntity.ok(this.addressService.getAllAddresses(user.getId()));
+        Long userId = this.authUtil.getLoggedInUserId();
+        return ResponseEntity.ok(this.addressService.getAllAddresses(userId));
     }
 
     @DeleteMapping("/addresses/{id}")
@@ -52,15 +51,15 @@ public class AddressController {
 
     @PutMapping("/addresses/default/{userId}")
     public ResponseEntity<AddressDTO> setDefaultAddress(@PathVariable UUID userId) {
-        User user = this.authUtil.getLoggedInUser();
-        AddressDTO address = this.addressService.setDefaultAddress(user.getId(), userId);
+        Long loggedInUserId = this.authUtil.getLoggedInUserId();
+        AddressDTO address = this.addressService.setDefaultAddress(loggedInUserId, userId);
         return ResponseEntity.ok(address);
     }
 
     @GetMapping("/addresses/default")
     public ResponseEntity<AddressDTO> getDefaultAddress() {
-        User user = this.authUtil.getLoggedInUser();
-        AddressDTO address = this.addressService.getDefaultAddress(user.getId());
+        Long userId = this.authUtil.getLoggedInUserId();
+        AddressDTO address = this.addressService.getDefaultAddress(userId);
         return ResponseEntity.ok(address);
     }
 
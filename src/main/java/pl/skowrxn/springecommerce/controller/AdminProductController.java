@@ -0,0 +1,23 @@
+package pl.skowrxn.springecommerce.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pl.skowrxn.springecommerce.service.StockReservationService;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminProductController {
+
+    private final StockReservationService stockReservationService;
+
+    public AdminProductController(StockReservationService stockReservationService) {
+        this.stockReservationService = stockReservationService;
+    }
+
+    @PutMapping("/products/{productId}/stock-shards")
+    public ResponseEntity<Void> shardStock(@PathVariable Long productId, @RequestParam Integer shards) {
+        this.stockReservationService.shard(productId, shards);
+        return ResponseEntity.noContent().build();
+    }
+
+}
@@ -0,0 +1,36 @@
+package pl.skowrxn.springecommerce.controller;
+
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pl.skowrxn.springecommerce.dto.UserImportRequestDTO;
+import pl.skowrxn.springecommerce.dto.response.UserImportResponse;
+import pl.skowrxn.springecommerce.security.RoleRegistry;
+import pl.skowrxn.springecommerce.service.UserImportService;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminUserController {
+
+    private final UserImportService userImportService;
+    private final RoleRegistry roleRegistry;
+
+    public AdminUserController(UserImportService userImportService, RoleRegistry roleRegistry) {
+        this.userImportService = userImportService;
+        this.roleRegistry = roleRegistry;
+    }
+
+    @PostMapping("/users/import")
+    public ResponseEntity<UserImportResponse> importUsers(@Valid @RequestBody UserImportRequestDTO importRequest) {
+        UserImportResponse response = this.userImportService.importUsers(importRequest.getUsers());
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    @PostMapping("/roles/refresh")
+    public ResponseEntity<Void> refreshRoles() {
+        this.roleRegistry.refresh();
+        return ResponseEntity.noContent().build();
+    }
+
+}
@@ -11,17 +11,16 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
-import pl.skowrxn.springecommerce.entity.Role;
-import pl.skowrxn.springecommerce.entity.RoleType;
 import pl.skowrxn.springecommerce.entity.User;
-import pl.skowrxn.springecommerce.repository.RoleRepository;
+import pl.skowrxn.springecommerce.security.JWTDenylist;
 import pl.skowrxn.springecommerce.security.JWTUtils;
+import pl.skowrxn.springecommerce.security.RoleRegistry;
 import pl.skowrxn.springecommerce.security.request.LoginRequest;
 import pl.skowrxn.springecommerce.security.request.SignupRequest;
 import pl.skowrxn.springecommerce.security.response.AuthMessageResponse;
 import pl.skowrxn.springecommerce.security.response.UserInfoResponse;
+import pl.skowrxn.springecommerce.security.service.PasswordHashingService;
 import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
 import pl.skowrxn.springecommerce.service.UserService;
 
@@ -34,20 +33,24 @@ public class AuthController {
     private final JWTUtils jwtUtils;
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
-    private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final RoleRegistry roleRegistry;
+    private final PasswordHashingService passwordHashingService;
+    private final JWTDenylist jwtDenylist;
 
-    public AuthController(JWTUtils jwtUtils, AuthenticationManager authenticationManager, RoleRepository roleRepository,
-                          UserService userService, PasswordEncoder passwordEncoder) {
+    public AuthController(JWTUtils jwtUtils, AuthenticationManager authenticationManager, RoleRegistry roleRegistry,
+                          UserService userService, PasswordHashingService passwordHashingService,
+                          JWTDenylist jwtDenylist) {
         this.jwtUtils = jwtUtils;
+        this.jwtDenylist = jwtDenylist;
         this.authenticationManager = authenticationManager;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
         this.userService = userService;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
     }
 
     @PostMapping ("/signin")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        // The password is verified on the hashing pool, see PooledPasswordEncoder
         Authentication authentication;
         try {
             authentication = this.authenticationManager.authenticate(
@@ -59,7 +62,7 @@ public class AuthController {
             return new ResponseEntity<>(errorResponse, HttpStatus.UNAUTHORIZED);
         }
 
-        SecurityContextHolder .getContext().setAuthentication(authentication);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
         ResponseCookie responseCookie = jwtUtils.generateJwtCookie(userDetails);
@@ -81,55 +84,12 @@ public class AuthController {
 
     @PostMapping("/signup")
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signupRequest) {
-        if(this.userService.existsByUsernameIgnoreCase(signupRequest.getUsername())) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("message", "Username " + signupRequest.getUsername() + " is already taken");
-            errorResponse.put("status", false);
-            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
-        }
-
-        if(this.userService.existsByEmailIgnoreCase(signupRequest.getEmail())) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("message", "Email " + signupRequest.getEmail() + " is already taken");
-            errorResponse.put("status", false);
-            return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
-        }
-
         User user = new User();
         user.setUsername(signupRequest.getUsername());
         user.setEmail(signupRequest.getEmail());
-        user.setPassword(this.passwordEncoder.encode(signupRequest.getPassword()));
-
-        Set<String> roles = signupRequest.getRoles();
-        List<Role> userRoles = new ArrayList<>();
-
-        if (roles == null) {
-            Role userRole = this.roleRepository.findRolesByRoleType(RoleType.ROLE_USER).stream().findFirst()
-                    .orElseThrow(() -> new RuntimeException("Error: Default user role not found."));
-            userRoles.add(userRole);
-        } else {
-            roles.forEach(role -> {
-                switch (role) {
-                    case "admin" -> {
-                        Role adminRole = this.roleRepository.findRolesByRoleType(RoleType.ROLE_ADMIN).stream().findFirst()
-                                .orElseThrow(() -> new RuntimeException("Error: Role not found."));
-                        userRoles.add(adminRole);
-                    }
-                    case "seller" -> {
-                        Role sellerRole = this.roleRepository.findRolesByRoleType(RoleType.ROLE_SELLER).stream().findFirst()
-                                .orElseThrow(() -> new RuntimeException("Error: Role not found."));
-                        userRoles.add(sellerRole);
-                    }
-                    default -> {
-                        Role userRole = this.roleRepository.findRolesByRoleType(RoleType.ROLE_USER).stream().findFirst()
-                                .orElseThrow(() -> new RuntimeException("Error: Default User role could not be found."));
-                        userRoles.add(userRole);
-                    }
-                }
-            });
-        }
+        user.setPassword(this.passwordHashingService.encode(signupRequest.getPassword()));
 
-        user.setRoles(userRoles);
+        user.setRoles(this.roleRegistry.resolve(signupRequest.getRoles()));
         User savedUser = this.userService.saveUser(user);
 
         AuthMessageResponse authMessageResponse = new AuthMessageResponse(savedUser.getId(), "User registered successfully");
@@ -159,6 +119,7 @@ public class AuthController {
             errorResponse.put("status", false);
             return new ResponseEntity<>(errorResponse, HttpStatus.UNAUTHORIZED);
         }
+        this.jwtDenylist.revoke(authentication.getName());
         ResponseCookie cookie = jwtUtils.generateCleanJwtCookie();
         Map<String, Object> response = new HashMap<>();
         response.put("message", "You've been signed out!");
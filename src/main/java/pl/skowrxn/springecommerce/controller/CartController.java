@@ -1,8 +1,14 @@
 package pl.skowrxn.springecommerce.controller;
 
+import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import pl.skowrxn.springecommerce.dto.CartBatchRequestDTO;
 import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.dto.response.CartSummaryResponse;
 import pl.skowrxn.springecommerce.dto.CartItemDTO;
 import pl.skowrxn.springecommerce.service.CartService;
 
@@ -33,9 +39,38 @@ public class CartController {
          return ResponseEntity.ok(cartItemDTO);
      }
 
+     @PostMapping("/cart/batch")
+     public ResponseEntity<CartContentResponse> applyBatch(@Valid @RequestBody CartBatchRequestDTO batchRequest) {
+         return ResponseEntity.ok(this.cartService.applyBatch(batchRequest.getOperations()));
+     }
+
+     /**
+      * Answers with 304 when the {@code If-None-Match} ETag still matches the summary.
+      */
+     @GetMapping("/cart/summary")
+     public ResponseEntity<CartSummaryResponse> getCartSummary() {
+         CartSummaryResponse summary = this.cartService.getCartSummary();
+         return this.conditional(summary.getVersion()).body(summary);
+     }
+
+     /**
+      * Answers with 304 when the {@code If-None-Match} ETag still matches the cart, after looking up only its
+      * version.
+      */
      @GetMapping("/cart/content")
-     public ResponseEntity<CartContentResponse> getCartContent() {
-         return ResponseEntity.ok(cartService.getCartContent());
+     public ResponseEntity<CartContentResponse> getCartContent(
+             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+         if (ifNoneMatch != null) {
+             String version = this.cartService.getCartVersion();
+             if (version != null && matches(ifNoneMatch, eTagOf(version))) {
+                 return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                         .eTag(eTagOf(version))
+                         .cacheControl(CacheControl.noCache().cachePrivate())
+                         .build();
+             }
+         }
+         CartContentResponse cartContent = this.cartService.getCartContent();
+         return this.conditional(cartContent.getVersion()).body(cartContent);
      }
 
      @PostMapping("/cart/clear")
@@ -44,4 +79,27 @@ public class CartController {
          return ResponseEntity.noContent().build();
      }
 
+     private ResponseEntity.BodyBuilder conditional(String version) {
+         ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate());
+         // Spring answers a matching If-None-Match with 304 on its own once the ETag is set
+         return version == null ? response : response.eTag(eTagOf(version));
+     }
+
+     private static String eTagOf(String version) {
+         return "\"" + version + "\"";
+     }
+
+     private static boolean matches(String ifNoneMatch, String eTag) {
+         for (String candidate : ifNoneMatch.split(",")) {
+             String tag = candidate.trim();
+             if (tag.startsWith("W/")) {
+                 tag = tag.substring(2);
+             }
+             if (tag.equals("*") || tag.equals(eTag)) {
+                 return true;
+             }
+         }
+         return false;
+     }
+
 }
@@ -2,21 +2,23 @@ package pl.skowrxn.springecommerce.controller;
 
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 import pl.skowrxn.springecommerce.dto.OrderDTO;
 import pl.skowrxn.springecommerce.dto.OrderRequestDTO;
-import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.dto.response.OrderListResponse;
 import pl.skowrxn.springecommerce.service.CartService;
 import pl.skowrxn.springecommerce.service.OrderService;
 import pl.skowrxn.springecommerce.util.AuthUtil;
 
 import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 public class OrderController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final OrderService orderService;
     private final CartService cartService;
     private final AuthUtil authUtil;
@@ -27,12 +29,42 @@ public class OrderController {
         this.cartService = cartService;
     }
 
+    /**
+     * A retry sending the {@code Idempotency-Key} of an order already placed gets the response of that order,
+     * without checking out again.
+     */
     @PostMapping("/orders")
-    public ResponseEntity<OrderDTO> createNewOrder(@RequestBody @Valid OrderRequestDTO orderRequestDTO) {
-        User user = this.authUtil.getLoggedInUser();
-        OrderDTO newOrder = orderService.placeNewOrder(orderRequestDTO, user.getId());
-        this.cartService.clearCart();
-        return ResponseEntity.created(URI.create("/orders/" + newOrder.getId())).body(newOrder);
+    public ResponseEntity<OrderDTO> createNewOrder(@RequestBody @Valid OrderRequestDTO orderRequestDTO,
+                                                   @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                                   String idempotencyKey) {
+        Long userId = this.authUtil.getLoggedInUserId();
+        Optional<OrderDTO> placedOrder = idempotencyKey == null ? Optional.empty()
+                : this.orderService.findPlacedOrder(orderRequestDTO, userId, idempotencyKey);
+        if (placedOrder.isPresent()) {
+            return this.created(placedOrder.get());
+        }
+        this.cartService.flushCart();
+        OrderDTO newOrder = orderService.placeNewOrder(orderRequestDTO, userId, idempotencyKey);
+        // The order emptied the cart in the database, only a copy held in memory is left to drop
+        this.cartService.discardCart();
+        return this.created(newOrder);
+    }
+
+    @GetMapping("/orders")
+    public ResponseEntity<OrderListResponse> getOrders(@RequestParam(name = "cursor", required = false) String cursor,
+                                                       @RequestParam(name = "pageSize", defaultValue = "20") int pageSize) {
+        Long userId = this.authUtil.getLoggedInUserId();
+        return ResponseEntity.ok(this.orderService.getOrders(userId, cursor, pageSize));
+    }
+
+    @GetMapping("/orders/{id}")
+    public ResponseEntity<OrderDTO> getOrder(@PathVariable UUID id) {
+        Long userId = this.authUtil.getLoggedInUserId();
+        return ResponseEntity.ok(this.orderService.getOrder(userId, id));
+    }
+
+    private ResponseEntity<OrderDTO> created(OrderDTO order) {
+        return ResponseEntity.created(URI.create("/orders/" + order.getId())).body(order);
     }
 
 }
@@ -0,0 +1,24 @@
+package pl.skowrxn.springecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequestDTO {
+
+    @Valid
+    @NotEmpty(message = "At least one operation must be given")
+    @Size(max = 100, message = "At most 100 operations can be applied at once")
+    private List<CartOperationDTO> operations;
+
+}
@@ -0,0 +1,57 @@
+package pl.skowrxn.springecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import pl.skowrxn.springecommerce.util.Money;
+
+/**
+ * One row of the cart content read path: the cart columns repeated for each item, or with empty item
+ * columns when the cart is empty. Built straight from the query, so no entities are loaded.
+ */
+@Getter
+@AllArgsConstructor
+public class CartContentRow {
+
+    private final Long cartId;
+    private final Double cartTotalPrice;
+    private final Long cartRevision;
+
+    private final Long cartItemId;
+    private final Integer quantity;
+    private final Double singlePrice;
+    private final Double totalPrice;
+
+    private final Long productId;
+    private final String productName;
+    private final String productDescription;
+    private final String productImage;
+    private final Integer productStockQuantity;
+    private final Double productRegularPrice;
+    private final Double productPrice;
+    private final Double productDiscount;
+
+    private final Long categoryId;
+    private final String categoryName;
+
+    /**
+     * Used by the query, which reads cart amounts in minor units.
+     */
+    public CartContentRow(Long cartId, Long cartTotalPriceMinor, Long cartRevision, Long cartItemId, Integer quantity,
+                          Long singlePriceMinor, Long totalPriceMinor, Long productId, String productName,
+                          String productDescription, String productImage, Integer productStockQuantity,
+                          Double productRegularPrice, Double productPrice, Double productDiscount,
+                          Long categoryId, String categoryName) {
+        this(cartId, toMajor(cartTotalPriceMinor), cartRevision, cartItemId, quantity, toMajor(singlePriceMinor),
+                toMajor(totalPriceMinor), productId, productName, productDescription, productImage,
+                productStockQuantity, productRegularPrice, productPrice, productDiscount, categoryId, categoryName);
+    }
+
+    private static Double toMajor(Long minor) {
+        return minor == null ? null : Money.toMajor(minor);
+    }
+
+    public boolean hasItem() {
+        return this.cartItemId != null;
+    }
+
+}
@@ -0,0 +1,36 @@
+package pl.skowrxn.springecommerce.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One step of a cart batch. {@code ADD} takes a product id, {@code UPDATE} and {@code REMOVE} take the id of a
+ * line in the cart; {@code UPDATE} to a quantity of 0 removes the line, like {@code PUT /cart/{cartItemId}}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationDTO {
+
+    public enum Type {
+        ADD,
+        UPDATE,
+        REMOVE
+    }
+
+    @NotNull(message = "Operation type cannot be null")
+    private Type type;
+
+    private Long productId;
+
+    private Long cartItemId;
+
+    @PositiveOrZero(message = "Quantity cannot be negative")
+    private Integer quantity;
+
+}
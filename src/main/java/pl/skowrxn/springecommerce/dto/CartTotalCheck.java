@@ -0,0 +1,21 @@
+package pl.skowrxn.springecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The stored total of a cart next to the sum of its items, both in minor units.
+ */
+@Getter
+@AllArgsConstructor
+public class CartTotalCheck {
+
+    private final Long cartId;
+    private final Long storedTotalMinor;
+    private final Long itemsTotalMinor;
+
+    public boolean hasDrifted() {
+        return !this.storedTotalMinor.equals(this.itemsTotalMinor);
+    }
+
+}
@@ -1,6 +1,7 @@
 package pl.skowrxn.springecommerce.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 
@@ -16,4 +17,7 @@ public class CategoryDTO {
     @Size(min=3, message = "Category name must be at least 3 character long")
     private String name;
 
+    @Positive(message = "Reservation hold must be positive")
+    private Integer reservationHoldMinutes;
+
 }
@@ -0,0 +1,25 @@
+package pl.skowrxn.springecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * An order in the order history, built straight from the orders table without its items.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryDTO {
+
+    private UUID id;
+    private LocalDate orderDate;
+    private Double totalPrice;
+    private String status;
+
+}
@@ -0,0 +1,18 @@
+package pl.skowrxn.springecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Stock of a product split into what is still available and what is held by unexpired cart reservations.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductReservationRow {
+
+    private final Long productId;
+    private final String productName;
+    private final Integer availableStock;
+    private final Long reservedStock;
+
+}
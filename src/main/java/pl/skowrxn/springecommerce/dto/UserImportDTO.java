@@ -0,0 +1,35 @@
+package pl.skowrxn.springecommerce.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportDTO {
+
+    @Size(min=3, message = "Username must be at least 3 character long")
+    @NotBlank(message = "Username cannot be blank")
+    private String username;
+
+    @Email
+    @NotBlank(message = "Email cannot be blank")
+    private String email;
+
+    // Imported as is; bare legacy hashes are matched by the default BCrypt encoder and upgraded on login
+    @NotBlank(message = "Password hash cannot be blank")
+    @Pattern(regexp = "^(\\{bcrypt})?\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$", message = "Password hash must be a BCrypt hash")
+    private String passwordHash;
+
+    private Set<String> roles;
+
+}
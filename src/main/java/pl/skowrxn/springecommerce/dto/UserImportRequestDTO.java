@@ -0,0 +1,22 @@
+package pl.skowrxn.springecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRequestDTO {
+
+    @Valid
+    @NotEmpty(message = "At least one user must be imported")
+    private List<UserImportDTO> users;
+
+}
@@ -1,5 +1,6 @@
 package pl.skowrxn.springecommerce.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -19,4 +20,10 @@ public class CartContentResponse {
     private Double totalPrice;
     private List<CartItemDTO> cartItems;
 
+    /**
+     * Sent as the ETag header, see {@code CartService.getCartVersion}.
+     */
+    @JsonIgnore
+    private String version;
+
 }
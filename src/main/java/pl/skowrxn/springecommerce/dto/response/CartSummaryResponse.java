@@ -0,0 +1,34 @@
+package pl.skowrxn.springecommerce.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.skowrxn.springecommerce.entity.Cart;
+import pl.skowrxn.springecommerce.util.Money;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummaryResponse {
+
+    private Long id;
+    private Integer quantity;
+    private Double totalPrice;
+    private Instant lastModified;
+
+    /**
+     * Sent as the ETag header, see {@code CartService.getCartVersion}.
+     */
+    @JsonIgnore
+    private String version;
+
+    public CartSummaryResponse(Long id, Integer quantity, Long totalPriceMinor, Instant lastModified, Long revision) {
+        this(id, quantity, Money.toMajor(totalPriceMinor), lastModified, Cart.versionOf(id, revision));
+    }
+
+}
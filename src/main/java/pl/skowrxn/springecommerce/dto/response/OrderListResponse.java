@@ -0,0 +1,25 @@
+package pl.skowrxn.springecommerce.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.skowrxn.springecommerce.dto.OrderSummaryDTO;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderListResponse {
+
+    private List<OrderSummaryDTO> orders;
+    private int pageSize;
+    /**
+     * Passed back as {@code cursor} to get the next page, null on the last page.
+     */
+    private String nextCursor;
+    private boolean lastPage;
+
+}
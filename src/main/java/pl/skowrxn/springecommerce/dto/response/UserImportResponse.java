@@ -0,0 +1,17 @@
+package pl.skowrxn.springecommerce.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportResponse {
+
+    private int importedUsers;
+    private int batches;
+
+}
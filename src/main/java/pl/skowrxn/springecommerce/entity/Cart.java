@@ -5,7 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import pl.skowrxn.springecommerce.util.Money;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,8 +30,41 @@ public class Cart {
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private List<CartItem> items = new ArrayList<>();
 
-    private Double totalPrice = 0.0;
+    /**
+     * Kept in minor units and only ever moved by the difference a change makes, see
+     * {@code CartRepository.addToTotals}.
+     */
+    @Column(name = "total_price_minor", nullable = false)
+    private long totalPriceMinor;
 
+    /**
+     * Number of items, maintained together with the total so the cart summary never reads the items.
+     */
+    @Column(name = "item_count", nullable = false)
+    private int itemCount;
 
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    /**
+     * Raised by every statement that changes the cart, so a client can tell whether its copy is current.
+     */
+    @Column(name = "revision", nullable = false)
+    private long revision;
+
+    public Double getTotalPrice() {
+        return Money.toMajor(this.totalPriceMinor);
+    }
+
+    public void setTotalPrice(Double totalPrice) {
+        this.totalPriceMinor = Money.toMinor(totalPrice);
+    }
+
+    /**
+     * @return the version of the cart content sent as its ETag, unique across carts
+     */
+    public static String versionOf(Long id, long revision) {
+        return id + "-" + revision;
+    }
 
 }
@@ -5,9 +5,16 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import pl.skowrxn.springecommerce.util.Money;
+
+import java.time.Instant;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", indexes = {
+        @Index(name = "idx_cart_items_reserved_until", columnList = "reserved_until")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cart_items_cart_product", columnNames = {"cart_id", "product_id"})
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -18,16 +25,42 @@ public class CartItem {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cart_id")
     private Cart cart;
 
-    @OneToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
-    private Double singlePrice;
-    private Double totalPrice;
+    @Column(name = "single_price_minor", nullable = false)
+    private long singlePriceMinor;
+
+    @Column(name = "total_price_minor", nullable = false)
+    private long totalPriceMinor;
+
     private Integer quantity;
 
+    /**
+     * When the stock held by this item goes back to the product, unless the item is touched again before.
+     */
+    @Column(name = "reserved_until")
+    private Instant reservedUntil;
+
+    public Double getSinglePrice() {
+        return Money.toMajor(this.singlePriceMinor);
+    }
+
+    public void setSinglePrice(Double singlePrice) {
+        this.singlePriceMinor = Money.toMinor(singlePrice);
+    }
+
+    public Double getTotalPrice() {
+        return Money.toMajor(this.totalPriceMinor);
+    }
+
+    public void setTotalPrice(Double totalPrice) {
+        this.totalPriceMinor = Money.toMinor(totalPrice);
+    }
+
 }
@@ -2,6 +2,7 @@ package pl.skowrxn.springecommerce.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -24,7 +25,15 @@ public class Category {
     @Size(min=3, message = "Category name must be at least 3 character long")
     private String name;
 
+    /**
+     * How long products of this category stay reserved in a cart, {@code null} for the application default.
+     */
+    @Positive(message = "Reservation hold must be positive")
+    private Integer reservationHoldMinutes;
 
-
+    public Category(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
 
 }
@@ -16,18 +16,21 @@ import java.util.UUID;
 @AllArgsConstructor
 @Getter
 @Setter
-@Table(name="orders")
+@Table(name="orders", indexes = {
+        // Covers the order history: seeks by user and position, and holds every column of the summary
+        @Index(name = "idx_orders_user_history", columnList = "user_id, order_date, id, total_price, status")
+})
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @ManyToOne(cascade = CascadeType.ALL)
     @JoinColumn(name = "user_id")
     private User user;
 
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private List<OrderItem> orderItems;
 
     private LocalDate orderDate;
@@ -37,6 +40,7 @@ public class Order {
     private Payment payment;
 
     private Double totalPrice;
+    @Column(length = 32)
     private String status;
 
     @ManyToOne
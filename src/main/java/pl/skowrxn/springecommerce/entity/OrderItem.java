@@ -14,8 +14,12 @@ import lombok.Setter;
 @Setter
 public class OrderItem {
 
+    /**
+     * Taken from a pooled sequence, a table on MySQL, so the items of an order are inserted in JDBC batches.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @SequenceGenerator(name = "order_item_seq", sequenceName = "order_item_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
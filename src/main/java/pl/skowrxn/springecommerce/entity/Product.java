@@ -26,12 +26,22 @@ public class Product {
     private double discount;
     private double regularPrice;
 
+    /**
+     * Number of {@link ProductStockShard} rows holding the stock, 0 when it is kept in {@code stockQuantity}.
+     * While the stock is sharded, {@code stockQuantity} is a snapshot refreshed in the background.
+     */
+    private Integer stockShards = 0;
+
     @ManyToOne
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "seller_id", nullable = false)
     private User user;
 
+    public boolean hasShardedStock() {
+        return this.stockShards != null && this.stockShards > 0;
+    }
+
 }
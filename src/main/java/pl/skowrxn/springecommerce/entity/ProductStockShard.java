@@ -0,0 +1,37 @@
+package pl.skowrxn.springecommerce.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One slice of the stock of a product in sharded inventory mode. Reservations first try a shard picked at
+ * random, so concurrent buyers of the same product mostly lock different rows.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "product_stock_shards", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_product_stock_shards_product_shard", columnNames = {"product_id", "shard_index"})
+})
+public class ProductStockShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+
+    @Column(name = "shard_index", nullable = false)
+    private Integer shardIndex;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+}
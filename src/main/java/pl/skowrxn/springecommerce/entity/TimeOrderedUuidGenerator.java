@@ -0,0 +1,46 @@
+package pl.skowrxn.springecommerce.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version 7 UUIDs (RFC 9562): 48 bits of Unix time in milliseconds, the version, a 12-bit counter and 62 random
+ * bits. Stored as {@code binary(16)} they sort by creation time, so inserts land on the page holding the newest id.
+ * <p>
+ * The counter keeps the ids of one node strictly increasing within a millisecond; when it runs out the timestamp
+ * is moved ahead by a millisecond, so ids stay increasing even if the clock goes back. The random bits keep ids
+ * of different nodes apart and hard to guess.
+ */
+public class TimeOrderedUuidGenerator implements BeforeExecutionGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // Timestamp and counter of the last id, as the top 60 bits of its most significant half without the version
+    private static final AtomicLong LAST = new AtomicLong();
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        long state = LAST.updateAndGet(last -> Math.max(now, last + 1));
+        long mostSignificant = (state >>> 12) << 16 | 0x7000L | (state & 0xFFFL);
+        long leastSignificant = RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+}
@@ -6,19 +6,23 @@ import lombok.*;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
 @Table(name = "users",
         uniqueConstraints = {
-                @UniqueConstraint(columnNames = "username"),
-                @UniqueConstraint(columnNames = "email")
+                @UniqueConstraint(name = User.USERNAME_UNIQUE_CONSTRAINT, columnNames = "username_normalized"),
+                @UniqueConstraint(name = User.EMAIL_UNIQUE_CONSTRAINT, columnNames = "email_normalized")
         })
 @NoArgsConstructor
 @Setter
 @Getter
 public class User {
 
+    public static final String USERNAME_UNIQUE_CONSTRAINT = "uk_users_username_normalized";
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_users_email_normalized";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -27,6 +31,15 @@ public class User {
     private String email;
     private String password;
 
+    // Case-folded copies backing the unique constraints, so uniqueness does not depend on the column collation
+    @Setter(AccessLevel.NONE)
+    @Column(name = "username_normalized")
+    private String normalizedUsername;
+
+    @Setter(AccessLevel.NONE)
+    @Column(name = "email_normalized")
+    private String normalizedEmail;
+
     @ManyToMany(fetch = FetchType.EAGER,
             cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(name = "user_roles",
@@ -45,7 +58,7 @@ public class User {
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     @JoinColumn(name = "cart_id")
     @ToString.Exclude
-    private Cart cart = new Cart();
+    private Cart cart;
 
     public User(String username, String email, String password) {
         this.username = username;
@@ -53,4 +66,15 @@ public class User {
         this.password = password;
     }
 
+    public static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalizeIdentifiers() {
+        this.normalizedUsername = normalize(this.username);
+        this.normalizedEmail = normalize(this.email);
+    }
+
 }
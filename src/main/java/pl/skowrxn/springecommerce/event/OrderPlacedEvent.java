@@ -0,0 +1,19 @@
+package pl.skowrxn.springecommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Published after an order was placed, outside the request that placed it, for notifications to the buyer.
+ * A listener that throws gets the event again later, so listeners may see the same order more than once.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+
+    private final UUID orderId;
+    private final Long userId;
+
+}
@@ -0,0 +1,24 @@
+package pl.skowrxn.springecommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a user is created, or when a user's identity, roles or existence changes,
+ * so that anything derived from the previous state (issued tokens, cached user details) can be dropped.
+ */
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Long userId;
+    private final String username;
+    private final Type type;
+
+}
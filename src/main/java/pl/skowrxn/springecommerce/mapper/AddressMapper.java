@@ -0,0 +1,16 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import pl.skowrxn.springecommerce.dto.AddressDTO;
+import pl.skowrxn.springecommerce.entity.Address;
+
+@Mapper(config = MapperConfiguration.class)
+public interface AddressMapper {
+
+    AddressDTO toDTO(Address address);
+
+    @Mapping(target = "user", ignore = true)
+    Address toEntity(AddressDTO addressDTO);
+
+}
@@ -0,0 +1,14 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.entity.CartItem;
+
+@Mapper(config = MapperConfiguration.class, uses = ProductMapper.class)
+public interface CartItemMapper {
+
+    @Mapping(target = "cartId", source = "cart.id")
+    CartItemDTO toDTO(CartItem cartItem);
+
+}
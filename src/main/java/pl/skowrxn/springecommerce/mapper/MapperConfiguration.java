@@ -0,0 +1,16 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.MapperConfig;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+/**
+ * Shared settings of the generated mappers: Spring beans wired through their constructors, and target
+ * properties without a source (back-references, server-side fields) are left untouched.
+ */
+@MapperConfig(componentModel = MappingConstants.ComponentModel.SPRING,
+        injectionStrategy = InjectionStrategy.CONSTRUCTOR,
+        unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface MapperConfiguration {
+}
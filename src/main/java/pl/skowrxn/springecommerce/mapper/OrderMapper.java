@@ -0,0 +1,19 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import pl.skowrxn.springecommerce.dto.OrderDTO;
+import pl.skowrxn.springecommerce.dto.OrderItemDTO;
+import pl.skowrxn.springecommerce.entity.Order;
+import pl.skowrxn.springecommerce.entity.OrderItem;
+
+@Mapper(config = MapperConfiguration.class, uses = {UserMapper.class, ProductMapper.class, AddressMapper.class})
+public interface OrderMapper {
+
+    @Mapping(target = "email", source = "user.email")
+    @Mapping(target = "payment.order", ignore = true)
+    OrderDTO toDTO(Order order);
+
+    OrderItemDTO toDTO(OrderItem orderItem);
+
+}
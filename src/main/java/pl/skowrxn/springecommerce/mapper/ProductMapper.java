@@ -0,0 +1,16 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import pl.skowrxn.springecommerce.dto.ProductDTO;
+import pl.skowrxn.springecommerce.entity.Product;
+
+@Mapper(config = MapperConfiguration.class)
+public interface ProductMapper {
+
+    ProductDTO toDTO(Product product);
+
+    @Mapping(target = "user", ignore = true)
+    Product toEntity(ProductDTO productDTO);
+
+}
@@ -0,0 +1,20 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import pl.skowrxn.springecommerce.dto.UserDTO;
+import pl.skowrxn.springecommerce.entity.User;
+
+@Mapper(config = MapperConfiguration.class)
+public interface UserMapper {
+
+    // Products and addresses are not serialized with the user, copying them would only initialize the lazy collections
+    @Mapping(target = "products", ignore = true)
+    @Mapping(target = "addresses", ignore = true)
+    UserDTO toDTO(User user);
+
+    @Mapping(target = "password", ignore = true)
+    @Mapping(target = "cart", ignore = true)
+    User toEntity(UserDTO userDTO);
+
+}
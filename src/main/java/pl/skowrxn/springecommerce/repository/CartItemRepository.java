@@ -1,10 +1,96 @@
 package pl.skowrxn.springecommerce.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pl.skowrxn.springecommerce.dto.ProductReservationRow;
 import pl.skowrxn.springecommerce.entity.CartItem;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
 
+    Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
+
+    @Query("select i.id from CartItem i where i.cart.id = :cartId and i.product.id = :productId")
+    Optional<Long> findIdByCartIdAndProductId(@Param("cartId") Long cartId, @Param("productId") Long productId);
+
+    /**
+     * The lines of the cart with one of the given ids or products, with their products, in a single query.
+     */
+    @Query("select i from CartItem i join fetch i.product " +
+            "where i.cart.id = :cartId and (i.id in :ids or i.product.id in :productIds)")
+    List<CartItem> findAllByCartIdAndIdsOrProductIds(@Param("cartId") Long cartId,
+                                                    @Param("ids") Collection<Long> ids,
+                                                    @Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Adds {@code quantity} to the line of the product in the cart, if there is one. The total is assigned
+     * before the quantity, since MySQL evaluates the assignments in order, each seeing the ones before it.
+     *
+     * @return 1 when the line existed, 0 when it still has to be inserted
+     */
+    @Modifying
+    @Query("update CartItem i set i.totalPriceMinor = i.singlePriceMinor * (i.quantity + :quantity), " +
+            "i.quantity = i.quantity + :quantity, i.reservedUntil = :reservedUntil " +
+            "where i.cart.id = :cartId and i.product.id = :productId")
+    int mergeQuantity(@Param("cartId") Long cartId, @Param("productId") Long productId,
+                      @Param("quantity") int quantity, @Param("reservedUntil") Instant reservedUntil);
+
+    /**
+     * Range scan over {@code idx_cart_items_reserved_until}, oldest first. The rows stay locked until the
+     * transaction ends, so a cart change racing the sweep either waits for it or is rolled back.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from CartItem i where i.reservedUntil < :now order by i.reservedUntil")
+    List<CartItem> findExpiredReservations(@Param("now") Instant now, Pageable pageable);
+
+    @Modifying
+    @Query("delete from CartItem i where i.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id = :cartId")
+    int deleteAllByCartId(@Param("cartId") Long cartId);
+
+    @Query("select i from CartItem i join fetch i.product p left join fetch p.category where i.cart.id = :cartId")
+    List<CartItem> findAllWithProductByCartId(@Param("cartId") Long cartId);
+
+    @Modifying
+    @Query("update CartItem i set i.totalPriceMinor = i.singlePriceMinor * :quantity, i.quantity = :quantity, " +
+            "i.reservedUntil = :reservedUntil where i.cart.id = :cartId and i.product.id = :productId")
+    int setQuantity(@Param("cartId") Long cartId, @Param("productId") Long productId,
+                    @Param("quantity") int quantity, @Param("reservedUntil") Instant reservedUntil);
+
+    @Modifying
+    @Query("delete from CartItem i where i.cart.id = :cartId and i.product.id = :productId")
+    int deleteByCartIdAndProductId(@Param("cartId") Long cartId, @Param("productId") Long productId);
+
+    @Query("select i from CartItem i join fetch i.product p where i.cart.id = :cartId and p.stockShards > 0")
+    List<CartItem> findAllWithShardedStockByCartId(@Param("cartId") Long cartId);
+
+    @Query("select coalesce(sum(i.quantity), 0) from CartItem i where i.reservedUntil >= :now")
+    long sumReservedQuantity(@Param("now") Instant now);
+
+    @Query("select new pl.skowrxn.springecommerce.dto.ProductReservationRow(p.id, p.name, p.stockQuantity, " +
+            "sum(i.quantity)) from CartItem i join i.product p where i.reservedUntil >= :now " +
+            "group by p.id, p.name, p.stockQuantity order by sum(i.quantity) desc")
+    List<ProductReservationRow> findReservationsByProduct(@Param("now") Instant now, Pageable pageable);
+
+    @Query("select new pl.skowrxn.springecommerce.dto.ProductReservationRow(p.id, p.name, p.stockQuantity, " +
+            "coalesce(sum(i.quantity), 0)) from Product p " +
+            "left join CartItem i on i.product = p and i.reservedUntil >= :now " +
+            "where p.id = :productId group by p.id, p.name, p.stockQuantity")
+    List<ProductReservationRow> findReservationsByProductId(@Param("productId") Long productId,
+                                                            @Param("now") Instant now);
+
 }
@@ -1,11 +1,93 @@
 package pl.skowrxn.springecommerce.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.dto.CartContentRow;
+import pl.skowrxn.springecommerce.dto.CartTotalCheck;
+import pl.skowrxn.springecommerce.dto.response.CartSummaryResponse;
 import pl.skowrxn.springecommerce.entity.Cart;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
 
+    @Query("select c.id from Cart c where c.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+
+    @Query("select c from Cart c where c.user.id = :userId")
+    Optional<Cart> findByUserId(@Param("userId") Long userId);
+
+    @Query("select c.revision from Cart c where c.id = :id")
+    Optional<Long> findRevisionById(@Param("id") Long id);
+
+    /**
+     * Reads the summary columns of the cart through the unique key on {@code user_id}, without its items.
+     */
+    @Query("select new pl.skowrxn.springecommerce.dto.response.CartSummaryResponse(c.id, c.itemCount, " +
+            "c.totalPriceMinor, c.updatedAt, c.revision) from Cart c where c.user.id = :userId")
+    Optional<CartSummaryResponse> findSummaryByUserId(@Param("userId") Long userId);
+
+    @Query("select new pl.skowrxn.springecommerce.dto.CartContentRow(c.id, c.totalPriceMinor, c.revision, " +
+            "i.id, i.quantity, i.singlePriceMinor, i.totalPriceMinor, " +
+            "p.id, p.name, p.description, p.image, p.stockQuantity, p.regularPrice, p.price, p.discount, " +
+            "cat.id, cat.name) " +
+            "from Cart c left join c.items i left join i.product p left join p.category cat " +
+            "where c.user.id = :userId order by i.id")
+    List<CartContentRow> findContentByUserId(@Param("userId") Long userId);
+
+    /**
+     * Moves the total and the item count by the difference a cart change made and raises the revision, without
+     * reading the cart or its items. The in-memory {@link Cart} is not updated and must not be saved afterwards.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Cart c set c.totalPriceMinor = c.totalPriceMinor + :priceDelta, " +
+            "c.itemCount = c.itemCount + :itemDelta, c.updatedAt = :modifiedAt, c.revision = c.revision + 1 " +
+            "where c.id = :id")
+    int addToTotals(@Param("id") Long id, @Param("priceDelta") long priceDelta, @Param("itemDelta") int itemDelta,
+                    @Param("modifiedAt") Instant modifiedAt);
+
+    @Modifying
+    @Transactional
+    @Query("update Cart c set c.totalPriceMinor = 0, c.itemCount = 0, c.updatedAt = :modifiedAt, " +
+            "c.revision = c.revision + 1 where c.id = :id")
+    int resetTotals(@Param("id") Long id, @Param("modifiedAt") Instant modifiedAt);
+
+    /**
+     * Like {@link #resetTotals}, but only while the cart is still at {@code revision}.
+     *
+     * @return 0 when the cart was changed since that revision was read
+     */
+    @Modifying
+    @Transactional
+    @Query("update Cart c set c.totalPriceMinor = 0, c.itemCount = 0, c.updatedAt = :modifiedAt, " +
+            "c.revision = c.revision + 1 where c.id = :id and c.revision = :revision")
+    int resetTotalsAtRevision(@Param("id") Long id, @Param("revision") long revision,
+                              @Param("modifiedAt") Instant modifiedAt);
+
+    @Modifying
+    @Transactional
+    @Query("update Cart c set " +
+            "c.totalPriceMinor = coalesce((select sum(i.totalPriceMinor) from CartItem i where i.cart = c), 0), " +
+            "c.itemCount = (select count(i) from CartItem i where i.cart = c), " +
+            "c.updatedAt = :modifiedAt, c.revision = c.revision + 1 where c.id in :ids")
+    int recalculateTotals(@Param("ids") Collection<Long> ids, @Param("modifiedAt") Instant modifiedAt);
+
+    /**
+     * One page of carts after {@code afterId} with their stored total and the sum of their items, in minor units.
+     */
+    @Query("select new pl.skowrxn.springecommerce.dto.CartTotalCheck(c.id, c.totalPriceMinor, " +
+            "coalesce(sum(i.totalPriceMinor), 0)) from Cart c left join c.items i " +
+            "where c.id > :afterId group by c.id, c.totalPriceMinor order by c.id")
+    List<CartTotalCheck> findTotalChecks(@Param("afterId") Long afterId, Pageable pageable);
 
 }
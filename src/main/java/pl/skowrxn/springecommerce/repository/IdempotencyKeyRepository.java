@@ -0,0 +1,30 @@
+package pl.skowrxn.springecommerce.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.IdempotencyKey;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    Optional<IdempotencyKey> findByUserIdAndKey(Long userId, String key);
+
+    @Query("select k.id from IdempotencyKey k where k.createdAt < :createdBefore order by k.createdAt")
+    List<Long> findIdsCreatedBefore(@Param("createdBefore") Instant createdBefore, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyKey k where k.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+}
@@ -0,0 +1,50 @@
+package pl.skowrxn.springecommerce.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.OrderOutboxEvent;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    @Query("select e.id from OrderOutboxEvent e where e.status = PENDING and e.nextAttemptAt <= :now " +
+            "order by e.nextAttemptAt")
+    List<Long> findDueIds(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Takes the events that are still due under {@code claimToken} until {@code claimedUntil}; events due again
+     * after that were abandoned by a dispatcher that stopped, and can be claimed by another one.
+     */
+    @Modifying
+    @Transactional
+    @Query("update OrderOutboxEvent e set e.claimToken = :claimToken, e.nextAttemptAt = :claimedUntil " +
+            "where e.id in :ids and e.status = PENDING and e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claimToken") UUID claimToken, @Param("now") Instant now,
+              @Param("claimedUntil") Instant claimedUntil);
+
+    List<OrderOutboxEvent> findAllByIdInAndClaimToken(Collection<Long> ids, UUID claimToken);
+
+    @Modifying
+    @Transactional
+    @Query("update OrderOutboxEvent e set e.status = DONE, e.attempts = e.attempts + 1, e.claimToken = null, " +
+            "e.processedAt = :processedAt where e.id = :id")
+    int markDone(@Param("id") Long id, @Param("processedAt") Instant processedAt);
+
+    @Modifying
+    @Transactional
+    @Query("update OrderOutboxEvent e set e.status = :status, e.attempts = e.attempts + 1, e.claimToken = null, " +
+            "e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError where e.id = :id")
+    int markAttemptFailed(@Param("id") Long id, @Param("status") OrderOutboxEvent.Status status,
+                          @Param("nextAttemptAt") Instant nextAttemptAt, @Param("lastError") String lastError);
+
+}
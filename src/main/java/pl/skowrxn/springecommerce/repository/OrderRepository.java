@@ -1,10 +1,57 @@
 package pl.skowrxn.springecommerce.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.dto.OrderSummaryDTO;
 import pl.skowrxn.springecommerce.entity.Order;
+import pl.skowrxn.springecommerce.entity.Payment;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, UUID> {
+
+    /**
+     * Links the payment without loading the order and its items.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Order o set o.payment = :payment where o.id = :id")
+    int setPayment(@Param("id") UUID id, @Param("payment") Payment payment);
+
+    /**
+     * The newest orders of the user, read from the {@code idx_orders_user_history} index alone.
+     */
+    @Query("select new pl.skowrxn.springecommerce.dto.OrderSummaryDTO(o.id, o.orderDate, o.totalPrice, o.status) " +
+            "from Order o where o.user.id = :userId order by o.orderDate desc, o.id desc")
+    List<OrderSummaryDTO> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * The orders of the user that come after the one with {@code orderDate} and {@code id}, newest first. Seeks
+     * to them in the index instead of skipping the earlier pages, so a page costs the same however deep it is.
+     */
+    @Query("select new pl.skowrxn.springecommerce.dto.OrderSummaryDTO(o.id, o.orderDate, o.totalPrice, o.status) " +
+            "from Order o where o.user.id = :userId " +
+            "and (o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)) " +
+            "order by o.orderDate desc, o.id desc")
+    List<OrderSummaryDTO> findSummariesByUserIdAfter(@Param("userId") Long userId,
+                                                     @Param("orderDate") LocalDate orderDate, @Param("id") UUID id,
+                                                     Pageable pageable);
+
+    /**
+     * The order with everything its detail view shows, items included, in one query.
+     */
+    @Query("select o from Order o join fetch o.user u left join fetch u.cart left join fetch o.shippingAddress " +
+            "left join fetch o.payment left join fetch o.orderItems i left join fetch i.product p " +
+            "left join fetch p.category where o.id = :id and u.id = :userId")
+    Optional<Order> findWithItemsByIdAndUserId(@Param("id") UUID id, @Param("userId") Long userId);
 
 }
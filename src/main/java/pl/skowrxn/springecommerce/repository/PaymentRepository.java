@@ -4,7 +4,11 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import pl.skowrxn.springecommerce.entity.Payment;
 
+import java.util.UUID;
+
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, Long> {
+public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+
+    boolean existsByOrderId(UUID orderId);
 
 }
@@ -1,12 +1,19 @@
 package pl.skowrxn.springecommerce.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.skowrxn.springecommerce.entity.Category;
 import pl.skowrxn.springecommerce.entity.Product;
 
+import java.util.Optional;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
@@ -14,4 +21,47 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Page<Product> findByNameLikeIgnoreCase(String keyword, Pageable pageable);
 
+    @Query("select p.stockQuantity from Product p where p.id = :id")
+    Optional<Integer> findStockQuantityById(@Param("id") Long id);
+
+    @Query("select coalesce(p.stockShards, 0) from Product p where p.id = :id")
+    Optional<Integer> findStockShardsById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Product p where p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Leaves products with sharded stock alone, their {@code stockQuantity} is only a snapshot.
+     */
+    @Modifying
+    @Query("update Product p set p.stockQuantity = p.stockQuantity - :quantity " +
+            "where p.id = :id and p.stockQuantity >= :quantity and coalesce(p.stockShards, 0) = 0")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Leaves products with sharded stock alone, their {@code stockQuantity} is only a snapshot.
+     */
+    @Modifying
+    @Query("update Product p set p.stockQuantity = p.stockQuantity + :quantity " +
+            "where p.id = :id and coalesce(p.stockShards, 0) = 0")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Gives the quantities held by the cart back to the stock of its products, summed per product.
+     * Leaves products with sharded stock alone, like {@link #incrementStock}.
+     */
+    @Modifying
+    @Query("update Product p set p.stockQuantity = p.stockQuantity + " +
+            "(select sum(i.quantity) from CartItem i where i.cart.id = :cartId and i.product = p) " +
+            "where coalesce(p.stockShards, 0) = 0 " +
+            "and p.id in (select i.product.id from CartItem i where i.cart.id = :cartId)")
+    int incrementStockByCartId(@Param("cartId") Long cartId);
+
+    @Modifying
+    @Query("update Product p set p.stockQuantity = " +
+            "(select coalesce(sum(s.quantity), 0) from ProductStockShard s where s.product = p) " +
+            "where p.stockShards > 0")
+    int refreshShardedStockSnapshots();
+
 }
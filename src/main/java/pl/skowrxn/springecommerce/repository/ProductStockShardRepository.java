@@ -0,0 +1,40 @@
+package pl.skowrxn.springecommerce.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pl.skowrxn.springecommerce.entity.ProductStockShard;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockShardRepository extends JpaRepository<ProductStockShard, Long> {
+
+    @Modifying
+    @Query("update ProductStockShard s set s.quantity = s.quantity - :quantity " +
+            "where s.product.id = :productId and s.shardIndex = :shardIndex and s.quantity >= :quantity")
+    int decrementShard(@Param("productId") Long productId, @Param("shardIndex") int shardIndex,
+                       @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("update ProductStockShard s set s.quantity = s.quantity + :quantity " +
+            "where s.product.id = :productId and s.shardIndex = :shardIndex")
+    int incrementShard(@Param("productId") Long productId, @Param("shardIndex") int shardIndex,
+                       @Param("quantity") int quantity);
+
+    @Query("select coalesce(sum(s.quantity), 0) from ProductStockShard s where s.product.id = :productId")
+    long sumQuantityByProductId(@Param("productId") Long productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ProductStockShard s where s.product.id = :productId order by s.shardIndex")
+    List<ProductStockShard> findAllByProductIdForUpdate(@Param("productId") Long productId);
+
+    @Modifying
+    @Query("delete from ProductStockShard s where s.product.id = :productId")
+    int deleteAllByProductId(@Param("productId") Long productId);
+
+}
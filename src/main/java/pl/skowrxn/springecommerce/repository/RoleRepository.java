@@ -8,7 +8,7 @@ import pl.skowrxn.springecommerce.entity.RoleType;
 import java.util.List;
 
 @Repository
-public interface RoleRepository extends JpaRepository<Role, Long> {
+public interface RoleRepository extends JpaRepository<Role, Integer> {
 
     List<Role> findRolesByRoleType(RoleType roleType);
 
@@ -1,6 +1,8 @@
 package pl.skowrxn.springecommerce.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.skowrxn.springecommerce.entity.User;
 
@@ -13,8 +15,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
 
-    Boolean existsByUsernameIgnoreCase(String email);
-
-    Boolean existsByEmailIgnoreCase(String username);
+    @Query("select u from User u left join fetch u.cart c left join fetch c.items i " +
+            "left join fetch i.product p left join fetch p.category where u.id = :id")
+    Optional<User> findWithCartById(@Param("id") Long id);
 
 }
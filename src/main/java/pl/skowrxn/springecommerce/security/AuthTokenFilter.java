@@ -1,11 +1,14 @@
 package pl.skowrxn.springecommerce.security;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,6 +16,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
 
 import java.io.IOException;
 
@@ -21,12 +25,26 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
     private final JWTUtils jwtUtils;
     private final UserDetailsService userDetailsService;
+    private final JWTDenylist jwtDenylist;
+    private final boolean statelessPrincipal;
+    private final Counter principalLookups;
+    private final Counter principalLookupsAvoided;
 
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
-    public AuthTokenFilter(JWTUtils jwtUtils, UserDetailsService userDetailsService) {
+    public AuthTokenFilter(JWTUtils jwtUtils, UserDetailsService userDetailsService, JWTDenylist jwtDenylist,
+                           MeterRegistry meterRegistry,
+                           @Value("${spring.app.jwtStatelessPrincipal:false}") boolean statelessPrincipal) {
         this.jwtUtils = jwtUtils;
         this.userDetailsService = userDetailsService;
+        this.jwtDenylist = jwtDenylist;
+        this.statelessPrincipal = statelessPrincipal;
+        this.principalLookups = Counter.builder("auth.principal.lookups")
+                .description("Authenticated requests that loaded the principal from the database")
+                .register(meterRegistry);
+        this.principalLookupsAvoided = Counter.builder("auth.principal.lookups.avoided")
+                .description("Authenticated requests that rebuilt the principal from token claims")
+                .register(meterRegistry);
     }
 
     @Override
@@ -44,10 +62,22 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
 
         String token = this.jwtUtils.getJWTFromCookies(request);
-        if (token != null && this.jwtUtils.validateJwtToken(token)) {
-            String username = this.jwtUtils.getUsernameFromJWT(token);
+        JWTClaims claims = token != null ? this.jwtUtils.parseJwtToken(token) : null;
+        if (claims != null && this.jwtDenylist.isRevoked(claims)) {
+            logger.debug("Rejected revoked token for user {}", claims.getUsername());
+            claims = null;
+        }
+        if (claims != null) {
+            String username = claims.getUsername();
 
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails;
+            if (this.statelessPrincipal && claims.hasPrincipal()) {
+                userDetails = UserDetailsImpl.build(claims);
+                this.principalLookupsAvoided.increment();
+            } else {
+                userDetails = this.userDetailsService.loadUserByUsername(username);
+                this.principalLookups.increment();
+            }
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                     userDetails, null, userDetails.getAuthorities());
 
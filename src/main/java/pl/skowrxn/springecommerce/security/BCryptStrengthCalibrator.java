@@ -0,0 +1,38 @@
+package pl.skowrxn.springecommerce.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the highest BCrypt strength whose single hash fits in the given latency budget on this machine.
+ * Every extra strength step doubles the work, so one measurement at the minimum strength is enough to extrapolate.
+ */
+public final class BCryptStrengthCalibrator {
+
+    public static final int MIN_STRENGTH = 10;
+    public static final int MAX_STRENGTH = 16;
+
+    private static final Logger logger = LoggerFactory.getLogger(BCryptStrengthCalibrator.class);
+
+    private BCryptStrengthCalibrator() {
+    }
+
+    public static int calibrate(long budgetMs) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(MIN_STRENGTH);
+        // The first hash pays for class loading and JIT warm-up
+        encoder.encode("calibration");
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        double baseMs = Math.max((System.nanoTime() - start) / 1_000_000.0, 0.001);
+
+        int strength = MIN_STRENGTH;
+        while (strength < MAX_STRENGTH && baseMs * (1L << (strength + 1 - MIN_STRENGTH)) <= budgetMs) {
+            strength++;
+        }
+        logger.info("BCrypt strength {} selected for a {} ms budget ({} ms measured at strength {})",
+                strength, budgetMs, String.format("%.1f", baseMs), MIN_STRENGTH);
+        return strength;
+    }
+
+}
@@ -0,0 +1,36 @@
+package pl.skowrxn.springecommerce.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class JWTClaims {
+
+    private final String username;
+    private final String keyId;
+    private final Date issuedAt;
+    private final Date expiration;
+
+    // Principal claims, absent in tokens issued before they were introduced
+    private final Long userId;
+    private final String email;
+    private final List<String> roles;
+    private final Long issuedAtMillis;
+
+    public boolean hasPrincipal() {
+        return this.userId != null && this.roles != null;
+    }
+
+    public long getIssuedAtMillisOrUpperBound() {
+        if (this.issuedAtMillis != null) {
+            return this.issuedAtMillis;
+        }
+        // "iat" is truncated to seconds, assume the latest instant of that second
+        return this.issuedAt == null ? 0L : this.issuedAt.getTime() + 999L;
+    }
+
+}
@@ -0,0 +1,57 @@
+package pl.skowrxn.springecommerce.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
+
+import java.time.Duration;
+
+/**
+ * Rejects tokens issued to a user before the user logged out or was changed.
+ * Entries only need to outlive the tokens they revoke, so they expire after the JWT lifetime.
+ * The size bound should stay well above the number of revocations expected within that window,
+ * since an entry evicted early makes the tokens it revoked valid again.
+ */
+@Component
+public class JWTDenylist {
+
+    private static final Logger logger = LoggerFactory.getLogger(JWTDenylist.class);
+
+    private final Cache<String, Long> revokedBefore;
+
+    public JWTDenylist(@Value("${spring.app.jwtExpirationMs}") long jwtExpirationMs,
+                       @Value("${spring.app.jwtDenylistMaxSize:100000}") long maxSize) {
+        this.revokedBefore = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(jwtExpirationMs))
+                .build();
+    }
+
+    public void revoke(String username) {
+        long now = System.currentTimeMillis();
+        this.revokedBefore.asMap().merge(username, now, Math::max);
+        logger.debug("Revoked tokens issued to {} before {}", username, now);
+    }
+
+    public boolean isRevoked(JWTClaims claims) {
+        Long revokedAt = this.revokedBefore.getIfPresent(claims.getUsername());
+        return revokedAt != null && claims.getIssuedAtMillisOrUpperBound() <= revokedAt;
+    }
+
+    /**
+     * Runs after the change commits, so tokens issued while it was still pending are revoked as well.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getType() != UserChangedEvent.Type.CREATED) {
+            this.revoke(event.getUsername());
+        }
+    }
+
+}
@@ -8,28 +8,73 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.WebUtils;
 import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 public class JWTUtils {
 
-    @Value("${spring.app.jwtSecret}")
-    private String jwtSecret;
+    private static final int MAX_PREVIOUS_KEYS = 4;
 
-    @Value("${spring.app.jwtExpirationMs}")
-    private long jwtExpirationMs;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String EMAIL_CLAIM = "email";
+    public static final String ROLES_CLAIM = "roles";
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
 
-    @Value("${spring.app.jwtCookieName}")
-    private String jwtCookie;
+    private final long jwtExpirationMs;
+    private final String jwtCookie;
 
+    // Decoded once at startup; the current key signs new tokens, the previous ones only verify
+    private final String currentKeyId;
+    private final SecretKey currentKey;
+    private final Map<String, SecretKey> verificationKeys;
+    private final JwtParser jwtParser;
 
     private static final Logger logger = org.slf4j.LoggerFactory.getLogger(JWTUtils.class);
 
+    public JWTUtils(@Value("${spring.app.jwtSecret}") String jwtSecret,
+                    @Value("${spring.app.jwtExpirationMs}") long jwtExpirationMs,
+                    @Value("${spring.app.jwtCookieName}") String jwtCookie,
+                    @Value("${spring.app.jwtKeyId:primary}") String jwtKeyId,
+                    @Value("${spring.app.jwtPreviousKeys:}") List<String> jwtPreviousKeys) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.jwtCookie = jwtCookie;
+        this.currentKeyId = jwtKeyId;
+        this.currentKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        keys.put(jwtKeyId, this.currentKey);
+        for (String entry : jwtPreviousKeys) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Previous JWT key must be in the form <kid>:<base64 secret>");
+            }
+            if (keys.size() > MAX_PREVIOUS_KEYS) {
+                throw new IllegalArgumentException("At most " + MAX_PREVIOUS_KEYS + " previous JWT keys can be active");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            keys.putIfAbsent(keyId, Keys.hmacShaKeyFor(Decoders.BASE64.decode(entry.substring(separator + 1).trim())));
+        }
+        this.verificationKeys = Collections.unmodifiableMap(keys);
+        this.jwtParser = Jwts.parser()
+                .keyLocator(this::locateKey)
+                .build();
+    }
+
     public String getJWTFromCookies(HttpServletRequest request) {
         Cookie cookie = WebUtils.getCookie(request, jwtCookie);
         if (cookie == null) {
@@ -41,7 +86,7 @@ public class JWTUtils {
     }
 
     public ResponseCookie generateJwtCookie(UserDetailsImpl userDetails) {
-        String jwt = generateJWTToken(userDetails.getUsername());
+        String jwt = generateJWTToken(userDetails);
         return ResponseCookie.from(jwtCookie, jwt)
                 .path("/")
                 .maxAge(24 * 60 * 60)
@@ -59,44 +104,87 @@ public class JWTUtils {
 
 
     public String generateJWTToken(String username) {
-        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(this.jwtSecret));
+        return this.tokenBuilder(username, new Date()).compact();
+    }
 
-        return Jwts.builder()
-                .subject(username)
-                .issuedAt(new Date())
-                .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key)
+    public String generateJWTToken(UserDetailsImpl userDetails) {
+        Date now = new Date();
+        List<String> roles = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+        return this.tokenBuilder(userDetails.getUsername(), now)
+                .claim(USER_ID_CLAIM, userDetails.getId())
+                .claim(EMAIL_CLAIM, userDetails.getEmail())
+                .claim(ROLES_CLAIM, roles)
+                .claim(ISSUED_AT_MILLIS_CLAIM, now.getTime())
                 .compact();
     }
 
-
-    public String getUsernameFromJWT(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(this.jwtSecret));
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload().getSubject();
+    private JwtBuilder tokenBuilder(String username, Date now) {
+        return Jwts.builder()
+                .header().keyId(this.currentKeyId).and()
+                .subject(username)
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + jwtExpirationMs))
+                .signWith(this.currentKey);
     }
 
-    public boolean validateJwtToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(this.jwtSecret));
+    /**
+     * Verifies the signature and expiry of the token and extracts its claims in one pass.
+     *
+     * @return the verified claims, or {@code null} when the token is invalid
+     */
+    public JWTClaims parseJwtToken(String token) {
         try {
-            Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
-            return true;
-        } catch (MalformedJwtException e) {
-            System.out.println("Invalid JWT token: " + e.getMessage());
+            Jws<Claims> jws = this.jwtParser.parseSignedClaims(token);
+            Claims claims = jws.getPayload();
+            return new JWTClaims(claims.getSubject(), jws.getHeader().getKeyId(),
+                    claims.getIssuedAt(), claims.getExpiration(),
+                    claims.get(USER_ID_CLAIM, Long.class),
+                    claims.get(EMAIL_CLAIM, String.class),
+                    this.extractRoles(claims),
+                    claims.get(ISSUED_AT_MILLIS_CLAIM, Long.class));
         } catch (ExpiredJwtException e) {
-            System.out.println("JWT token is expired: " + e.getMessage());
-            return false;
+            logger.debug("JWT token is expired: {}", e.getMessage());
+        } catch (MalformedJwtException e) {
+            logger.warn("Invalid JWT token: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
-            System.out.println("JWT token is unsupported: " + e.getMessage());
-            return false;
+            logger.warn("JWT token is unsupported: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.warn("JWT token could not be verified: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
-            System.out.println("JWT claims string is empty: " + e.getMessage());
-            return false;
+            logger.warn("JWT claims string is empty: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    public String getUsernameFromJWT(String token) {
+        return this.jwtParser.parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    public boolean validateJwtToken(String token) {
+        return this.parseJwtToken(token) != null;
+    }
+
+    private List<String> extractRoles(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof Collection<?> collection)) {
+            return null;
+        }
+        return collection.stream().map(String::valueOf).toList();
+    }
+
+    private Key locateKey(Header header) {
+        String keyId = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (keyId == null) {
+            // Tokens issued before key ids were introduced are signed with the current secret
+            return this.currentKey;
+        }
+        SecretKey key = this.verificationKeys.get(keyId);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown JWT key id: " + keyId);
         }
-        return false;
+        return key;
     }
 
 }
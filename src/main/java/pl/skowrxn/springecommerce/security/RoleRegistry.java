@@ -0,0 +1,75 @@
+package pl.skowrxn.springecommerce.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.entity.Role;
+import pl.skowrxn.springecommerce.entity.RoleType;
+import pl.skowrxn.springecommerce.repository.RoleRepository;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the role rows, which never change after bootstrap. Roles are handed out as
+ * persistence context references, so resolving them during signup or import issues no queries.
+ */
+@Component
+public class RoleRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    private final RoleRepository roleRepository;
+
+    private volatile Map<RoleType, Integer> roleIds = Collections.emptyMap();
+
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @PostConstruct
+    public synchronized void refresh() {
+        Map<RoleType, Integer> ids = new EnumMap<>(RoleType.class);
+        this.roleRepository.findAll().forEach(role -> ids.putIfAbsent(role.getRoleType(), role.getId()));
+        this.roleIds = Collections.unmodifiableMap(ids);
+        logger.info("Loaded roles: {}", ids.keySet());
+    }
+
+    public static RoleType toRoleType(String roleName) {
+        return switch (roleName) {
+            case "admin" -> RoleType.ROLE_ADMIN;
+            case "seller" -> RoleType.ROLE_SELLER;
+            default -> RoleType.ROLE_USER;
+        };
+    }
+
+    public Set<RoleType> resolveRoleTypes(Set<String> roleNames) {
+        if (roleNames == null || roleNames.isEmpty()) {
+            return EnumSet.of(RoleType.ROLE_USER);
+        }
+        Set<RoleType> roleTypes = EnumSet.noneOf(RoleType.class);
+        roleNames.forEach(roleName -> roleTypes.add(toRoleType(roleName)));
+        return roleTypes;
+    }
+
+    public Integer getRoleId(RoleType roleType) {
+        Integer roleId = this.roleIds.get(roleType);
+        if (roleId == null) {
+            // Roles may have been inserted after startup
+            this.refresh();
+            roleId = this.roleIds.get(roleType);
+        }
+        if (roleId == null) {
+            throw new RuntimeException("Error: Role " + roleType + " not found.");
+        }
+        return roleId;
+    }
+
+    public List<Role> resolve(Set<String> roleNames) {
+        List<Role> roles = new ArrayList<>();
+        this.resolveRoleTypes(roleNames)
+                .forEach(roleType -> roles.add(this.roleRepository.getReferenceById(this.getRoleId(roleType))));
+        return roles;
+    }
+
+}
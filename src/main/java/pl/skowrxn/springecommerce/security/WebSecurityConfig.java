@@ -1,5 +1,7 @@
 package pl.skowrxn.springecommerce.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,6 +15,7 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -21,37 +24,55 @@ import pl.skowrxn.springecommerce.entity.RoleType;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.repository.RoleRepository;
 import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.security.service.PasswordHashingService;
+import pl.skowrxn.springecommerce.security.service.PooledPasswordEncoder;
 import pl.skowrxn.springecommerce.security.service.UserDetailsServiceImpl;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig {
 
+    private static final String BCRYPT_ENCODER_ID = "bcrypt";
+
     private final AuthEntryPointJWT unauthorizedHandler;
     private final UserDetailsServiceImpl userDetailsService;
+    private final int passwordStrength;
+    private final long passwordHashBudgetMs;
 
-    public WebSecurityConfig(AuthEntryPointJWT unauthorizedHandler, UserDetailsServiceImpl userDetailsService) {
+    public WebSecurityConfig(AuthEntryPointJWT unauthorizedHandler, UserDetailsServiceImpl userDetailsService,
+                             @Value("${spring.app.password.strength:0}") int passwordStrength,
+                             @Value("${spring.app.password.hashBudgetMs:250}") long passwordHashBudgetMs) {
         this.unauthorizedHandler = unauthorizedHandler;
         this.userDetailsService = userDetailsService;
+        this.passwordStrength = passwordStrength;
+        this.passwordHashBudgetMs = passwordHashBudgetMs;
     }
 
     @Bean
-    public AuthTokenFilter authTokenFilter(JWTUtils jwtUtils, UserDetailsService userDetailsService) {
-        return new AuthTokenFilter(jwtUtils, userDetailsService);
+    public AuthTokenFilter authTokenFilter(JWTUtils jwtUtils, UserDetailsService userDetailsService,
+                                           JWTDenylist jwtDenylist, MeterRegistry meterRegistry,
+                                           @Value("${spring.app.jwtStatelessPrincipal:false}") boolean statelessPrincipal) {
+        return new AuthTokenFilter(jwtUtils, userDetailsService, jwtDenylist, meterRegistry, statelessPrincipal);
     }
 
     @Bean
-        public DaoAuthenticationProvider daoAuthenticationProvider() {
+        public DaoAuthenticationProvider daoAuthenticationProvider(PasswordHashingService passwordHashingService) {
             DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
             provider.setUserDetailsService(this.userDetailsService);
-            provider.setPasswordEncoder(this.passwordEncoder());
+            // Only the hashing is bounded by the pool, a full queue fails the login with a 429
+            provider.setPasswordEncoder(new PooledPasswordEncoder(passwordHashingService));
+            // Re-hashes passwords stored without an encoder id or with a lower strength after a successful login
+            provider.setUserDetailsPasswordService(this.userDetailsService);
         return provider;
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, AuthTokenFilter authTokenFilter) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AuthTokenFilter authTokenFilter,
+                                           DaoAuthenticationProvider daoAuthenticationProvider) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable);
         http.exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler));
         http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
@@ -59,10 +80,11 @@ public class WebSecurityConfig {
             auth.requestMatchers("/auth/**").permitAll()
                     .requestMatchers("/swagger-ui/**").permitAll() // Swagger UI ścieżki otwarte
                     .requestMatchers("/v3/api-docs/**").permitAll()
+                    .requestMatchers("/admin/**").hasRole("ADMIN")
                     .anyRequest().authenticated()
         );
 
-        http.authenticationProvider(this.daoAuthenticationProvider());
+        http.authenticationProvider(daoAuthenticationProvider);
         http.addFilterBefore(authTokenFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -80,7 +102,15 @@ public class WebSecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        int strength = this.passwordStrength > 0
+                ? this.passwordStrength
+                : BCryptStrengthCalibrator.calibrate(this.passwordHashBudgetMs);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT_ENCODER_ID, new BCryptPasswordEncoder(strength));
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(BCRYPT_ENCODER_ID, encoders);
+        // Hashes created before encoder ids were introduced are plain BCrypt strings
+        passwordEncoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return passwordEncoder;
     }
 
     @Bean
@@ -0,0 +1,92 @@
+package pl.skowrxn.springecommerce.security.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import pl.skowrxn.springecommerce.exception.TooManyRequestsException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing and verification on a dedicated, bounded pool so that a login storm
+ * never hashes on more threads than there are cores. When the queue is full the work is
+ * rejected immediately and the client is told when to retry.
+ * <p>
+ * {@link #encode} and {@link #matches} block the calling request thread until the pool has done the work,
+ * so this is a bounded-concurrency gate, not a way to free request threads: at most
+ * {@code hashingThreads + hashingQueueCapacity} requests wait on it, everything beyond that gets a 429.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final ThreadPoolExecutor executor;
+    private final PasswordEncoder passwordEncoder;
+    private final long retryAfterSeconds;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                                  @Value("${spring.app.password.hashingThreads:0}") int threads,
+                                  @Value("${spring.app.password.hashingQueueCapacity:64}") int queueCapacity,
+                                  @Value("${spring.app.password.retryAfterSeconds:1}") long retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.passwordEncoder = passwordEncoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+        Gauge.builder("auth.password.hashing.queue", this.executor, pool -> pool.getQueue().size())
+                .description("Password hashing tasks waiting for a free thread")
+                .register(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this.executor);
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Too many authentication requests, please retry later",
+                    this.retryAfterSeconds);
+        }
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return this.await(() -> this.passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return this.await(() -> this.passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Only inspects the stored hash, so it does not need a pool thread.
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return this.passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T await(Supplier<T> task) {
+        try {
+            return this.submit(task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+}
@@ -0,0 +1,32 @@
+package pl.skowrxn.springecommerce.security.service;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Hands the hashing done during authentication to {@link PasswordHashingService}, so the user lookup and the
+ * re-hash of an outdated password stay on the calling thread and only BCrypt itself occupies the pool.
+ */
+public class PooledPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordHashingService passwordHashingService;
+
+    public PooledPasswordEncoder(PasswordHashingService passwordHashingService) {
+        this.passwordHashingService = passwordHashingService;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return this.passwordHashingService.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return this.passwordHashingService.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return this.passwordHashingService.upgradeEncoding(encodedPassword);
+    }
+
+}
@@ -0,0 +1,34 @@
+package pl.skowrxn.springecommerce.security.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "userdetailscache")
+public class UserDetailsCacheEndpoint {
+
+    private final UserDetailsServiceImpl userDetailsService;
+
+    public UserDetailsCacheEndpoint(UserDetailsServiceImpl userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = this.userDetailsService.getCacheStats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("size", this.userDetailsService.getCacheSize());
+        body.put("hits", stats.hitCount());
+        body.put("misses", stats.missCount());
+        body.put("hitRate", stats.hitRate());
+        body.put("evictions", stats.evictionCount());
+        body.put("loadFailures", stats.loadFailureCount());
+        return body;
+    }
+
+}
@@ -9,6 +9,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.security.JWTClaims;
 
 import java.io.Serial;
 import java.util.Collection;
@@ -47,6 +48,19 @@ public class UserDetailsImpl implements UserDetails {
                 authorities);
     }
 
+    public static UserDetailsImpl build(JWTClaims claims) {
+        List<GrantedAuthority> authorities = claims.getRoles().stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+                .toList();
+
+        return new UserDetailsImpl(
+                claims.getUserId(),
+                claims.getUsername(),
+                claims.getEmail(),
+                null,
+                authorities);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return this.authorities;
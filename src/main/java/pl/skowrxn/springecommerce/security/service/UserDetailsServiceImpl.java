@@ -1,25 +1,74 @@
 package pl.skowrxn.springecommerce.security.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
 import pl.skowrxn.springecommerce.repository.UserRepository;
 
+import java.time.Duration;
+
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private UserRepository userRepository;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    private final Cache<String, UserDetailsImpl> userDetailsCache;
+
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  @Value("${spring.app.userDetailsCache.maxSize:10000}") long maxSize,
+                                  @Value("${spring.app.userDetailsCache.ttl:PT5M}") Duration ttl) {
         this.userRepository = userRepository;
+        this.userDetailsCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
     }
 
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return this.userDetailsCache.get(username, this::loadFromDatabase);
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = this.userRepository.findByUsername(userDetails.getUsername()).orElseThrow(
+                () -> new UsernameNotFoundException("User not found with username = " + userDetails.getUsername())
+        );
+        user.setPassword(newPassword);
+        this.userDetailsCache.invalidate(user.getUsername());
+        return UserDetailsImpl.build(user);
+    }
+
+    public CacheStats getCacheStats() {
+        return this.userDetailsCache.stats();
+    }
+
+    public long getCacheSize() {
+        return this.userDetailsCache.estimatedSize();
+    }
+
+    /**
+     * Runs after the change commits, a load racing with the change could otherwise cache the state it replaces.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        this.userDetailsCache.invalidate(event.getUsername());
+    }
+
+    private UserDetailsImpl loadFromDatabase(String username) {
         User user = this.userRepository.findByUsername(username).orElseThrow(
                 () -> new UsernameNotFoundException("User not found with username = " + username)
         );
@@ -1,12 +1,12 @@
 package pl.skowrxn.springecommerce.service;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import pl.skowrxn.springecommerce.dto.AddressDTO;
 import pl.skowrxn.springecommerce.dto.response.AddressListResponse;
 import pl.skowrxn.springecommerce.entity.Address;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.AddressMapper;
 import pl.skowrxn.springecommerce.repository.AddressRepository;
 import pl.skowrxn.springecommerce.repository.UserRepository;
 
@@ -17,12 +17,12 @@ public class AddressServiceImpl implements AddressService {
 
     private final AddressRepository addressRepository;
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final AddressMapper addressMapper;
 
-    public AddressServiceImpl(AddressRepository addressRepository, UserRepository userRepository, ModelMapper modelMapper) {
+    public AddressServiceImpl(AddressRepository addressRepository, UserRepository userRepository, AddressMapper addressMapper) {
         this.addressRepository = addressRepository;
         this.userRepository = userRepository;
-        this.modelMapper = modelMapper;
+        this.addressMapper = addressMapper;
     }
 
     @Override
@@ -31,12 +31,12 @@ public class AddressServiceImpl implements AddressService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
         addressDTO.setDefaultAddress(user.getAddresses().isEmpty());
 
-        Address address = this.modelMapper.map(addressDTO, Address.class);
+        Address address = this.addressMapper.toEntity(addressDTO);
         address.setUser(user);
         user.getAddresses().add(address);
 
         Address savedAddress = this.addressRepository.save(address);
-        return this.modelMapper.map(savedAddress, AddressDTO.class);
+        return this.addressMapper.toDTO(savedAddress);
     }
 
     @Override
@@ -55,7 +55,7 @@ public class AddressServiceImpl implements AddressService {
             address.setDefaultAddress(true);
         }
         Address updatedAddress = this.addressRepository.save(address);
-        return this.modelMapper.map(updatedAddress, AddressDTO.class);
+        return this.addressMapper.toDTO(updatedAddress);
     }
 
     @Override
@@ -66,7 +66,7 @@ public class AddressServiceImpl implements AddressService {
         addressListResponse.setTotalAddresses(user.getAddresses().size());
         addressListResponse.setUserId(user.getId());
         addressListResponse.setAddresses(user.getAddresses().stream()
-                .map(address -> this.modelMapper.map(address, AddressDTO.class))
+                .map(address -> this.addressMapper.toDTO(address))
                 .toList());
         return addressListResponse;
     }
@@ -103,7 +103,7 @@ public class AddressServiceImpl implements AddressService {
                 .orElse(user.getAddresses().stream().findFirst().orElseThrow(
                         () -> new ResourceNotFoundException("Address", "userId", userId)));
 
-        return this.modelMapper.map(defaultAddress, AddressDTO.class);
+        return this.addressMapper.toDTO(defaultAddress);
     }
 
     @Override
@@ -125,6 +125,6 @@ public class AddressServiceImpl implements AddressService {
                 .findFirst()
                 .orElseThrow(() -> new ResourceNotFoundException("Address", "userId", user.getId()));
 
-        return this.modelMapper.map(updatedAddress, AddressDTO.class);
+        return this.addressMapper.toDTO(updatedAddress);
     }
 }
@@ -0,0 +1,224 @@
+package pl.skowrxn.springecommerce.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append-only file of the cart lines changed in the {@link WriteBehindCartStore} and not yet written to the
+ * database. Every entry holds the whole state of a line, so replaying the file in order, including entries
+ * that were already written, always leaves the same carts behind.
+ * <p>
+ * With {@code fsync} an append returns once its entries are on disk. Appends are written one at a time but
+ * synced as a group: while one sync is running, the entries appended meanwhile wait for it to end and are
+ * covered together by the next one, so edits do not queue for one sync each.
+ */
+public class CartRecoveryLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartRecoveryLog.class);
+
+    private final Path path;
+    private final boolean fsync;
+    private final List<Entry> appendedSinceMark = new ArrayList<>();
+    // Taken before the monitor of the log when both are needed
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private boolean marked;
+    // Appends so far, and how many of them are known to be on disk
+    private long appended;
+    private long synced;
+
+    public CartRecoveryLog(Path path, boolean fsync) {
+        this.path = path;
+        this.fsync = fsync;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = this.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open cart recovery log " + path, e);
+        }
+    }
+
+    public void append(Collection<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        entries.forEach(entry -> lines.append(entry.format()).append('\n'));
+        long position;
+        synchronized (this) {
+            try {
+                this.write(this.channel, lines.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to cart recovery log " + this.path, e);
+            }
+            if (this.marked) {
+                this.appendedSinceMark.addAll(entries);
+            }
+            position = ++this.appended;
+        }
+        if (this.fsync) {
+            this.syncUpTo(position);
+        }
+    }
+
+    /**
+     * Returns once the append at {@code position} is on disk, syncing it along with everything appended
+     * before the sync starts unless a sync that started later already covered it.
+     */
+    private void syncUpTo(long position) {
+        synchronized (this.syncLock) {
+            if (this.synced >= position) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = this.appended;
+                current = this.channel;
+            }
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not sync cart recovery log " + this.path, e);
+            }
+            this.synced = target;
+        }
+    }
+
+    /**
+     * Starts collecting appended entries, so that a {@link #rewrite} based on state read after this call
+     * keeps the entries appended in the meantime.
+     */
+    public synchronized void mark() {
+        this.appendedSinceMark.clear();
+        this.marked = true;
+    }
+
+    /**
+     * Replaces the file with {@code entries} and the entries appended since {@link #mark()}.
+     */
+    public void rewrite(Collection<Entry> entries) {
+        // Keeps a sync from running on the file while it is replaced
+        synchronized (this.syncLock) {
+            synchronized (this) {
+                this.rewriteFile(entries);
+            }
+        }
+    }
+
+    private void rewriteFile(Collection<Entry> entries) {
+        List<Entry> kept = new ArrayList<>(entries);
+        kept.addAll(this.appendedSinceMark);
+        this.appendedSinceMark.clear();
+        this.marked = false;
+
+        Path replacement = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(replacement, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder lines = new StringBuilder();
+            kept.forEach(entry -> lines.append(entry.format()).append('\n'));
+            this.write(out, lines.toString());
+            out.force(false);
+            this.channel.close();
+            Files.move(replacement, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel = this.open();
+            // Every append so far is either in the synced replacement or was no longer needed
+            this.synced = this.appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rewrite cart recovery log " + this.path, e);
+        }
+    }
+
+    public synchronized List<Entry> readAll() {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(this.path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    entries.add(Entry.parse(line));
+                } catch (RuntimeException e) {
+                    // Most likely the last line, torn by a crash while it was appended
+                    logger.warn("Skipping unreadable cart recovery log entry: {}", line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read cart recovery log " + this.path, e);
+        }
+        return entries;
+    }
+
+    public void close() {
+        synchronized (this.syncLock) {
+            synchronized (this) {
+                try {
+                    this.channel.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close cart recovery log {}", this.path, e);
+                }
+            }
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void write(FileChannel target, String content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * The state of one cart line; a quantity of 0 stands for a removed line.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        private final Long cartId;
+        private final Long productId;
+        private final int quantity;
+        private final long singlePriceMinor;
+        private final Instant reservedUntil;
+        private final boolean persisted;
+
+        String format() {
+            return this.cartId + "," + this.productId + "," + this.quantity + "," + this.singlePriceMinor + ","
+                    + (this.reservedUntil != null ? this.reservedUntil.toEpochMilli() : "-") + "," + this.persisted;
+        }
+
+        static Entry parse(String line) {
+            String[] fields = line.split(",");
+            if (fields.length != 6) {
+                throw new IllegalArgumentException("Expected 6 fields, got " + fields.length);
+            }
+            Instant reservedUntil = fields[4].equals("-") ? null : Instant.ofEpochMilli(Long.parseLong(fields[4]));
+            return new Entry(Long.valueOf(fields[0]), Long.valueOf(fields[1]), Integer.parseInt(fields[2]),
+                    Long.parseLong(fields[3]), reservedUntil, Boolean.parseBoolean(fields[5]));
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.repository.CartItemRepository;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives the stock of abandoned carts back to their products. Each batch runs in its own transaction,
+ * so a large backlog of expired items never holds locks for longer than one batch.
+ */
+@Component
+public class CartReservationSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartReservationSweeper.class);
+
+    private final StockReservationService stockReservationService;
+    private final CartItemRepository cartItemRepository;
+    private final int batchSize;
+    private final Counter expiredReservations;
+    private final AtomicLong reservedUnits = new AtomicLong();
+
+    public CartReservationSweeper(StockReservationService stockReservationService,
+                                  CartItemRepository cartItemRepository, MeterRegistry meterRegistry,
+                                  @Value("${spring.app.cart.reservationSweepBatchSize:500}") int batchSize) {
+        this.stockReservationService = stockReservationService;
+        this.cartItemRepository = cartItemRepository;
+        this.batchSize = batchSize;
+        this.expiredReservations = Counter.builder("cart.reservations.expired")
+                .description("Cart items removed because their reservation expired")
+                .register(meterRegistry);
+        Gauge.builder("cart.reservations.reserved", this.reservedUnits, AtomicLong::get)
+                .description("Units held by unexpired cart reservations, as of the last sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${spring.app.cart.reservationSweepIntervalMs:60000}")
+    public void sweep() {
+        this.sweep(Instant.now());
+    }
+
+    /**
+     * @return the number of cart items removed
+     */
+    public int sweep(Instant now) {
+        int total = 0;
+        int released;
+        do {
+            released = this.stockReservationService.releaseExpired(now, this.batchSize);
+            total += released;
+        } while (released == this.batchSize);
+
+        this.expiredReservations.increment(total);
+        this.reservedUnits.set(this.cartItemRepository.sumReservedQuantity(now));
+        if (total > 0) {
+            logger.info("Released {} expired cart reservations", total);
+        }
+        return total;
+    }
+
+}
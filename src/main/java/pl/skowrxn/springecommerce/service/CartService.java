@@ -1,9 +1,13 @@
 package pl.skowrxn.springecommerce.service;
 
+import pl.skowrxn.springecommerce.dto.CartOperationDTO;
 import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.dto.response.CartSummaryResponse;
 import pl.skowrxn.springecommerce.dto.CartItemDTO;
 import pl.skowrxn.springecommerce.entity.CartItem;
 
+import java.util.List;
+
 public interface CartService {
 
     CartItemDTO addToCart(Long productId, Integer quantity);
@@ -14,11 +18,31 @@ public interface CartService {
 
     void clearCart();
 
+    void clearCart(boolean releaseStock);
+
     Double getTotalPrice();
 
     Integer getTotalQuantity();
 
+    CartSummaryResponse getCartSummary();
+
+    /**
+     * @return the version of the logged in user's cart, changed by every change to its content, or {@code null}
+     * when the user has no cart yet
+     */
+    String getCartVersion();
+
     CartItemDTO updateCartItemQuantity(Long cartItemId, Integer quantity);
 
     CartContentResponse getCartContent();
+
+    CartContentResponse applyBatch(List<CartOperationDTO> operations);
+
+    void flushCart();
+
+    /**
+     * Forgets a copy of the logged in user's cart held in memory without writing it, for when checkout has
+     * already emptied the cart in the database.
+     */
+    void discardCart();
 }
@@ -1,21 +1,24 @@
 package pl.skowrxn.springecommerce.service;
 
 import jakarta.transaction.Transactional;
-import org.modelmapper.ModelMapper;
+import org.hibernate.Hibernate;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import pl.skowrxn.springecommerce.dto.*;
 import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.dto.response.CartSummaryResponse;
 import pl.skowrxn.springecommerce.entity.*;
 import pl.skowrxn.springecommerce.exception.ProductOutOfStockException;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.CartItemMapper;
 import pl.skowrxn.springecommerce.repository.CartItemRepository;
 import pl.skowrxn.springecommerce.repository.CartRepository;
 import pl.skowrxn.springecommerce.repository.ProductRepository;
 import pl.skowrxn.springecommerce.util.AuthUtil;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.time.Instant;
+import java.util.*;
 
 @Service
 public class CartServiceImpl implements CartService {
@@ -23,17 +26,20 @@ public class CartServiceImpl implements CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
     private final AuthUtil authUtil;
-    private final ModelMapper modelMapper;
+    private final CartItemMapper cartItemMapper;
 
     public CartServiceImpl(CartRepository cartRepository,
                            CartItemRepository cartItemRepository, ProductRepository productRepository,
-                           AuthUtil authUtil, ModelMapper modelMapper) {
+                           StockReservationService stockReservationService,
+                           AuthUtil authUtil, CartItemMapper cartItemMapper) {
         this.cartRepository = cartRepository;
         this.cartItemRepository = cartItemRepository;
         this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
         this.authUtil = authUtil;
-        this.modelMapper = modelMapper;
+        this.cartItemMapper = cartItemMapper;
     }
 
     @Override
@@ -41,55 +47,57 @@ public class CartServiceImpl implements CartService {
     public CartItemDTO addToCart(Long productId, Integer quantity) {
         Product product = this.productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-        if (product.getStockQuantity() < quantity) {
-            throw new ProductOutOfStockException(product, product.getStockQuantity(), quantity);
-        }
-
-        User user = this.authUtil.getLoggedInUser();
-        Cart cart = user.getCart();
-
-        if (cart == null) {
-            cart = new Cart();
-            cart.setUser(user);
-        }
+        int remainingStock = this.stockReservationService.reserve(product, quantity);
 
-        CartItem existingCartItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .orElse(null);
+        Long cartId = this.cartRepository.findIdByUserId(this.authUtil.getLoggedInUserId())
+                .orElseGet(this::createCart);
+        Instant reservedUntil = this.stockReservationService.holdUntil(product);
 
         CartItem updatedCartItem;
+        long totalDelta;
+
+        int itemDelta = 0;
 
-        if (existingCartItem != null) {
-            existingCartItem.setQuantity(existingCartItem.getQuantity() + quantity);
-            existingCartItem.setTotalPrice(existingCartItem.getSinglePrice() * existingCartItem.getQuantity());
-            updatedCartItem = this.cartItemRepository.save(existingCartItem);
+        if (this.cartItemRepository.mergeQuantity(cartId, productId, quantity, reservedUntil) > 0) {
+            updatedCartItem = this.cartItemRepository.findByCartIdAndProductId(cartId, productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("CartItem", "productId", productId));
+            totalDelta = updatedCartItem.getSinglePriceMinor() * quantity;
         } else {
             CartItem cartItem = new CartItem();
             cartItem.setProduct(product);
             cartItem.setSinglePrice(product.getPrice());
-            cartItem.setTotalPrice(product.getPrice() * quantity);
+            cartItem.setTotalPriceMinor(cartItem.getSinglePriceMinor() * quantity);
             cartItem.setQuantity(quantity);
-            cartItem.setCart(cart);
-            updatedCartItem = this.cartItemRepository.save(cartItem);
-            cart.getItems().add(cartItem);
+            cartItem.setCart(this.cartRepository.getReferenceById(cartId));
+            cartItem.setReservedUntil(reservedUntil);
+            try {
+                updatedCartItem = this.cartItemRepository.save(cartItem);
+            } catch (DataIntegrityViolationException e) {
+                // Another request added the same product between the merge and the insert
+                throw new ResourceConflictException("CartItem", "productId", productId);
+            }
+            totalDelta = updatedCartItem.getTotalPriceMinor();
+            itemDelta = 1;
         }
 
-        double newTotal = cart.getItems().stream()
-                .mapToDouble(CartItem::getTotalPrice)
-                .sum();
+        this.cartRepository.addToTotals(cartId, totalDelta, itemDelta, Instant.now());
 
-        cart.setTotalPrice(newTotal);
-        this.cartRepository.save(cart);
-
-        product.setStockQuantity(product.getStockQuantity() - quantity);
-        this.productRepository.save(product);
-
-        CartItemDTO dto = this.modelMapper.map(updatedCartItem, CartItemDTO.class);
-        dto.setProduct(this.modelMapper.map(updatedCartItem.getProduct(), ProductDTO.class));
+        CartItemDTO dto = this.cartItemMapper.toDTO(updatedCartItem);
+        // The loaded product predates the reservation, report the stock it left behind
+        if (dto.getProduct() != null) {
+            dto.getProduct().setStockQuantity(remainingStock);
+        }
         return dto;
     }
 
+    private Long createCart() {
+        User user = this.authUtil.getLoggedInUser();
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+        return this.cartRepository.save(cart).getId();
+    }
+
     @Override
     @Transactional
     public void removeFromCart(Long cartItemId) {
@@ -103,58 +111,68 @@ public class CartServiceImpl implements CartService {
     public void removeFromCart(CartItem cartItem) {
         Cart cart = cartItem.getCart();
 
-        Product product = cartItem.getProduct();
-        product.setStockQuantity(product.getStockQuantity() + cartItem.getQuantity());
-        this.productRepository.save(product);
+        this.stockReservationService.release(cartItem.getProduct().getId(), cartItem.getQuantity());
 
-        cart.setTotalPrice(cart.getTotalPrice() - cartItem.getTotalPrice());
-        cart.getItems().remove(cartItem);
+        // Only keep an already loaded collection in sync, loading it just to remove one item is wasted work
+        if (Hibernate.isInitialized(cart.getItems())) {
+            cart.getItems().remove(cartItem);
+        }
         this.cartItemRepository.delete(cartItem);
-        this.cartRepository.save(cart);
+        this.cartRepository.addToTotals(cart.getId(), -cartItem.getTotalPriceMinor(), -1, Instant.now());
     }
 
     @Override
     @Transactional
     public void clearCart() {
-        Cart cart = this.authUtil.getLoggedInUser().getCart();
+        this.clearCart(true);
+    }
 
-        if(cart == null) {
-            cart = new Cart();
-            cart.setUser(this.authUtil.getLoggedInUser());
+    /**
+     * Empties the cart in a fixed number of statements, whatever its size, without loading its items.
+     *
+     * @param releaseStock whether the reserved quantities go back to stock, which they must not after checkout
+     */
+    @Override
+    @Transactional
+    public void clearCart(boolean releaseStock) {
+        Long cartId = this.cartRepository.findIdByUserId(this.authUtil.getLoggedInUserId()).orElse(null);
+        if (cartId == null) {
+            return;
         }
 
-        cart.getItems().clear();
-        this.cartItemRepository.deleteAll(cart.getItems());
-        cart.setTotalPrice(0.0);
-
-        this.cartRepository.save(cart);
+        if (releaseStock) {
+            this.stockReservationService.releaseCart(cartId);
+        }
+        this.cartItemRepository.deleteAllByCartId(cartId);
+        this.cartRepository.resetTotals(cartId, Instant.now());
     }
 
     @Override
     public Double getTotalPrice() {
-        Cart cart = this.authUtil.getLoggedInUser().getCart();
-        if(cart == null) {
-            cart = new Cart();
-            cart.setUser(this.authUtil.getLoggedInUser());
-            this.cartRepository.save(cart);
-        }
-        return cart.getTotalPrice();
+        return this.getCartSummary().getTotalPrice();
     }
 
     @Override
     public Integer getTotalQuantity() {
-        Cart cart = this.authUtil.getLoggedInUser().getCart();
+        return this.getCartSummary().getQuantity();
+    }
 
-        if(cart == null) {
-            cart = new Cart();
-            cart.setUser(this.authUtil.getLoggedInUser());
-            this.cartRepository.save(cart);
-        }
+    @Override
+    public CartSummaryResponse getCartSummary() {
+        // A user without a cart reads an empty summary, the cart is created by the first change
+        return this.cartRepository.findSummaryByUserId(this.authUtil.getLoggedInUserId())
+                .orElseGet(() -> new CartSummaryResponse(null, 0, 0.0, null, null));
+    }
 
-        return cart.getItems().size();
+    @Override
+    public String getCartVersion() {
+        return this.cartRepository.findSummaryByUserId(this.authUtil.getLoggedInUserId())
+                .map(CartSummaryResponse::getVersion)
+                .orElse(null);
     }
 
     @Override
+    @Transactional
     public CartItemDTO updateCartItemQuantity(Long cartItemId, Integer quantity) {
         CartItem cartItem = this.cartItemRepository.findById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("CartItem", "id", cartItemId));
@@ -167,55 +185,208 @@ public class CartServiceImpl implements CartService {
             return null;
         }
 
+        int difference = quantity - cartItem.getQuantity();
+        if (difference > 0) {
+            this.stockReservationService.reserve(cartItem.getProduct(), difference);
+        } else if (difference < 0) {
+            this.stockReservationService.release(cartItem.getProduct().getId(), -difference);
+        }
+
+        long previousTotal = cartItem.getTotalPriceMinor();
         cartItem.setQuantity(quantity);
-        cartItem.setTotalPrice(cartItem.getSinglePrice() * quantity);
+        cartItem.setTotalPriceMinor(cartItem.getSinglePriceMinor() * quantity);
+        cartItem.setReservedUntil(this.stockReservationService.holdUntil(cartItem.getProduct()));
 
         CartItem savedCartitem = this.cartItemRepository.save(cartItem);
 
         Cart cart = cartItem.getCart();
         if (cart != null) {
-            double price = cart.getItems().stream().mapToDouble(CartItem::getTotalPrice).sum();
-            cart.setTotalPrice(price);
-            this.cartRepository.save(cart);
+            this.cartRepository.addToTotals(cart.getId(), cartItem.getTotalPriceMinor() - previousTotal, 0, Instant.now());
         }
-        CartItemDTO updatedDTO = this.modelMapper.map(savedCartitem, CartItemDTO.class);
-        updatedDTO.setProduct(this.modelMapper.map(savedCartitem.getProduct(), ProductDTO.class));
+        CartItemDTO updatedDTO = this.cartItemMapper.toDTO(savedCartitem);
         return updatedDTO;
     }
 
     @Override
     public CartContentResponse getCartContent() {
-        Cart cart = this.authUtil.getLoggedInUser().getCart();
+        List<CartContentRow> rows = this.cartRepository.findContentByUserId(this.authUtil.getLoggedInUserId());
 
-        if(cart == null) {
-            cart = new Cart();
-            cart.setUser(this.authUtil.getLoggedInUser());
+        if(rows.isEmpty()) {
+            User user = this.authUtil.getLoggedInUser();
+            Cart cart = new Cart();
+            cart.setUser(user);
+            user.setCart(cart);
             Cart savedCart = this.cartRepository.save(cart);
             CartContentResponse cartContentResponse = new CartContentResponse();
             cartContentResponse.setCartItems(Collections.emptyList());
             cartContentResponse.setQuantity(0);
             cartContentResponse.setTotalPrice(0.0);
             cartContentResponse.setId(savedCart.getId());
+            cartContentResponse.setVersion(Cart.versionOf(savedCart.getId(), savedCart.getRevision()));
             return cartContentResponse;
         }
 
         List<CartItemDTO> cartItemDTOs = new ArrayList<>();
-
-        for (CartItem cartItem : cart.getItems()) {
-            CartItemDTO cartItemDTO = this.modelMapper.map(cartItem, CartItemDTO.class);
-            cartItemDTO.setCartId(cartItem.getCart().getId());
-            cartItemDTO.setProduct(this.modelMapper.map(cartItem.getProduct(), ProductDTO.class));
-            cartItemDTOs.add(cartItemDTO);
+        for (CartContentRow row : rows) {
+            if (row.hasItem()) {
+                cartItemDTOs.add(this.toCartItemDTO(row));
+            }
         }
 
         CartContentResponse cartContentResponse = new CartContentResponse();
-        cartContentResponse.setId(cart.getId());
-        cartContentResponse.setQuantity(cart.getItems().size());
-        cartContentResponse.setTotalPrice(cart.getTotalPrice());
+        cartContentResponse.setId(rows.get(0).getCartId());
+        cartContentResponse.setQuantity(cartItemDTOs.size());
+        cartContentResponse.setTotalPrice(rows.get(0).getCartTotalPrice());
         cartContentResponse.setCartItems(cartItemDTOs);
+        cartContentResponse.setVersion(Cart.versionOf(rows.get(0).getCartId(), rows.get(0).getCartRevision()));
 
         return cartContentResponse;
     }
 
+    @Override
+    @Transactional
+    public CartContentResponse applyBatch(List<CartOperationDTO> operations) {
+        Long cartId = this.cartRepository.findIdByUserId(this.authUtil.getLoggedInUserId())
+                .orElseGet(this::createCart);
+
+        Set<Long> cartItemIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (CartOperationDTO operation : operations) {
+            if (operation.getType() == CartOperationDTO.Type.ADD) {
+                if (operation.getProductId() == null || operation.getQuantity() == null || operation.getQuantity() == 0) {
+                    throw new IllegalArgumentException("Adding to the cart requires a product id and a positive quantity");
+                }
+                productIds.add(operation.getProductId());
+            } else {
+                if (operation.getCartItemId() == null) {
+                    throw new IllegalArgumentException("Changing a cart item requires its id");
+                }
+                if (operation.getType() == CartOperationDTO.Type.UPDATE && operation.getQuantity() == null) {
+                    throw new IllegalArgumentException("Updating a cart item requires a quantity");
+                }
+                cartItemIds.add(operation.getCartItemId());
+            }
+        }
+
+        Map<Long, CartItem> linesById = new HashMap<>();
+        Map<Long, CartItem> linesByProduct = new HashMap<>();
+        for (CartItem line : this.cartItemRepository.findAllByCartIdAndIdsOrProductIds(cartId, cartItemIds, productIds)) {
+            linesById.put(line.getId(), line);
+            linesByProduct.put(line.getProduct().getId(), line);
+            productIds.add(line.getProduct().getId());
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : this.productRepository.findAllById(productIds)) {
+            products.put(product.getId(), product);
+        }
+
+        // Target quantity per product, ordered by id so that concurrent batches take row locks in the same order
+        Map<Long, Integer> targets = new TreeMap<>();
+        for (CartOperationDTO operation : operations) {
+            if (operation.getType() == CartOperationDTO.Type.ADD) {
+                Long productId = operation.getProductId();
+                if (!products.containsKey(productId)) {
+                    throw new ResourceNotFoundException("Product", "id", productId);
+                }
+                targets.put(productId, this.currentQuantity(targets, linesByProduct, productId) + operation.getQuantity());
+            } else {
+                CartItem line = linesById.get(operation.getCartItemId());
+                if (line == null) {
+                    throw new ResourceNotFoundException("CartItem", "id", operation.getCartItemId());
+                }
+                int quantity = operation.getType() == CartOperationDTO.Type.UPDATE ? operation.getQuantity() : 0;
+                targets.put(line.getProduct().getId(), quantity);
+            }
+        }
+
+        // Check every product against the stock loaded above before anything is reserved
+        for (Map.Entry<Long, Integer> target : targets.entrySet()) {
+            Product product = products.get(target.getKey());
+            int difference = target.getValue() - this.lineQuantity(linesByProduct, target.getKey());
+            if (difference > 0 && !product.hasShardedStock() && product.getStockQuantity() < difference) {
+                throw new ProductOutOfStockException(product, product.getStockQuantity(), difference);
+            }
+        }
+
+        long totalDelta = 0;
+        List<CartItem> newLines = new ArrayList<>();
+        List<Long> removedLineIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> target : targets.entrySet()) {
+            Product product = products.get(target.getKey());
+            CartItem line = linesByProduct.get(target.getKey());
+            int quantity = target.getValue();
+            int difference = quantity - this.lineQuantity(linesByProduct, target.getKey());
+
+            if (difference > 0) {
+                this.stockReservationService.reserve(product, difference);
+            } else if (difference < 0) {
+                this.stockReservationService.release(product.getId(), -difference);
+            }
+
+            if (line == null) {
+                if (quantity > 0) {
+                    CartItem cartItem = new CartItem();
+                    cartItem.setProduct(product);
+                    cartItem.setSinglePrice(product.getPrice());
+                    cartItem.setTotalPriceMinor(cartItem.getSinglePriceMinor() * quantity);
+                    cartItem.setQuantity(quantity);
+                    cartItem.setCart(this.cartRepository.getReferenceById(cartId));
+                    cartItem.setReservedUntil(this.stockReservationService.holdUntil(product));
+                    newLines.add(cartItem);
+                    totalDelta += cartItem.getTotalPriceMinor();
+                }
+            } else if (quantity == 0) {
+                removedLineIds.add(line.getId());
+                totalDelta -= line.getTotalPriceMinor();
+            } else {
+                long previousTotal = line.getTotalPriceMinor();
+                line.setQuantity(quantity);
+                line.setTotalPriceMinor(line.getSinglePriceMinor() * quantity);
+                line.setReservedUntil(this.stockReservationService.holdUntil(product));
+                totalDelta += line.getTotalPriceMinor() - previousTotal;
+            }
+        }
+
+        try {
+            this.cartItemRepository.saveAll(newLines);
+        } catch (DataIntegrityViolationException e) {
+            throw new ResourceConflictException("CartItem", "cartId", cartId);
+        }
+        if (!removedLineIds.isEmpty()) {
+            this.cartItemRepository.deleteAllByIdIn(removedLineIds);
+        }
+        this.cartRepository.addToTotals(cartId, totalDelta, newLines.size() - removedLineIds.size(), Instant.now());
+
+        return this.getCartContent();
+    }
+
+    @Override
+    public void flushCart() {
+        // Every change is written when it is made
+    }
+
+    @Override
+    public void discardCart() {
+        // Nothing is held in memory
+    }
+
+    private int currentQuantity(Map<Long, Integer> targets, Map<Long, CartItem> linesByProduct, Long productId) {
+        Integer target = targets.get(productId);
+        return target != null ? target : this.lineQuantity(linesByProduct, productId);
+    }
+
+    private int lineQuantity(Map<Long, CartItem> linesByProduct, Long productId) {
+        CartItem line = linesByProduct.get(productId);
+        return line != null ? line.getQuantity() : 0;
+    }
+
+    private CartItemDTO toCartItemDTO(CartContentRow row) {
+        Category category = new Category(row.getCategoryId(), row.getCategoryName());
+        ProductDTO productDTO = new ProductDTO(row.getProductId(), category, row.getProductName(),
+                row.getProductDescription(), row.getProductImage(), row.getProductStockQuantity(),
+                row.getProductRegularPrice(), row.getProductPrice(), row.getProductDiscount());
+        return new CartItemDTO(row.getCartItemId(), row.getCartId(), productDTO,
+                row.getSinglePrice(), row.getTotalPrice(), row.getQuantity());
+    }
 
 }
@@ -0,0 +1,73 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.dto.CartTotalCheck;
+import pl.skowrxn.springecommerce.repository.CartRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Cart totals are moved by deltas, so a lost update would leave them wrong for good. This walks all carts
+ * in id order, one page at a time, and recalculates the totals that no longer match their items.
+ */
+@Component
+public class CartTotalReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartTotalReconciler.class);
+
+    private final CartRepository cartRepository;
+    private final int batchSize;
+    private final Counter repairedTotals;
+
+    public CartTotalReconciler(CartRepository cartRepository, MeterRegistry meterRegistry,
+                               @Value("${spring.app.cart.reconcileBatchSize:1000}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.batchSize = batchSize;
+        this.repairedTotals = Counter.builder("cart.totals.repaired")
+                .description("Cart totals found out of sync with their items and recalculated")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${spring.app.cart.reconcileIntervalMs:3600000}",
+            initialDelayString = "${spring.app.cart.reconcileIntervalMs:3600000}")
+    public void scheduledReconcile() {
+        this.reconcile();
+    }
+
+    /**
+     * @return the number of carts whose total was recalculated
+     */
+    public int reconcile() {
+        int repaired = 0;
+        long afterId = 0;
+        List<CartTotalCheck> checks;
+        do {
+            checks = this.cartRepository.findTotalChecks(afterId, PageRequest.of(0, this.batchSize));
+            List<Long> driftedCartIds = checks.stream()
+                    .filter(CartTotalCheck::hasDrifted)
+                    .map(CartTotalCheck::getCartId)
+                    .toList();
+            if (!driftedCartIds.isEmpty()) {
+                // Recalculated in SQL from the items as they are now, not from the values read above
+                this.cartRepository.recalculateTotals(driftedCartIds, Instant.now());
+                repaired += driftedCartIds.size();
+                logger.warn("Recalculated drifted totals of carts {}", driftedCartIds);
+            }
+            if (!checks.isEmpty()) {
+                afterId = checks.get(checks.size() - 1).getCartId();
+            }
+        } while (checks.size() == this.batchSize);
+
+        this.repairedTotals.increment(repaired);
+        return repaired;
+    }
+
+}
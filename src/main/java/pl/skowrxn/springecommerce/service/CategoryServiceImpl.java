@@ -89,6 +89,7 @@ public class CategoryServiceImpl implements CategoryService {
             throw new ResourceConflictException("Category", "name", newCategoryName);
         }
         existingCategory.setName(categoryDTO.getName());
+        existingCategory.setReservationHoldMinutes(categoryDTO.getReservationHoldMinutes());
         Category savedCategory = this.categoryRepository.save(existingCategory);
         return this.modelMapper.map(savedCategory, CategoryDTO.class);
     }
@@ -0,0 +1,68 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.repository.IdempotencyKeyRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Deletes order idempotency keys once clients can no longer be retrying the request, a batch at a time so
+ * no single statement locks a large part of the table.
+ */
+@Component
+public class IdempotencyKeyPurger {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeyPurger.class);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final Duration ttl;
+    private final int batchSize;
+    private final Counter purgedKeys;
+
+    public IdempotencyKeyPurger(IdempotencyKeyRepository idempotencyKeyRepository, MeterRegistry meterRegistry,
+                                @Value("${spring.app.order.idempotencyKeyTtlHours:24}") long ttlHours,
+                                @Value("${spring.app.order.idempotencyKeyPurgeBatchSize:1000}") int batchSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.batchSize = batchSize;
+        this.purgedKeys = Counter.builder("orders.idempotency.purged")
+                .description("Order idempotency keys deleted after their time to live")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${spring.app.order.idempotencyKeyPurgeIntervalMs:600000}")
+    public void scheduledPurge() {
+        this.purge(Instant.now());
+    }
+
+    /**
+     * @return the number of keys deleted
+     */
+    public int purge(Instant now) {
+        Instant createdBefore = now.minus(this.ttl);
+        int purged = 0;
+        List<Long> ids;
+        do {
+            ids = this.idempotencyKeyRepository.findIdsCreatedBefore(createdBefore, PageRequest.of(0, this.batchSize));
+            if (!ids.isEmpty()) {
+                purged += this.idempotencyKeyRepository.deleteAllByIdIn(ids);
+            }
+        } while (ids.size() == this.batchSize);
+
+        this.purgedKeys.increment(purged);
+        if (purged > 0) {
+            logger.debug("Purged {} order idempotency keys", purged);
+        }
+        return purged;
+    }
+
+}
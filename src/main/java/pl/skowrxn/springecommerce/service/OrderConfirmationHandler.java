@@ -0,0 +1,30 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.entity.OrderOutboxEvent;
+import pl.skowrxn.springecommerce.event.OrderPlacedEvent;
+
+/**
+ * Hands a placed order to the notification listeners, as an {@link OrderPlacedEvent}.
+ */
+@Component
+public class OrderConfirmationHandler implements OrderEventHandler {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public OrderConfirmationHandler(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public OrderOutboxEvent.Type getType() {
+        return OrderOutboxEvent.Type.ORDER_CONFIRMATION;
+    }
+
+    @Override
+    public void handle(OrderOutboxEvent event) {
+        this.eventPublisher.publishEvent(new OrderPlacedEvent(event.getOrderId(), Long.valueOf(event.getPayload())));
+    }
+
+}
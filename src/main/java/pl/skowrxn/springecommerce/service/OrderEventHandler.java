@@ -0,0 +1,16 @@
+package pl.skowrxn.springecommerce.service;
+
+import pl.skowrxn.springecommerce.entity.OrderOutboxEvent;
+
+/**
+ * Carries out one type of {@link OrderOutboxEvent}. It runs in a transaction that also marks the event done,
+ * and is retried when it throws, so it may see the same event again after a failure or a restart and has to
+ * tolerate that.
+ */
+public interface OrderEventHandler {
+
+    OrderOutboxEvent.Type getType();
+
+    void handle(OrderOutboxEvent event);
+
+}
@@ -0,0 +1,171 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.skowrxn.springecommerce.entity.OrderOutboxEvent;
+import pl.skowrxn.springecommerce.repository.OrderOutboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carries out the {@link OrderOutboxEvent}s written by checkout on a bounded pool, so the request placing an order
+ * only pays for writing them. Events are claimed for {@code leaseSeconds} before they are handed to a worker; one
+ * left behind by a stopped node becomes due again when its claim runs out. A failed event is retried with an
+ * exponentially growing delay, and given up after {@code maxAttempts}.
+ */
+@Component
+public class OrderOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderOutboxDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final Map<OrderOutboxEvent.Type, OrderEventHandler> handlers = new EnumMap<>(OrderOutboxEvent.Type.class);
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration lease;
+    private final Counter processedEvents;
+    private final Counter retriedEvents;
+    private final Counter failedEvents;
+
+    public OrderOutboxDispatcher(OrderOutboxRepository orderOutboxRepository, List<OrderEventHandler> handlers,
+                                 PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                 @Value("${spring.app.order.outbox.threads:4}") int threads,
+                                 @Value("${spring.app.order.outbox.batchSize:100}") int batchSize,
+                                 @Value("${spring.app.order.outbox.maxAttempts:10}") int maxAttempts,
+                                 @Value("${spring.app.order.outbox.retryDelayMs:1000}") long retryDelayMs,
+                                 @Value("${spring.app.order.outbox.leaseSeconds:60}") long leaseSeconds) {
+        this.orderOutboxRepository = orderOutboxRepository;
+        handlers.forEach(handler -> this.handlers.put(handler.getType(), handler));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Only the poller submits, and never more than the queue has room for
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(batchSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "order-outbox-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = Duration.ofMillis(retryDelayMs);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.processedEvents = Counter.builder("orders.outbox.processed")
+                .description("Order outbox events carried out")
+                .register(meterRegistry);
+        this.retriedEvents = Counter.builder("orders.outbox.retried")
+                .description("Order outbox events that failed and will be retried")
+                .register(meterRegistry);
+        this.failedEvents = Counter.builder("orders.outbox.failed")
+                .description("Order outbox events given up after their last attempt failed")
+                .register(meterRegistry);
+        Gauge.builder("orders.outbox.queue", this.executor, pool -> pool.getQueue().size())
+                .description("Claimed order outbox events waiting for a free worker")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${spring.app.order.outbox.pollIntervalMs:500}")
+    public void scheduledPoll() {
+        this.poll(Instant.now());
+    }
+
+    /**
+     * Claims as many due events as the workers have room for and hands them over.
+     *
+     * @return the number of events handed to the workers
+     */
+    public int poll(Instant now) {
+        int room = this.executor.getQueue().remainingCapacity();
+        if (room == 0 || this.executor.isShutdown()) {
+            return 0;
+        }
+        List<Long> ids = this.orderOutboxRepository.findDueIds(now, PageRequest.of(0, room));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        UUID claimToken = UUID.randomUUID();
+        if (this.orderOutboxRepository.claim(ids, claimToken, now, now.plus(this.lease)) == 0) {
+            return 0;
+        }
+        // Events claimed by another node in the meantime are left to it
+        List<OrderOutboxEvent> events = this.orderOutboxRepository.findAllByIdInAndClaimToken(ids, claimToken);
+        events.forEach(event -> this.executor.execute(() -> this.process(event)));
+        return events.size();
+    }
+
+    private void process(OrderOutboxEvent event) {
+        try {
+            OrderEventHandler handler = this.handlers.get(event.getType());
+            if (handler == null) {
+                throw new IllegalStateException("No handler for order outbox events of type " + event.getType());
+            }
+            this.transactionTemplate.executeWithoutResult(status -> {
+                handler.handle(event);
+                this.orderOutboxRepository.markDone(event.getId(), Instant.now());
+            });
+            this.processedEvents.increment();
+        } catch (RuntimeException e) {
+            this.recordFailure(event, e);
+        }
+    }
+
+    private void recordFailure(OrderOutboxEvent event, RuntimeException e) {
+        int attempts = event.getAttempts() + 1;
+        String error = String.valueOf(e.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        try {
+            if (attempts >= this.maxAttempts) {
+                this.orderOutboxRepository.markAttemptFailed(event.getId(), OrderOutboxEvent.Status.FAILED,
+                        Instant.now(), error);
+                this.failedEvents.increment();
+                logger.error("Gave up {} of order {} after {} attempts", event.getType(), event.getOrderId(),
+                        attempts, e);
+            } else {
+                Duration delay = this.retryDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+                this.orderOutboxRepository.markAttemptFailed(event.getId(), OrderOutboxEvent.Status.PENDING,
+                        Instant.now().plus(delay), error);
+                this.retriedEvents.increment();
+                logger.warn("{} of order {} failed, retrying in {}", event.getType(), event.getOrderId(), delay, e);
+            }
+        } catch (RuntimeException recordingError) {
+            // The claim runs out and the event is retried anyway
+            logger.error("Could not record the failure of order outbox event {}", event.getId(), recordingError);
+        }
+    }
+
+    /**
+     * Stops taking new events and lets the workers finish the ones already claimed.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.executor.shutdown();
+        if (!this.executor.awaitTermination(this.lease.toSeconds(), TimeUnit.SECONDS)) {
+            logger.warn("Order outbox workers did not finish, unfinished events are retried when their claim runs out");
+        }
+    }
+
+}
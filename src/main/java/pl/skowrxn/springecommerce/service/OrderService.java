@@ -2,8 +2,29 @@ package pl.skowrxn.springecommerce.service;
 
 import pl.skowrxn.springecommerce.dto.OrderDTO;
 import pl.skowrxn.springecommerce.dto.OrderRequestDTO;
+import pl.skowrxn.springecommerce.dto.response.OrderListResponse;
+
+import java.util.Optional;
+import java.util.UUID;
 
 public interface OrderService {
 
     OrderDTO placeNewOrder(OrderRequestDTO orderDTO, Long userId);
+
+    /**
+     * Places the order and keeps its response under {@code idempotencyKey}, unless the user already sent that key.
+     */
+    OrderDTO placeNewOrder(OrderRequestDTO orderDTO, Long userId, String idempotencyKey);
+
+    /**
+     * @return the response of the order placed earlier with {@code idempotencyKey}, or empty when the key is new
+     */
+    Optional<OrderDTO> findPlacedOrder(OrderRequestDTO orderDTO, Long userId, String idempotencyKey);
+
+    /**
+     * @param cursor the {@code nextCursor} of the previous page, or null for the newest orders
+     */
+    OrderListResponse getOrders(Long userId, String cursor, int pageSize);
+
+    OrderDTO getOrder(Long userId, UUID orderId);
 }
@@ -1,73 +1,108 @@
 package pl.skowrxn.springecommerce.service;
 
-import org.modelmapper.ModelMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import pl.skowrxn.springecommerce.dto.AddressDTO;
 import pl.skowrxn.springecommerce.dto.OrderDTO;
-import pl.skowrxn.springecommerce.dto.OrderItemDTO;
 import pl.skowrxn.springecommerce.dto.OrderRequestDTO;
+import pl.skowrxn.springecommerce.dto.OrderSummaryDTO;
+import pl.skowrxn.springecommerce.dto.response.OrderListResponse;
 import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
-import pl.skowrxn.springecommerce.repository.AddressRepository;
-import pl.skowrxn.springecommerce.repository.OrderItemRepository;
-import pl.skowrxn.springecommerce.repository.OrderRepository;
-import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.mapper.OrderMapper;
+import pl.skowrxn.springecommerce.repository.*;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final UserRepository userRepository;
-    private final OrderItemRepository orderItemRepository;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final OrderRepository orderRepository;
     private final AddressRepository addressRepository;
-    private final ModelMapper modelMapper;
-
-    public OrderServiceImpl(UserRepository userRepository, OrderItemRepository orderItemRepository,
-                            OrderRepository orderRepository, AddressRepository addressRepository,
-                            ModelMapper modelMapper) {
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final OrderMapper orderMapper;
+    private final ObjectMapper objectMapper;
+
+    public OrderServiceImpl(UserRepository userRepository, CartRepository cartRepository,
+                            CartItemRepository cartItemRepository, OrderRepository orderRepository,
+                            AddressRepository addressRepository, IdempotencyKeyRepository idempotencyKeyRepository,
+                            OrderOutboxRepository orderOutboxRepository, OrderMapper orderMapper,
+                            ObjectMapper objectMapper) {
         this.userRepository = userRepository;
-        this.orderItemRepository = orderItemRepository;
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
         this.orderRepository = orderRepository;
         this.addressRepository = addressRepository;
-        this.modelMapper = modelMapper;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.orderMapper = orderMapper;
+        this.objectMapper = objectMapper;
     }
 
     @Transactional
     @Override
     public OrderDTO placeNewOrder(OrderRequestDTO orderDTO, Long userId) {
-        User user = this.userRepository.findById(userId).orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        Cart cart = user.getCart();
+        return this.placeNewOrder(orderDTO, userId, null);
+    }
+
+    /**
+     * Turns the cart of the user into an order and empties it. The stock of the items was taken when they were
+     * added to the cart and stays taken; the cart is claimed only if no change reached it since it was read.
+     */
+    @Transactional
+    @Override
+    public OrderDTO placeNewOrder(OrderRequestDTO orderDTO, Long userId, String idempotencyKey) {
+        // Inserted first: a concurrent request with the same key waits on it, then fails instead of checking out
+        IdempotencyKey key = idempotencyKey == null ? null
+                : this.insertIdempotencyKey(orderDTO, userId, idempotencyKey);
 
-        if (cart == null || cart.getItems().isEmpty()) {
+        Cart cart = this.cartRepository.findByUserId(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart is null or empty"));
+        List<CartItem> cartItems = this.cartItemRepository.findAllWithProductByCartId(cart.getId());
+
+        if (cartItems.isEmpty()) {
             throw new ResourceNotFoundException("Cart is null or empty");
         }
 
-        Address address = addressRepository.findAddressById(orderDTO.getAddressId());  
+        Address address = addressRepository.findAddressById(orderDTO.getAddressId());
         if (address == null) {
             throw new ResourceNotFoundException("Address", "id", orderDTO.getAddressId());
         }
 
+        if (this.cartRepository.resetTotalsAtRevision(cart.getId(), cart.getRevision(), Instant.now()) == 0) {
+            // Changed by another request or the reservation sweeper since it was read, the items may be outdated
+            throw new ResourceConflictException("Cart", "revision", cart.getRevision());
+        }
+        this.cartItemRepository.deleteAllByCartId(cart.getId());
+
         Order order = new Order();
-        order.setUser(user);
+        order.setUser(this.userRepository.getReferenceById(userId));
 
-        List<OrderItem> orderItems = new ArrayList<>();
-        for (CartItem item : cart.getItems()) {
+        List<OrderItem> orderItems = new ArrayList<>(cartItems.size());
+        for (CartItem item : cartItems) {
             OrderItem orderItem = new OrderItem();
             orderItem.setProduct(item.getProduct());
             orderItem.setQuantity(item.getQuantity());
             orderItem.setPrice(item.getTotalPrice());
             orderItem.setOrder(order);
             orderItems.add(orderItem);
-
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() - item.getQuantity());;
         }
-        this.orderItemRepository.saveAll(orderItems);
 
         order.setOrderItems(orderItems);
         order.setOrderDate(LocalDate.now());
@@ -75,19 +110,127 @@ public class OrderServiceImpl implements OrderService {
         order.setStatus("Pending payment");
         order.setTotalPrice(cart.getTotalPrice());
 
-        Payment payment = new Payment();
-        payment.setOrder(order);
-        payment.setPaymentMethod(orderDTO.getPaymentMethod());
-
+        // The items are inserted with the order, in JDBC batches since their ids come from a pooled sequence
         Order savedOrder = this.orderRepository.save(order);
+        // Payment and notifications are left to the OrderOutboxDispatcher, committed or rolled back with the order
+        Instant placedAt = Instant.now();
+        this.orderOutboxRepository.saveAll(List.of(
+                new OrderOutboxEvent(savedOrder.getId(), OrderOutboxEvent.Type.PAYMENT_INITIATION,
+                        orderDTO.getPaymentMethod(), placedAt),
+                new OrderOutboxEvent(savedOrder.getId(), OrderOutboxEvent.Type.ORDER_CONFIRMATION,
+                        String.valueOf(userId), placedAt)));
+
+        OrderDTO savedOrderDTO = this.orderMapper.toDTO(savedOrder);
+        if (key != null) {
+            key.setOrderId(savedOrder.getId());
+            key.setResponse(this.writeResponse(savedOrderDTO));
+        }
+        return savedOrderDTO;
+    }
 
-        OrderDTO savedOrderDTO = this.modelMapper.map(savedOrder, OrderDTO.class);
-        savedOrderDTO.setOrderItems(new ArrayList<>());
-        orderItems.forEach(orderItem -> {
-            savedOrderDTO.getOrderItems().add(this.modelMapper.map(orderItem, OrderItemDTO.class));
+    @Override
+    public Optional<OrderDTO> findPlacedOrder(OrderRequestDTO orderDTO, Long userId, String idempotencyKey) {
+        return this.idempotencyKeyRepository.findByUserIdAndKey(userId, idempotencyKey).map(key -> {
+            if (!key.getRequestHash().equals(hash(orderDTO)) || key.getResponse() == null) {
+                throw new ResourceConflictException("Order", "Idempotency-Key", idempotencyKey);
+            }
+            return this.readResponse(key.getResponse());
         });
-        savedOrderDTO.setShippingAddress(this.modelMapper.map(address, AddressDTO.class));
+    }
 
-        return savedOrderDTO;
+    /**
+     * One page of the user's orders, newest first. The cursor names the last order of the previous page.
+     */
+    @Override
+    public OrderListResponse getOrders(Long userId, String cursor, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        // One more than asked for tells whether another page follows
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<OrderSummaryDTO> orders;
+        if (cursor == null) {
+            orders = this.orderRepository.findSummariesByUserId(userId, pageable);
+        } else {
+            OrderSummaryDTO previous = decodeCursor(cursor);
+            orders = this.orderRepository.findSummariesByUserIdAfter(userId, previous.getOrderDate(),
+                    previous.getId(), pageable);
+        }
+
+        boolean lastPage = orders.size() <= pageSize;
+        if (!lastPage) {
+            orders = orders.subList(0, pageSize);
+        }
+        String nextCursor = lastPage ? null : encodeCursor(orders.get(orders.size() - 1));
+        return new OrderListResponse(orders, pageSize, nextCursor, lastPage);
+    }
+
+    @Transactional
+    @Override
+    public OrderDTO getOrder(Long userId, UUID orderId) {
+        Order order = this.orderRepository.findWithItemsByIdAndUserId(orderId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+        return this.orderMapper.toDTO(order);
+    }
+
+    private static String encodeCursor(OrderSummaryDTO order) {
+        String position = order.getOrderDate() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static OrderSummaryDTO decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\|");
+            OrderSummaryDTO order = new OrderSummaryDTO();
+            order.setOrderDate(LocalDate.parse(position[0]));
+            order.setId(UUID.fromString(position[1]));
+            return order;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid order page cursor: " + cursor);
+        }
+    }
+
+    private IdempotencyKey insertIdempotencyKey(OrderRequestDTO orderDTO, Long userId, String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > IdempotencyKey.MAX_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must have 1 to " + IdempotencyKey.MAX_LENGTH
+                    + " characters");
+        }
+        IdempotencyKey key = new IdempotencyKey();
+        key.setUserId(userId);
+        key.setKey(idempotencyKey);
+        key.setRequestHash(hash(orderDTO));
+        key.setCreatedAt(Instant.now());
+        try {
+            return this.idempotencyKeyRepository.saveAndFlush(key);
+        } catch (DataIntegrityViolationException e) {
+            throw new ResourceConflictException("Order", "Idempotency-Key", idempotencyKey);
+        }
+    }
+
+    private String writeResponse(OrderDTO orderDTO) {
+        try {
+            return this.objectMapper.writeValueAsString(orderDTO);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store the response of order " + orderDTO.getId(), e);
+        }
+    }
+
+    private OrderDTO readResponse(String response) {
+        try {
+            return this.objectMapper.readValue(response, OrderDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read a stored order response", e);
+        }
+    }
+
+    private static String hash(OrderRequestDTO orderDTO) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    (orderDTO.getAddressId() + "|" + orderDTO.getPaymentMethod()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
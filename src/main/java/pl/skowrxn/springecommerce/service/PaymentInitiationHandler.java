@@ -0,0 +1,41 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.entity.OrderOutboxEvent;
+import pl.skowrxn.springecommerce.entity.Payment;
+import pl.skowrxn.springecommerce.repository.OrderRepository;
+import pl.skowrxn.springecommerce.repository.PaymentRepository;
+
+/**
+ * Creates the payment of a placed order, with the payment method chosen at checkout, and links it to the order.
+ */
+@Component
+public class PaymentInitiationHandler implements OrderEventHandler {
+
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+
+    public PaymentInitiationHandler(PaymentRepository paymentRepository, OrderRepository orderRepository) {
+        this.paymentRepository = paymentRepository;
+        this.orderRepository = orderRepository;
+    }
+
+    @Override
+    public OrderOutboxEvent.Type getType() {
+        return OrderOutboxEvent.Type.PAYMENT_INITIATION;
+    }
+
+    @Override
+    public void handle(OrderOutboxEvent event) {
+        if (this.paymentRepository.existsByOrderId(event.getOrderId())) {
+            return;
+        }
+        Payment payment = new Payment();
+        payment.setOrder(this.orderRepository.getReferenceById(event.getOrderId()));
+        payment.setPaymentMethod(event.getPayload());
+        // The bulk update below does not flush the insert, which the foreign key needs to be there
+        Payment savedPayment = this.paymentRepository.saveAndFlush(payment);
+        this.orderRepository.setPayment(event.getOrderId(), savedPayment);
+    }
+
+}
@@ -1,6 +1,5 @@
 package pl.skowrxn.springecommerce.service;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,6 +12,7 @@ import pl.skowrxn.springecommerce.entity.Category;
 import pl.skowrxn.springecommerce.entity.Product;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.ProductMapper;
 import pl.skowrxn.springecommerce.repository.CategoryRepository;
 import pl.skowrxn.springecommerce.repository.ProductRepository;
 import pl.skowrxn.springecommerce.util.AuthUtil;
@@ -29,17 +29,20 @@ public class ProductServiceImpl implements ProductService {
     private final CategoryRepository categoryRepository;
     private final FileService fileService;
     private final AuthUtil authUtil;
-    private final ModelMapper modelMapper;
+    private final ProductMapper productMapper;
+    private final StockReservationService stockReservationService;
 
     public ProductServiceImpl(ProductRepository productRepository, UserService userService,
                               CategoryRepository categoryRepository, FileService fileService,
-                              AuthUtil authUtil, ModelMapper modelMapper) {
+                              AuthUtil authUtil, ProductMapper productMapper,
+                              StockReservationService stockReservationService) {
         this.productRepository = productRepository;
         this.userService = userService;
         this.categoryRepository = categoryRepository;
         this.fileService = fileService;
         this.authUtil = authUtil;
-        this.modelMapper = modelMapper;
+        this.productMapper = productMapper;
+        this.stockReservationService = stockReservationService;
     }
 
     @Override
@@ -47,7 +50,7 @@ public class ProductServiceImpl implements ProductService {
         Category category = this.categoryRepository.findById(categoryId).orElseThrow(() -> new ResourceNotFoundException("Category", "id", categoryId));
         User seller = this.authUtil.getLoggedInUser();
 
-        Product product = this.modelMapper.map(productDTO, Product.class);
+        Product product = this.productMapper.toEntity(productDTO);
         product.setCategory(category);
         product.setUser(seller);
         double price = product.getPrice() - (product.getPrice() * product.getDiscount() / 100);
@@ -56,7 +59,7 @@ public class ProductServiceImpl implements ProductService {
         Product createdProduct = this.productRepository.save(product);
         seller.getProducts().add(product);
 
-        return this.modelMapper.map(createdProduct, ProductDTO.class);
+        return this.productMapper.toDTO(createdProduct);
     }
 
     @Override
@@ -66,7 +69,7 @@ public class ProductServiceImpl implements ProductService {
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
         Page<Product> products = this.productRepository.findAll(pageable);
         List<ProductDTO> productDTOs = products.stream()
-                .map(product -> this.modelMapper.map(product, ProductDTO.class))
+                .map(product -> this.productMapper.toDTO(product))
                 .toList();
 
         return new ProductListResponse(productDTOs, pageNumber, pageSize, products.getTotalPages(), products.getTotalElements(), products.isLast());
@@ -79,7 +82,7 @@ public class ProductServiceImpl implements ProductService {
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
         Category category = this.categoryRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
         Page<Product> products = this.productRepository.findByCategory(category, pageable);
-        List<ProductDTO> productDTOS = products.stream().map(product -> this.modelMapper.map(product, ProductDTO.class)).toList();
+        List<ProductDTO> productDTOS = products.stream().map(product -> this.productMapper.toDTO(product)).toList();
         return new ProductListResponse(productDTOS, pageNumber, pageSize, products.getTotalPages(), products.getTotalElements(), products.isLast());
     }
 
@@ -88,7 +91,7 @@ public class ProductServiceImpl implements ProductService {
         Sort sort = this.translateSort(sortDir, sortBy);
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
         Page<Product> products = this.productRepository.findByNameLikeIgnoreCase('%' + keyword + '%', pageable);
-        List<ProductDTO> productDTOS = products.stream().map(product -> this.modelMapper.map(product, ProductDTO.class)).toList();
+        List<ProductDTO> productDTOS = products.stream().map(product -> this.productMapper.toDTO(product)).toList();
         return new ProductListResponse(productDTOS, pageNumber, pageSize, products.getTotalPages(), products.getTotalElements(), products.isLast());
     }
 
@@ -104,7 +107,11 @@ public class ProductServiceImpl implements ProductService {
         existingProduct.setPrice(productDTO.getPrice() - (productDTO.getPrice() * productDTO.getDiscount() / 100));
 
         Product savedProduct = this.productRepository.save(existingProduct);
-        return this.modelMapper.map(savedProduct, ProductDTO.class);
+        if (savedProduct.hasShardedStock()) {
+            // stockQuantity of a sharded product is only a snapshot, the new stock has to reach the shards
+            this.stockReservationService.setStock(id, productDTO.getStockQuantity());
+        }
+        return this.productMapper.toDTO(savedProduct);
     }
 
     @Override
@@ -120,7 +127,7 @@ public class ProductServiceImpl implements ProductService {
         String fileName = this.fileService.uploadImage(image);
         product.setImage(fileName);
         Product savedProduct = this.productRepository.save(product);
-        return this.modelMapper.map(savedProduct, ProductDTO.class);
+        return this.productMapper.toDTO(savedProduct);
     }
 
     private Sort translateSort(String sortDir, String sortBy) {
@@ -0,0 +1,23 @@
+package pl.skowrxn.springecommerce.service;
+
+import pl.skowrxn.springecommerce.entity.Product;
+
+import java.time.Instant;
+
+public interface StockReservationService {
+
+    int reserve(Product product, int quantity);
+
+    int release(Long productId, int quantity);
+
+    void releaseCart(Long cartId);
+
+    void shard(Long productId, int shards);
+
+    void setStock(Long productId, int quantity);
+
+    Instant holdUntil(Product product);
+
+    int releaseExpired(Instant now, int limit);
+
+}
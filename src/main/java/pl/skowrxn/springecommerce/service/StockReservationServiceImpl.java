@@ -0,0 +1,282 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.CartItem;
+import pl.skowrxn.springecommerce.entity.Category;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.entity.ProductStockShard;
+import pl.skowrxn.springecommerce.exception.ProductOutOfStockException;
+import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.repository.CartItemRepository;
+import pl.skowrxn.springecommerce.repository.CartRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.repository.ProductStockShardRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Moves stock with single conditional UPDATE statements instead of read-check-write on the product
+ * entity, so concurrent reservations cannot oversell and never rewrite the rest of the product row.
+ * The row lock taken by the UPDATE is held until the surrounding transaction ends.
+ * <p>
+ * Products expecting a rush of buyers can have their stock split across {@link ProductStockShard} rows.
+ * Reservations and releases land on a random shard, so they no longer queue on a single row lock.
+ */
+@Service
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationServiceImpl.class);
+
+    private final ProductRepository productRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final ProductStockShardRepository productStockShardRepository;
+    private final Duration defaultHold;
+    private final int maxShards;
+
+    public StockReservationServiceImpl(ProductRepository productRepository,
+                                       CartItemRepository cartItemRepository,
+                                       CartRepository cartRepository,
+                                       ProductStockShardRepository productStockShardRepository,
+                                       @Value("${spring.app.cart.reservationHoldMinutes:30}") long defaultHoldMinutes,
+                                       @Value("${spring.app.stock.maxShards:64}") int maxShards) {
+        this.productRepository = productRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartRepository = cartRepository;
+        this.productStockShardRepository = productStockShardRepository;
+        this.defaultHold = Duration.ofMinutes(defaultHoldMinutes);
+        this.maxShards = maxShards;
+    }
+
+    /**
+     * @return the stock left after the reservation
+     * @throws ProductOutOfStockException when less than {@code quantity} is available
+     */
+    @Override
+    @Transactional
+    public int reserve(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Long productId = product.getId();
+        if (!product.hasShardedStock()) {
+            if (this.productRepository.decrementStock(productId, quantity) > 0) {
+                return this.productRepository.findStockQuantityById(productId).orElse(0);
+            }
+            // Either out of stock, or the product was sharded after it was loaded
+            int shards = this.productRepository.findStockShardsById(productId).orElse(0);
+            if (shards == 0) {
+                int available = this.productRepository.findStockQuantityById(productId).orElse(0);
+                throw new ProductOutOfStockException(product, available, quantity);
+            }
+            return this.reserveFromShards(product, shards, quantity);
+        }
+        return this.reserveFromShards(product, product.getStockShards(), quantity);
+    }
+
+    /**
+     * Takes the quantity from one shard picked at random, so concurrent reservations of the product mostly lock
+     * different rows. Only when that shard cannot supply it are the others tried, in ascending index, and then
+     * {@link #rebalance} runs. A shard the update could not take the quantity from may stay locked until the
+     * transaction ends, so apart from the first pick concurrent reservations only ever wait on a higher shard
+     * than the ones they hold. In H2 and under READ COMMITTED a failed conditional update keeps no lock, so the
+     * pick never breaks that order; under REPEATABLE READ it may, and the database resolves the rare cycle by
+     * rolling one of the reservations back.
+     */
+    private int reserveFromShards(Product product, int shards, int quantity) {
+        Long productId = product.getId();
+        int firstShard = ThreadLocalRandom.current().nextInt(shards);
+        if (this.productStockShardRepository.decrementShard(productId, firstShard, quantity) > 0) {
+            return Math.toIntExact(this.productStockShardRepository.sumQuantityByProductId(productId));
+        }
+        for (int shardIndex = 0; shardIndex < shards; shardIndex++) {
+            if (shardIndex != firstShard
+                    && this.productStockShardRepository.decrementShard(productId, shardIndex, quantity) > 0) {
+                return Math.toIntExact(this.productStockShardRepository.sumQuantityByProductId(productId));
+            }
+        }
+        // Locking every shard again from the first one breaks that order, so it is left to the case it helps
+        int available = Math.toIntExact(this.productStockShardRepository.sumQuantityByProductId(productId));
+        if (available < quantity && this.productRepository.findStockShardsById(productId).orElse(0) > 0) {
+            throw new ProductOutOfStockException(product, available, quantity);
+        }
+        return this.rebalance(product, quantity);
+    }
+
+    /**
+     * Runs when no single shard holds {@code quantity}, usually because the stock left is spread thin.
+     * Locks all shards of the product, takes {@code quantity} out of their sum and spreads the rest evenly.
+     */
+    private int rebalance(Product product, int quantity) {
+        List<ProductStockShard> shards = this.productStockShardRepository.findAllByProductIdForUpdate(product.getId());
+        if (shards.isEmpty()) {
+            // The product was unsharded while this reservation was in flight
+            if (this.productRepository.decrementStock(product.getId(), quantity) > 0) {
+                return this.productRepository.findStockQuantityById(product.getId()).orElse(0);
+            }
+            int available = this.productRepository.findStockQuantityById(product.getId()).orElse(0);
+            throw new ProductOutOfStockException(product, available, quantity);
+        }
+
+        int available = shards.stream().mapToInt(ProductStockShard::getQuantity).sum();
+        if (available < quantity) {
+            throw new ProductOutOfStockException(product, available, quantity);
+        }
+        int remaining = available - quantity;
+        this.spread(shards, remaining);
+        logger.debug("Rebalanced {} stock shards of product {}", shards.size(), product.getId());
+        return remaining;
+    }
+
+    private void spread(List<ProductStockShard> shards, int total) {
+        int size = shards.size();
+        for (int i = 0; i < size; i++) {
+            shards.get(i).setQuantity(total / size + (i < total % size ? 1 : 0));
+        }
+    }
+
+    /**
+     * @return the stock available after the release
+     */
+    @Override
+    @Transactional
+    public int release(Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        this.releaseStock(productId, quantity);
+        int shards = this.productRepository.findStockShardsById(productId).orElse(0);
+        return shards > 0
+                ? Math.toIntExact(this.productStockShardRepository.sumQuantityByProductId(productId))
+                : this.productRepository.findStockQuantityById(productId).orElse(0);
+    }
+
+    /**
+     * Gives back the stock held by every item of the cart: one statement for all products with a single
+     * stock row, plus a release per product with sharded stock. The items themselves are left to the caller.
+     */
+    @Override
+    @Transactional
+    public void releaseCart(Long cartId) {
+        this.productRepository.incrementStockByCartId(cartId);
+
+        // Sorted by product id, so concurrent releases lock shard rows in the same order
+        Map<Long, Integer> releasedByProduct = new TreeMap<>();
+        for (CartItem item : this.cartItemRepository.findAllWithShardedStockByCartId(cartId)) {
+            releasedByProduct.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        releasedByProduct.forEach(this::releaseStock);
+    }
+
+    private void releaseStock(Long productId, int quantity) {
+        int shards = this.productRepository.findStockShardsById(productId).orElse(0);
+        if (shards > 0 && this.productStockShardRepository.incrementShard(productId,
+                ThreadLocalRandom.current().nextInt(shards), quantity) > 0) {
+            return;
+        }
+        if (this.productRepository.incrementStock(productId, quantity) > 0) {
+            return;
+        }
+        // The product was sharded or resharded since the lookup above, shard 0 always exists
+        if (this.productRepository.findStockShardsById(productId).orElse(0) > 0) {
+            this.productStockShardRepository.incrementShard(productId, 0, quantity);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void shard(Long productId, int shards) {
+        if (shards < 0 || shards > this.maxShards) {
+            throw new IllegalArgumentException("Number of stock shards must be between 0 and " + this.maxShards);
+        }
+        Product product = this.productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+        int stock = product.hasShardedStock()
+                ? Math.toIntExact(this.productStockShardRepository.sumQuantityByProductId(productId))
+                : product.getStockQuantity();
+        this.distribute(product, stock, shards);
+    }
+
+    @Override
+    @Transactional
+    public void setStock(Long productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        Product product = this.productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+        this.distribute(product, quantity, product.hasShardedStock() ? product.getStockShards() : 0);
+    }
+
+    /**
+     * Replaces the shards of a product locked by the caller. A reservation racing the change may be
+     * refused as out of stock, so products are best sharded before the rush rather than during it.
+     */
+    private void distribute(Product product, int stock, int shards) {
+        this.productStockShardRepository.deleteAllByProductId(product.getId());
+        if (shards > 0) {
+            List<ProductStockShard> newShards = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                newShards.add(new ProductStockShard(null, product, i, 0));
+            }
+            this.spread(newShards, stock);
+            this.productStockShardRepository.saveAll(newShards);
+        }
+        product.setStockShards(shards);
+        product.setStockQuantity(stock);
+        logger.info("Stock of product {} is now held in {} shards", product.getId(), shards);
+    }
+
+    @Override
+    public Instant holdUntil(Product product) {
+        Category category = product.getCategory();
+        Duration hold = category != null && category.getReservationHoldMinutes() != null
+                ? Duration.ofMinutes(category.getReservationHoldMinutes())
+                : this.defaultHold;
+        return Instant.now().plus(hold);
+    }
+
+    /**
+     * Removes up to {@code limit} cart items whose reservation ended before {@code now}, gives their stock
+     * back and recalculates the totals of the affected carts. Only the expired items are read, never
+     * the carts around them.
+     *
+     * @return the number of cart items removed
+     */
+    @Override
+    @Transactional
+    public int releaseExpired(Instant now, int limit) {
+        List<CartItem> expiredItems = this.cartItemRepository.findExpiredReservations(now, PageRequest.of(0, limit));
+        if (expiredItems.isEmpty()) {
+            return 0;
+        }
+
+        // Sorted by product id, so concurrent sweeps lock product rows in the same order
+        Map<Long, Integer> releasedByProduct = new TreeMap<>();
+        Set<Long> cartIds = new HashSet<>();
+        List<Long> itemIds = new ArrayList<>(expiredItems.size());
+        for (CartItem item : expiredItems) {
+            releasedByProduct.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            if (item.getCart() != null) {
+                cartIds.add(item.getCart().getId());
+            }
+            itemIds.add(item.getId());
+        }
+
+        releasedByProduct.forEach(this::releaseStock);
+        this.cartItemRepository.deleteAllByIdIn(itemIds);
+        if (!cartIds.isEmpty()) {
+            this.cartRepository.recalculateTotals(cartIds, now);
+        }
+        return expiredItems.size();
+    }
+
+}
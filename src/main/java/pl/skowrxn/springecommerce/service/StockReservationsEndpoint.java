@@ -0,0 +1,42 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import pl.skowrxn.springecommerce.dto.ProductReservationRow;
+import pl.skowrxn.springecommerce.repository.CartItemRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reserved and available stock per product. Kept out of the meter registry, since a gauge per product
+ * would grow with the catalogue.
+ */
+@Component
+@Endpoint(id = "stockreservations")
+public class StockReservationsEndpoint {
+
+    private static final int TOP_PRODUCTS = 50;
+
+    private final CartItemRepository cartItemRepository;
+
+    public StockReservationsEndpoint(CartItemRepository cartItemRepository) {
+        this.cartItemRepository = cartItemRepository;
+    }
+
+    @ReadOperation
+    public List<ProductReservationRow> mostReserved() {
+        return this.cartItemRepository.findReservationsByProduct(Instant.now(), PageRequest.of(0, TOP_PRODUCTS));
+    }
+
+    @ReadOperation
+    public ProductReservationRow product(@Selector Long productId) {
+        return this.cartItemRepository.findReservationsByProductId(productId, Instant.now()).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+}
@@ -0,0 +1,27 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+
+/**
+ * Copies the sum of the stock shards of each sharded product into its {@code stockQuantity}, which is what
+ * product listings and carts display. Between runs the displayed stock may lag behind the shards.
+ */
+@Component
+public class StockShardSnapshotRefresher {
+
+    private final ProductRepository productRepository;
+
+    public StockShardSnapshotRefresher(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${spring.app.stock.shardSnapshotIntervalMs:1000}")
+    @Transactional
+    public void refresh() {
+        this.productRepository.refreshShardedStockSnapshots();
+    }
+
+}
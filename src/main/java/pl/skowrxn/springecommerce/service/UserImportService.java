@@ -0,0 +1,12 @@
+package pl.skowrxn.springecommerce.service;
+
+import pl.skowrxn.springecommerce.dto.UserImportDTO;
+import pl.skowrxn.springecommerce.dto.response.UserImportResponse;
+
+import java.util.List;
+
+public interface UserImportService {
+
+    UserImportResponse importUsers(List<UserImportDTO> users);
+
+}
@@ -0,0 +1,109 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.dto.UserImportDTO;
+import pl.skowrxn.springecommerce.dto.response.UserImportResponse;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
+import pl.skowrxn.springecommerce.security.RoleRegistry;
+
+import java.util.*;
+
+/**
+ * Imports users straight through JDBC batches, bypassing the persistence context. Each chunk costs
+ * one batched insert into {@code users}, one id lookup and one batched insert into {@code user_roles};
+ * roles come from the {@link RoleRegistry} without touching the database.
+ */
+@Service
+public class UserImportServiceImpl implements UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportServiceImpl.class);
+
+    private static final String INSERT_USER_SQL = "insert into users " +
+            "(username, email, password, username_normalized, email_normalized) values (?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_ROLE_SQL = "insert into user_roles (user_id, role_id) values (?, ?)";
+    private static final String SELECT_USER_IDS_SQL = "select id, username_normalized from users " +
+            "where username_normalized in (:usernames)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final RoleRegistry roleRegistry;
+    private final int batchSize;
+
+    public UserImportServiceImpl(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                 RoleRegistry roleRegistry,
+                                 @Value("${spring.app.userImport.batchSize:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.roleRegistry = roleRegistry;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @Transactional
+    public UserImportResponse importUsers(List<UserImportDTO> users) {
+        this.checkForDuplicates(users);
+
+        int batches = 0;
+        for (int from = 0; from < users.size(); from += this.batchSize) {
+            List<UserImportDTO> chunk = users.subList(from, Math.min(from + this.batchSize, users.size()));
+            this.importChunk(chunk);
+            batches++;
+        }
+        logger.info("Imported {} users in {} batches", users.size(), batches);
+        return new UserImportResponse(users.size(), batches);
+    }
+
+    private void importChunk(List<UserImportDTO> chunk) {
+        try {
+            this.jdbcTemplate.batchUpdate(INSERT_USER_SQL, chunk, chunk.size(), (ps, user) -> {
+                ps.setString(1, user.getUsername());
+                ps.setString(2, user.getEmail());
+                ps.setString(3, user.getPasswordHash());
+                ps.setString(4, User.normalize(user.getUsername()));
+                ps.setString(5, User.normalize(user.getEmail()));
+            });
+        } catch (DuplicateKeyException e) {
+            throw new ResourceConflictException("User");
+        }
+
+        Map<String, Long> userIds = new HashMap<>();
+        this.namedParameterJdbcTemplate.query(SELECT_USER_IDS_SQL,
+                Map.of("usernames", chunk.stream().map(user -> User.normalize(user.getUsername())).toList()),
+                rs -> {
+                    userIds.put(rs.getString("username_normalized"), rs.getLong("id"));
+                });
+
+        List<long[]> userRoles = new ArrayList<>();
+        for (UserImportDTO user : chunk) {
+            Long userId = userIds.get(User.normalize(user.getUsername()));
+            this.roleRegistry.resolveRoleTypes(user.getRoles())
+                    .forEach(roleType -> userRoles.add(new long[]{userId, this.roleRegistry.getRoleId(roleType)}));
+        }
+        this.jdbcTemplate.batchUpdate(INSERT_USER_ROLE_SQL, userRoles, userRoles.size(), (ps, userRole) -> {
+            ps.setLong(1, userRole[0]);
+            ps.setLong(2, userRole[1]);
+        });
+    }
+
+    private void checkForDuplicates(List<UserImportDTO> users) {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (UserImportDTO user : users) {
+            if (!usernames.add(User.normalize(user.getUsername()))) {
+                throw new ResourceConflictException("User", "username", user.getUsername());
+            }
+            if (!emails.add(User.normalize(user.getEmail()))) {
+                throw new ResourceConflictException("User", "email", user.getEmail());
+            }
+        }
+    }
+
+}
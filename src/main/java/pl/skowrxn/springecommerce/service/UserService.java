@@ -21,8 +21,4 @@ public interface UserService {
     void deleteUser(Long id);
 
     UserListResponse getAllUsers(int page, int size);
-
-    boolean existsByUsernameIgnoreCase(String username);
-
-    boolean existsByEmailIgnoreCase(String email);
 }
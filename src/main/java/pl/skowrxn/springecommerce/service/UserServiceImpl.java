@@ -1,6 +1,9 @@
 package pl.skowrxn.springecommerce.service;
 
-import org.modelmapper.ModelMapper;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -8,39 +11,45 @@ import org.springframework.stereotype.Service;
 import pl.skowrxn.springecommerce.dto.UserDTO;
 import pl.skowrxn.springecommerce.dto.response.UserListResponse;
 import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
 import pl.skowrxn.springecommerce.exception.ResourceConflictException;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.UserMapper;
 import pl.skowrxn.springecommerce.repository.UserRepository;
 
 import java.util.List;
+import java.util.Locale;
 
 @Service
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final UserMapper userMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public UserServiceImpl(UserRepository userRepository, ModelMapper modelMapper) {
+    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper,
+                           ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
-        this.modelMapper = modelMapper;
+        this.userMapper = userMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     public UserDTO getUserDTOById(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
-        return this.modelMapper.map(user, UserDTO.class);
+        return this.userMapper.toDTO(user);
     }
 
     public UserDTO getUserDTOByEmail(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", email));
-        return this.modelMapper.map(user, UserDTO.class);
+        return this.userMapper.toDTO(user);
     }
 
     public UserDTO getUserDTOByUsername(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        return this.modelMapper.map(user, UserDTO.class);
+        return this.userMapper.toDTO(user);
     }
 
     @Override
@@ -63,38 +72,71 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public UserDTO saveUser(UserDTO userDTO) {
-        this.userRepository.findByEmail(userDTO.getEmail()).ifPresent(user -> {
-            throw new ResourceConflictException("User", "email", user.getEmail());
-        });
-        this.userRepository.findByUsername(userDTO.getUsername()).ifPresent(user -> {
-            throw new ResourceConflictException("User", "username", user.getUsername());
-        });
-        User savedUser = this.userRepository.save(this.modelMapper.map(userDTO, User.class));
-        return this.modelMapper.map(savedUser, UserDTO.class);
+        User savedUser = this.insertUser(this.userMapper.toEntity(userDTO));
+        return this.userMapper.toDTO(savedUser);
     }
 
     @Override
     public User saveUser(User user) {
-        this.userRepository.findByEmail(user.getEmail()).ifPresent(existingUser -> {
-            throw new ResourceConflictException("User", "email", user.getEmail());
-        });
-        this.userRepository.findByUsername(user.getUsername()).ifPresent(existingUser -> {
-            throw new ResourceConflictException("User", "username", user.getUsername());
-        });
-        return this.userRepository.save(user);
+        return this.insertUser(user);
+    }
+
+    /**
+     * Inserts the user without checking for existing accounts first: the unique constraints on the
+     * normalized username and email decide, so concurrent signups cannot both succeed.
+     */
+    private User insertUser(User user) {
+        User savedUser;
+        try {
+            savedUser = this.userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw this.toConflict(e, user);
+        }
+        this.eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), savedUser.getUsername(),
+                UserChangedEvent.Type.CREATED));
+        return savedUser;
+    }
+
+    private RuntimeException toConflict(DataIntegrityViolationException exception, User user) {
+        ConstraintViolationException constraintViolation = null;
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException found) {
+                constraintViolation = found;
+                break;
+            }
+        }
+        String constraintName = constraintViolation != null ? constraintViolation.getConstraintName() : null;
+        // Drivers do not always report the constraint name, the message of the SQL error names the index
+        String violation = String.valueOf(constraintName != null ? constraintName
+                : exception.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (violation.contains(User.USERNAME_UNIQUE_CONSTRAINT)) {
+            return new ResourceConflictException("User", "username", user.getUsername());
+        }
+        if (violation.contains(User.EMAIL_UNIQUE_CONSTRAINT)) {
+            return new ResourceConflictException("User", "email", user.getEmail());
+        }
+        // Unique keys Hibernate generated names for on older databases, the field they cover is unknown
+        if (exception instanceof DuplicateKeyException || (constraintViolation != null
+                && constraintViolation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE)) {
+            return new ResourceConflictException("User");
+        }
+        return exception;
     }
 
     @Override
     public UserDTO updateUser(UserDTO userDTO) {
         User existingUser = this.userRepository.findById(userDTO.getId())
                         .orElseThrow(() -> new ResourceNotFoundException("User", "id", userDTO.getId()));
+        String previousUsername = existingUser.getUsername();
         existingUser.setEmail(userDTO.getEmail());
         existingUser.setUsername(userDTO.getUsername());
         existingUser.setAddresses(userDTO.getAddresses());
         existingUser.setRoles(userDTO.getRoles());
         existingUser.setProducts(userDTO.getProducts());
         User updatedUser = this.userRepository.save(existingUser);
-        return this.modelMapper.map(updatedUser, UserDTO.class);
+        this.eventPublisher.publishEvent(new UserChangedEvent(updatedUser.getId(), previousUsername,
+                UserChangedEvent.Type.UPDATED));
+        return this.userMapper.toDTO(updatedUser);
     }
 
     @Override
@@ -102,6 +144,8 @@ public class UserServiceImpl implements UserService {
         User user = this.userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
         this.userRepository.delete(user);
+        this.eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getUsername(),
+                UserChangedEvent.Type.DELETED));
     }
 
     @Override
@@ -109,18 +153,8 @@ public class UserServiceImpl implements UserService {
         Pageable pageable = PageRequest.of(page, size);
         Page<User> users = this.userRepository.findAll(pageable);
         List<UserDTO> userDTOs = users.stream()
-                .map(user -> this.modelMapper.map(user, UserDTO.class))
+                .map(user -> this.userMapper.toDTO(user))
                 .toList();
         return new UserListResponse(userDTOs, page, size, users.getTotalPages(), users.getTotalElements(), users.isLast());
     }
-
-    @Override
-    public boolean existsByUsernameIgnoreCase(String username) {
-        return this.userRepository.existsByUsernameIgnoreCase(username);
-    }
-
-    @Override
-    public boolean existsByEmailIgnoreCase(String email) {
-        return this.userRepository.existsByEmailIgnoreCase(email);
-    }
 }
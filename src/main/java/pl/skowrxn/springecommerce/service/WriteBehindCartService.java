@@ -0,0 +1,221 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.CartOperationDTO;
+import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.dto.response.CartSummaryResponse;
+import pl.skowrxn.springecommerce.entity.Cart;
+import pl.skowrxn.springecommerce.entity.CartItem;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.CartItemMapper;
+import pl.skowrxn.springecommerce.mapper.ProductMapper;
+import pl.skowrxn.springecommerce.repository.CartItemRepository;
+import pl.skowrxn.springecommerce.repository.CartRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+import pl.skowrxn.springecommerce.util.Money;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Cart operations on the {@link WriteBehindCartStore}, enabled with {@code spring.app.cart.store=write-behind}.
+ * Single item edits and reads are served from memory; operations touching the whole cart write it out
+ * and fall back to {@link CartServiceImpl}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "spring.app.cart.store", havingValue = "write-behind")
+public class WriteBehindCartService implements CartService {
+
+    private final CartServiceImpl jpaCartService;
+    private final WriteBehindCartStore cartStore;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final AuthUtil authUtil;
+    private final CartItemMapper cartItemMapper;
+    private final ProductMapper productMapper;
+
+    public WriteBehindCartService(CartServiceImpl jpaCartService, WriteBehindCartStore cartStore,
+                                  CartRepository cartRepository, CartItemRepository cartItemRepository,
+                                  ProductRepository productRepository, StockReservationService stockReservationService,
+                                  AuthUtil authUtil, CartItemMapper cartItemMapper, ProductMapper productMapper) {
+        this.jpaCartService = jpaCartService;
+        this.cartStore = cartStore;
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.authUtil = authUtil;
+        this.cartItemMapper = cartItemMapper;
+        this.productMapper = productMapper;
+    }
+
+    @Override
+    public CartItemDTO addToCart(Long productId, Integer quantity) {
+        Product product = this.productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+        int remainingStock = this.stockReservationService.reserve(product, quantity);
+        Instant reservedUntil = this.stockReservationService.holdUntil(product);
+        Long userId = this.authUtil.getLoggedInUserId();
+
+        try {
+            return this.cartStore.withCart(userId, () -> this.loadCart(userId), cart -> {
+                WriteBehindCartStore.Line line = cart.getLine(productId);
+                if (line == null) {
+                    line = cart.addLine(this.cartStore.nextTemporaryId(), this.productMapper.toDTO(product),
+                            Money.toMinor(product.getPrice()));
+                }
+                cart.setQuantity(line, line.getQuantity() + quantity, reservedUntil);
+                // The loaded product predates the reservation, report the stock it left behind
+                line.getProduct().setStockQuantity(remainingStock);
+                return line.toDTO(cart.getCartId());
+            });
+        } catch (RuntimeException e) {
+            // Nothing holds the reservation, the stock was not added to any cart
+            this.stockReservationService.release(productId, quantity);
+            throw e;
+        }
+    }
+
+    @Override
+    public void removeFromCart(Long cartItemId) {
+        this.setQuantity(cartItemId, 0);
+    }
+
+    @Override
+    public void removeFromCart(CartItem cartItem) {
+        this.cartStore.evict(this.authUtil.getLoggedInUserId());
+        this.jpaCartService.removeFromCart(cartItem);
+    }
+
+    @Override
+    public void clearCart() {
+        this.clearCart(true);
+    }
+
+    @Override
+    public void clearCart(boolean releaseStock) {
+        this.cartStore.evict(this.authUtil.getLoggedInUserId());
+        this.jpaCartService.clearCart(releaseStock);
+    }
+
+    @Override
+    public Double getTotalPrice() {
+        return this.getCartSummary().getTotalPrice();
+    }
+
+    @Override
+    public Integer getTotalQuantity() {
+        return this.getCartSummary().getQuantity();
+    }
+
+    @Override
+    public CartSummaryResponse getCartSummary() {
+        Long userId = this.authUtil.getLoggedInUserId();
+        return this.cartStore.withCart(userId, () -> this.loadCart(userId),
+                cart -> new CartSummaryResponse(cart.getCartId(), cart.getLines().size(),
+                        Money.toMajor(cart.getTotalPriceMinor()), cart.getLastModified(), cart.getVersion()));
+    }
+
+    @Override
+    public String getCartVersion() {
+        Long userId = this.authUtil.getLoggedInUserId();
+        return this.cartStore.withCart(userId, () -> this.loadCart(userId), WriteBehindCartStore.StoredCart::getVersion);
+    }
+
+    @Override
+    public CartItemDTO updateCartItemQuantity(Long cartItemId, Integer quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        return this.setQuantity(cartItemId, quantity);
+    }
+
+    @Override
+    public CartContentResponse getCartContent() {
+        Long userId = this.authUtil.getLoggedInUserId();
+        return this.cartStore.withCart(userId, () -> this.loadCart(userId), cart -> {
+            List<CartItemDTO> cartItems = cart.getLines().stream()
+                    .map(line -> line.toDTO(cart.getCartId()))
+                    .toList();
+            return new CartContentResponse(cart.getCartId(), cartItems.size(),
+                    Money.toMajor(cart.getTotalPriceMinor()), cartItems, cart.getVersion());
+        });
+    }
+
+    @Override
+    public CartContentResponse applyBatch(List<CartOperationDTO> operations) {
+        this.cartStore.evict(this.authUtil.getLoggedInUserId());
+        return this.jpaCartService.applyBatch(operations);
+    }
+
+    @Override
+    public void flushCart() {
+        this.cartStore.flush(this.authUtil.getLoggedInUserId());
+    }
+
+    @Override
+    public void discardCart() {
+        this.cartStore.discard(this.authUtil.getLoggedInUserId());
+    }
+
+    /**
+     * @return the changed item, or {@code null} when it was removed
+     */
+    private CartItemDTO setQuantity(Long cartItemId, int quantity) {
+        Long userId = this.authUtil.getLoggedInUserId();
+        return this.cartStore.withCart(userId, () -> this.loadCart(userId), cart -> {
+            WriteBehindCartStore.Line line = cart.findLineById(cartItemId);
+            if (line == null) {
+                throw new ResourceNotFoundException("CartItem", "id", cartItemId);
+            }
+            Product product = this.productRepository.findById(line.getProductId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", line.getProductId()));
+
+            int difference = quantity - line.getQuantity();
+            if (difference > 0) {
+                this.stockReservationService.reserve(product, difference);
+            } else if (difference < 0) {
+                this.stockReservationService.release(product.getId(), -difference);
+            }
+
+            if (quantity == 0) {
+                cart.setQuantity(line, 0, null);
+                return null;
+            }
+            cart.setQuantity(line, quantity, this.stockReservationService.holdUntil(product));
+            return line.toDTO(cart.getCartId());
+        });
+    }
+
+    private WriteBehindCartStore.StoredCart loadCart(Long userId) {
+        CartSummaryResponse summary = this.cartRepository.findSummaryByUserId(userId)
+                .orElseGet(this::createCart);
+        Long cartId = summary.getId();
+        WriteBehindCartStore.StoredCart cart = new WriteBehindCartStore.StoredCart(userId, cartId,
+                summary.getVersion(), summary.getLastModified());
+        for (CartItem cartItem : this.cartItemRepository.findAllWithProductByCartId(cartId)) {
+            cart.load(cartItem.getId(), this.cartItemMapper.toDTO(cartItem).getProduct(),
+                    cartItem.getSinglePriceMinor(), cartItem.getQuantity(), cartItem.getReservedUntil());
+        }
+        return cart;
+    }
+
+    private CartSummaryResponse createCart() {
+        User user = this.authUtil.getLoggedInUser();
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+        Long cartId = this.cartRepository.save(cart).getId();
+        return new CartSummaryResponse(cartId, 0, 0.0, null, Cart.versionOf(cartId, 0));
+    }
+
+}
@@ -0,0 +1,634 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.ProductDTO;
+import pl.skowrxn.springecommerce.entity.Cart;
+import pl.skowrxn.springecommerce.entity.CartItem;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.exception.ProductOutOfStockException;
+import pl.skowrxn.springecommerce.repository.CartItemRepository;
+import pl.skowrxn.springecommerce.repository.CartRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.util.Money;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the carts of active users in memory and writes their changes to the database in the background,
+ * so repeated edits of a cart between two flushes end up as a single write per line. Changes are appended
+ * to a {@link CartRecoveryLog} before they are acknowledged and replayed from it after a restart.
+ * <p>
+ * The store is local to the node, so requests of one user have to reach the same node. Stock is still
+ * reserved synchronously by the callers; only the cart rows are written late.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.app.cart.store", havingValue = "write-behind")
+public class WriteBehindCartStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private final CartItemRepository cartItemRepository;
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final TransactionTemplate transactionTemplate;
+    private final CartRecoveryLog recoveryLog;
+    private final Duration idleTimeout;
+    private final Map<Long, StoredCart> carts = new ConcurrentHashMap<>();
+    // Ids of lines not written yet, negative so they never collide with database ids
+    private final AtomicLong temporaryIds = new AtomicLong();
+    private final Counter writtenLines;
+    private volatile boolean recovered;
+
+    public WriteBehindCartStore(CartItemRepository cartItemRepository, CartRepository cartRepository,
+                                ProductRepository productRepository, StockReservationService stockReservationService,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                @Value("${spring.app.cart.writeBehind.logFile:data/cart-write-behind.log}") String logFile,
+                                @Value("${spring.app.cart.writeBehind.fsync:true}") boolean fsync,
+                                @Value("${spring.app.cart.writeBehind.idleMinutes:30}") long idleMinutes) {
+        this.cartItemRepository = cartItemRepository;
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recoveryLog = new CartRecoveryLog(Path.of(logFile), fsync);
+        this.idleTimeout = Duration.ofMinutes(idleMinutes);
+        this.writtenLines = Counter.builder("cart.writebehind.written")
+                .description("Cart lines written to the database by the write-behind cart store")
+                .register(meterRegistry);
+        Gauge.builder("cart.writebehind.carts", this.carts, Map::size)
+                .description("Carts held in memory by the write-behind cart store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code action} on the cart of the user, loading it with {@code loader} when it is not in memory.
+     * Actions on the same cart run one at a time; the lines they change are logged before this returns.
+     */
+    public <T> T withCart(Long userId, Supplier<StoredCart> loader, Function<StoredCart, T> action) {
+        while (true) {
+            StoredCart cart = this.carts.computeIfAbsent(userId, id -> loader.get());
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    cart.lastAccess = Instant.now();
+                    cart.dropExpired(cart.lastAccess);
+                    T result = action.apply(cart);
+                    this.recoveryLog.append(cart.takeUnlogged());
+                    return result;
+                }
+            }
+            // Evicted in the meantime, wait until it is written and gone before loading it again
+            cart.dropped.join();
+        }
+    }
+
+    public long nextTemporaryId() {
+        return this.temporaryIds.decrementAndGet();
+    }
+
+    /**
+     * Writes the cart of the user, if it is in memory, and drops it, so the database is the only copy left.
+     */
+    public void evict(Long userId) {
+        StoredCart cart = this.carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        synchronized (cart) {
+            cart.evicted = true;
+        }
+        try {
+            this.flush(cart);
+        } finally {
+            this.carts.remove(userId, cart);
+            cart.dropped.complete(null);
+        }
+    }
+
+    /**
+     * Drops the cart of the user, if it is in memory, without writing it, once checkout has ordered and removed
+     * the rows written for it. Stock reserved or released by changes made since then is settled, as checkout
+     * took the written quantities and nothing else.
+     */
+    public void discard(Long userId) {
+        StoredCart cart = this.carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        synchronized (cart) {
+            cart.evicted = true;
+        }
+        Map<Long, Integer> unwritten;
+        // Waits for a running flush, whose rows checkout may or may not have seen
+        synchronized (cart.flushLock) {
+            synchronized (cart) {
+                unwritten = cart.takeUnwritten();
+                // Replaying the changes after a restart must not bring the lines back
+                this.recoveryLog.append(unwritten.keySet().stream()
+                        .map(productId -> new CartRecoveryLog.Entry(cart.cartId, productId, 0, 0L, null, false))
+                        .toList());
+            }
+        }
+        this.carts.remove(userId, cart);
+        cart.dropped.complete(null);
+
+        unwritten.forEach((productId, difference) -> {
+            if (difference > 0) {
+                this.stockReservationService.release(productId, difference);
+            } else if (difference < 0 && !this.tryReserve(productId, -difference)) {
+                logger.warn("Product {} got {} units too many back after a discarded cart line", productId, -difference);
+            }
+        });
+    }
+
+    public void flush(Long userId) {
+        StoredCart cart = this.carts.get(userId);
+        if (cart != null) {
+            this.flush(cart);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${spring.app.cart.writeBehind.flushIntervalMs:1000}")
+    public synchronized void flushAll() {
+        if (!this.recovered) {
+            this.recover();
+        }
+        Instant idleSince = Instant.now().minus(this.idleTimeout);
+        this.recoveryLog.mark();
+        int written = 0;
+        for (StoredCart cart : this.carts.values()) {
+            written += this.flush(cart);
+            synchronized (cart) {
+                if (!cart.evicted && !cart.hasDirtyLines() && cart.lastAccess.isBefore(idleSince)) {
+                    cart.evicted = true;
+                    this.carts.remove(cart.userId, cart);
+                    cart.dropped.complete(null);
+                }
+            }
+        }
+        if (this.recovered) {
+            this.compactLog();
+        }
+        if (written > 0) {
+            logger.debug("Wrote {} cart lines", written);
+        }
+    }
+
+    /**
+     * Writes the lines left in the recovery log by the previous run, before the first request changes a cart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        if (this.recovered) {
+            return;
+        }
+        this.recoveryLog.mark();
+        // Later entries of a line replace earlier ones
+        Map<Long, Map<Long, CartRecoveryLog.Entry>> latest = new LinkedHashMap<>();
+        for (CartRecoveryLog.Entry entry : this.recoveryLog.readAll()) {
+            latest.computeIfAbsent(entry.getCartId(), id -> new LinkedHashMap<>()).put(entry.getProductId(), entry);
+        }
+        try {
+            for (Map.Entry<Long, Map<Long, CartRecoveryLog.Entry>> cart : latest.entrySet()) {
+                List<CartRecoveryLog.Entry> lines = new ArrayList<>(cart.getValue().values());
+                // Swept lines are not settled, the log cannot tell which of its states the sweeper gave back
+                this.transactionTemplate.execute(status ->
+                        this.write(cart.getKey(), lines, new HashMap<>(), new HashSet<>()));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not replay the cart recovery log, retrying on the next flush", e);
+            return;
+        }
+        this.recovered = true;
+        this.compactLog();
+        if (!latest.isEmpty()) {
+            logger.info("Replayed the cart recovery log into {} carts", latest.size());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        this.flushAll();
+        this.recoveryLog.close();
+    }
+
+    /**
+     * @return the number of lines written
+     */
+    private int flush(StoredCart cart) {
+        // Flushes of one cart must not overtake each other, or an older state could be written last
+        synchronized (cart.flushLock) {
+            return this.flushInOrder(cart);
+        }
+    }
+
+    private int flushInOrder(StoredCart cart) {
+        List<CartRecoveryLog.Entry> pending;
+        synchronized (cart) {
+            pending = cart.takeDirtyLines();
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Long> writtenIds = new HashMap<>();
+        Set<Long> sweptProductIds = new HashSet<>();
+        long revision;
+        try {
+            revision = this.transactionTemplate.execute(status ->
+                    this.write(cart.cartId, pending, writtenIds, sweptProductIds));
+        } catch (RuntimeException e) {
+            synchronized (cart) {
+                cart.restoreDirtyLines(pending);
+            }
+            logger.warn("Could not write cart {}, retrying on the next flush", cart.cartId, e);
+            return 0;
+        }
+
+        boolean rewrite = false;
+        synchronized (cart) {
+            cart.written(pending, writtenIds, sweptProductIds, revision);
+            for (CartRecoveryLog.Entry entry : pending) {
+                if (sweptProductIds.contains(entry.getProductId())) {
+                    rewrite |= this.settleSwept(cart, entry);
+                }
+            }
+            this.recoveryLog.append(cart.takeUnlogged());
+        }
+        this.writtenLines.increment(pending.size());
+        // A line kept after the sweeper removed its row has to be inserted again before the cart can be dropped
+        return rewrite ? pending.size() + this.flushInOrder(cart) : pending.size();
+    }
+
+    /**
+     * Called when the reservation sweeper removed the row of a written line and gave back the quantity written
+     * to it, while the edits made since were reserved or released against that quantity. Takes the written
+     * quantity again to keep the line; when the product ran out in the meantime, drops the line and settles
+     * the edits instead.
+     *
+     * @return whether the line is kept and has to be written again
+     */
+    private boolean settleSwept(StoredCart cart, CartRecoveryLog.Entry entry) {
+        Long productId = entry.getProductId();
+        Line line = cart.lines.get(productId);
+        if (line == null) {
+            // Dropped as expired while it was written, the sweeper gave back what the line held
+            return false;
+        }
+        int quantity = line.quantity;
+        int writtenQuantity = line.writtenQuantity;
+        if (quantity > 0 && this.tryReserve(productId, writtenQuantity)) {
+            cart.rewrite(line);
+            return true;
+        }
+        cart.drop(productId);
+        // Positive when the sweeper gave back stock the edits had already released, negative when the edits
+        // reserved stock no line holds any more
+        int excess = writtenQuantity - quantity;
+        if (excess < 0) {
+            this.stockReservationService.release(productId, -excess);
+        } else if (excess > 0 && !this.tryReserve(productId, excess)) {
+            logger.warn("Product {} got {} units too many back after a swept cart line was removed", productId, excess);
+        }
+        return false;
+    }
+
+    private boolean tryReserve(Long productId, int quantity) {
+        Optional<Product> product = this.productRepository.findById(productId);
+        if (product.isEmpty()) {
+            return false;
+        }
+        try {
+            this.stockReservationService.reserve(product.get(), quantity);
+            return true;
+        } catch (ProductOutOfStockException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the state of each line by (cart, product), so that writing a line twice changes nothing.
+     *
+     * @param writtenIds filled with the database ids of the lines that had none yet, by product id
+     * @param sweptProductIds filled with the products of written lines whose row is gone
+     * @return the revision of the cart after the write
+     */
+    private long write(Long cartId, List<CartRecoveryLog.Entry> lines, Map<Long, Long> writtenIds,
+                       Set<Long> sweptProductIds) {
+        for (CartRecoveryLog.Entry line : lines) {
+            if (line.getQuantity() == 0) {
+                if (this.cartItemRepository.deleteByCartIdAndProductId(cartId, line.getProductId()) == 0
+                        && line.isPersisted()) {
+                    sweptProductIds.add(line.getProductId());
+                }
+            } else if (this.cartItemRepository.setQuantity(cartId, line.getProductId(), line.getQuantity(),
+                    line.getReservedUntil()) > 0) {
+                if (!line.isPersisted()) {
+                    // Already inserted by an earlier write that was not acknowledged, e.g. a recovery log replay
+                    this.cartItemRepository.findIdByCartIdAndProductId(cartId, line.getProductId())
+                            .ifPresent(id -> writtenIds.put(line.getProductId(), id));
+                }
+            } else {
+                if (line.isPersisted()) {
+                    // Removed by the reservation sweeper, which already gave its stock back, see settleSwept
+                    sweptProductIds.add(line.getProductId());
+                    continue;
+                }
+                CartItem cartItem = new CartItem();
+                cartItem.setCart(this.cartRepository.getReferenceById(cartId));
+                cartItem.setProduct(this.productRepository.getReferenceById(line.getProductId()));
+                cartItem.setSinglePriceMinor(line.getSinglePriceMinor());
+                cartItem.setTotalPriceMinor(line.getSinglePriceMinor() * line.getQuantity());
+                cartItem.setQuantity(line.getQuantity());
+                cartItem.setReservedUntil(line.getReservedUntil());
+                writtenIds.put(line.getProductId(), this.cartItemRepository.save(cartItem).getId());
+            }
+        }
+        this.cartRepository.recalculateTotals(List.of(cartId), Instant.now());
+        return this.cartRepository.findRevisionById(cartId).orElseThrow();
+    }
+
+    /**
+     * Rewrites the recovery log with the lines still waiting to be written; expects {@link CartRecoveryLog#mark()}
+     * to have been called before the carts were read.
+     */
+    private void compactLog() {
+        List<CartRecoveryLog.Entry> pending = new ArrayList<>();
+        for (StoredCart cart : this.carts.values()) {
+            synchronized (cart) {
+                pending.addAll(cart.dirtyEntries());
+            }
+        }
+        this.recoveryLog.rewrite(pending);
+    }
+
+    /**
+     * A cart held in memory, with its lines by product id. Only accessed while synchronized on it.
+     */
+    public static class StoredCart {
+
+        private final Long userId;
+        @Getter
+        private final Long cartId;
+        private final Map<Long, Line> lines = new LinkedHashMap<>();
+        private final Set<Long> unlogged = new LinkedHashSet<>();
+        private final Object flushLock = new Object();
+        // Completed once an evicted cart is no longer in the store
+        private final CompletableFuture<Void> dropped = new CompletableFuture<>();
+        private Instant lastAccess = Instant.now();
+        @Getter
+        private Instant lastModified;
+        private String writtenVersion;
+        private long changes;
+        private long changesTaken;
+        private boolean evicted;
+
+        /**
+         * @param loadedVersion version of the cart in the database, which the next load sees changed if this
+         *                      cart changes in any way while it is held
+         */
+        public StoredCart(Long userId, Long cartId, String loadedVersion, Instant lastModified) {
+            this.userId = userId;
+            this.cartId = cartId;
+            this.writtenVersion = loadedVersion;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Adds a line read from the database.
+         */
+        public void load(Long id, ProductDTO product, long singlePriceMinor, int quantity, Instant reservedUntil) {
+            Line line = new Line(id, product.getId(), product, singlePriceMinor);
+            line.quantity = quantity;
+            line.writtenQuantity = quantity;
+            line.reservedUntil = reservedUntil;
+            line.persisted = true;
+            this.lines.put(product.getId(), line);
+        }
+
+        /**
+         * @return the line of the product, including one removed but not yet written
+         */
+        public Line getLine(Long productId) {
+            return this.lines.get(productId);
+        }
+
+        public Line addLine(long temporaryId, ProductDTO product, long singlePriceMinor) {
+            Line line = new Line(temporaryId, product.getId(), product, singlePriceMinor);
+            this.lines.put(product.getId(), line);
+            return line;
+        }
+
+        /**
+         * @return the line with the given database or temporary id, unless it was removed
+         */
+        public Line findLineById(Long id) {
+            for (Line line : this.lines.values()) {
+                if (line.quantity > 0 && (id.equals(line.id) || id.equals(line.temporaryId))) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        public void setQuantity(Line line, int quantity, Instant reservedUntil) {
+            line.quantity = quantity;
+            line.reservedUntil = reservedUntil;
+            line.dirty = true;
+            this.unlogged.add(line.productId);
+            this.lastModified = Instant.now();
+            this.changes++;
+        }
+
+        /**
+         * @return a version that changes with every change to the content of the cart, see {@link Cart#versionOf}
+         */
+        public String getVersion() {
+            // Each write raises the revision in the database and starts counting the changes since it again
+            return this.writtenVersion + "." + this.changes;
+        }
+
+        public List<Line> getLines() {
+            return this.lines.values().stream().filter(line -> line.quantity > 0).toList();
+        }
+
+        public long getTotalPriceMinor() {
+            return this.lines.values().stream().mapToLong(Line::getTotalPriceMinor).sum();
+        }
+
+        /**
+         * Forgets written lines whose reservation ended; the reservation sweeper removes their rows.
+         */
+        private void dropExpired(Instant now) {
+            if (this.lines.values().removeIf(line -> line.persisted && !line.dirty && line.reservedUntil != null
+                    && line.reservedUntil.isBefore(now))) {
+                this.changes++;
+            }
+        }
+
+        /**
+         * @return by product id, how much more each changed line holds than was written for it
+         */
+        private Map<Long, Integer> takeUnwritten() {
+            Map<Long, Integer> unwritten = new TreeMap<>();
+            for (Line line : this.lines.values()) {
+                if (line.dirty) {
+                    unwritten.put(line.productId, line.quantity - line.writtenQuantity);
+                }
+            }
+            this.lines.clear();
+            this.unlogged.clear();
+            return unwritten;
+        }
+
+        private boolean hasDirtyLines() {
+            return this.lines.values().stream().anyMatch(line -> line.dirty);
+        }
+
+        private List<CartRecoveryLog.Entry> takeUnlogged() {
+            List<CartRecoveryLog.Entry> entries = new ArrayList<>(this.unlogged.size());
+            for (Long productId : this.unlogged) {
+                Line line = this.lines.get(productId);
+                if (line != null) {
+                    entries.add(line.toEntry(this.cartId));
+                }
+            }
+            this.unlogged.clear();
+            return entries;
+        }
+
+        private List<CartRecoveryLog.Entry> dirtyEntries() {
+            return this.lines.values().stream().filter(line -> line.dirty).map(line -> line.toEntry(this.cartId)).toList();
+        }
+
+        private List<CartRecoveryLog.Entry> takeDirtyLines() {
+            List<CartRecoveryLog.Entry> entries = this.dirtyEntries();
+            this.lines.values().forEach(line -> line.dirty = false);
+            this.changesTaken = this.changes;
+            return entries;
+        }
+
+        private void restoreDirtyLines(List<CartRecoveryLog.Entry> pending) {
+            for (CartRecoveryLog.Entry entry : pending) {
+                Line line = this.lines.get(entry.getProductId());
+                if (line != null) {
+                    line.dirty = true;
+                }
+            }
+        }
+
+        /**
+         * Brings the lines in line with the database after {@code pending} was written at {@code revision}.
+         * Only the changes made while the write was running still count towards the version.
+         */
+        private void written(List<CartRecoveryLog.Entry> pending, Map<Long, Long> writtenIds,
+                             Set<Long> sweptProductIds, long revision) {
+            for (CartRecoveryLog.Entry entry : pending) {
+                Line line = this.lines.get(entry.getProductId());
+                if (line == null) {
+                    continue;
+                }
+                if (sweptProductIds.contains(entry.getProductId())) {
+                    continue;
+                }
+                Long writtenId = writtenIds.get(entry.getProductId());
+                if (writtenId != null) {
+                    // The item is listed with its database id from now on
+                    line.id = writtenId;
+                    line.persisted = true;
+                }
+                line.writtenQuantity = entry.getQuantity();
+                if (entry.getQuantity() == 0 && !line.dirty) {
+                    this.lines.remove(entry.getProductId());
+                }
+            }
+            this.writtenVersion = Cart.versionOf(this.cartId, revision);
+            this.changes -= this.changesTaken;
+            this.changesTaken = 0;
+        }
+
+        /**
+         * Marks a line whose row is gone to be inserted again.
+         */
+        private void rewrite(Line line) {
+            line.persisted = false;
+            line.writtenQuantity = 0;
+            line.dirty = true;
+            this.unlogged.add(line.productId);
+        }
+
+        private void drop(Long productId) {
+            if (this.lines.remove(productId) != null) {
+                this.lastModified = Instant.now();
+                this.changes++;
+            }
+        }
+
+    }
+
+    /**
+     * One product in a {@link StoredCart}. A quantity of 0 marks a removed line until the removal is written.
+     */
+    @Getter
+    public static class Line {
+
+        private Long id;
+        private final Long temporaryId;
+        private final Long productId;
+        private final ProductDTO product;
+        private final long singlePriceMinor;
+        private int quantity;
+        // Quantity of the row in the database, which the reservation sweeper gives back when it removes the row
+        private int writtenQuantity;
+        private Instant reservedUntil;
+        private boolean persisted;
+        private boolean dirty;
+
+        private Line(Long id, Long productId, ProductDTO product, long singlePriceMinor) {
+            this.id = id;
+            this.temporaryId = id;
+            this.productId = productId;
+            this.product = product;
+            this.singlePriceMinor = singlePriceMinor;
+        }
+
+        public long getTotalPriceMinor() {
+            return this.singlePriceMinor * this.quantity;
+        }
+
+        public CartItemDTO toDTO(Long cartId) {
+            return new CartItemDTO(this.id, cartId, this.product, Money.toMajor(this.singlePriceMinor),
+                    Money.toMajor(this.getTotalPriceMinor()), this.quantity);
+        }
+
+        private CartRecoveryLog.Entry toEntry(Long cartId) {
+            return new CartRecoveryLog.Entry(cartId, this.productId, this.quantity, this.singlePriceMinor,
+                    this.reservedUntil, this.persisted);
+        }
+
+    }
+
+}
@@ -3,7 +3,8 @@ package pl.skowrxn.springecommerce.util;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import pl.skowrxn.springecommerce.entity.Cart;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.repository.UserRepository;
 import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
@@ -11,22 +12,42 @@ import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
 @Component
 public class AuthUtil {
 
+    private static final String LOGGED_IN_USER_ATTRIBUTE = AuthUtil.class.getName() + ".LOGGED_IN_USER";
+
     private final UserRepository userRepository;
 
     public AuthUtil(UserRepository userRepository) {
         this.userRepository = userRepository;
     }
 
-    public User getLoggedInUser() {
+    public Long getLoggedInUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof UserDetailsImpl userDetails)) {
             throw new RuntimeException("User not authenticated");
         }
-        Long loggedInUserId = ((UserDetailsImpl) authentication.getPrincipal()).getId();
-        return userRepository.findById(loggedInUserId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        return userDetails.getId();
     }
 
-
+    /**
+     * Loads the logged-in user together with the cart and its items. Within an HTTP request the
+     * user is loaded once and reused by every later call; the entity stays managed for the whole
+     * request because the persistence context is kept open in the view.
+     */
+    public User getLoggedInUser() {
+        Long loggedInUserId = this.getLoggedInUserId();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null
+                && requestAttributes.getAttribute(LOGGED_IN_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User user
+                && loggedInUserId.equals(user.getId())) {
+            return user;
+        }
+        User user = userRepository.findWithCartById(loggedInUserId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(LOGGED_IN_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
 
 }
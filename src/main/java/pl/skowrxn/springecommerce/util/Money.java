@@ -0,0 +1,25 @@
+package pl.skowrxn.springecommerce.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Converts between the {@code double} amounts exposed by the API and the minor units (cents) in which cart
+ * amounts are stored, so sums and differences of stored amounts are exact.
+ */
+public final class Money {
+
+    private static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    public static long toMinor(double amount) {
+        return BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_UP).movePointRight(SCALE).longValueExact();
+    }
+
+    public static double toMajor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE).doubleValue();
+    }
+
+}
@@ -1,6 +1,5 @@
 package pl.skowrxn.springecommerce.controller;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -9,7 +8,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 import pl.skowrxn.springecommerce.dto.AddressDTO;
 import pl.skowrxn.springecommerce.dto.response.AddressListResponse;
-import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.service.AddressService;
 import pl.skowrxn.springecommerce.util.AuthUtil;
 
@@ -31,20 +29,12 @@ class AddressControllerTest {
     @InjectMocks
     private AddressController addressController;
 
-    private User mockUser;
-
-    @BeforeEach
-    void setUp(){
-        mockUser = new User();
-        mockUser.setId(1L);
-    }
-
     @Test
     void createAddress_ShouldReturnCreatedAddress() {
         AddressDTO dto = new AddressDTO();
         dto.setId(UUID.randomUUID());
 
-        when(authUtil.getLoggedInUser()).thenReturn(mockUser);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
         when(addressService.createAddress(any(AddressDTO.class), eq(1L))).thenReturn(dto);
 
         ResponseEntity<AddressDTO> response = addressController.createAddress(dto);
@@ -72,7 +62,7 @@ class AddressControllerTest {
         responseDto.setUserId(1L);
         responseDto.setAddresses(Collections.emptyList());
 
-        when(authUtil.getLoggedInUser()).thenReturn(mockUser);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
         when(addressService.getAllAddresses(1L)).thenReturn(responseDto);
 
         ResponseEntity<AddressListResponse> response = addressController.getAllAddresses();
@@ -96,7 +86,7 @@ class AddressControllerTest {
         UUID addressId = UUID.randomUUID();
         AddressDTO dto = new AddressDTO();
 
-        when(authUtil.getLoggedInUser()).thenReturn(mockUser);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
         when(addressService.setDefaultAddress(1L, addressId)).thenReturn(dto);
 
         ResponseEntity<AddressDTO> response = addressController.setDefaultAddress(addressId);
@@ -109,7 +99,7 @@ class AddressControllerTest {
     void getDefaultAddress_ShouldReturnDefaultAddress() {
         AddressDTO dto = new AddressDTO();
 
-        when(authUtil.getLoggedInUser()).thenReturn(mockUser);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
         when(addressService.getDefaultAddress(1L)).thenReturn(dto);
 
         ResponseEntity<AddressDTO> response = addressController.getDefaultAddress();
@@ -0,0 +1,63 @@
+package pl.skowrxn.springecommerce.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.service.CartService;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartControllerTest {
+
+    @Mock
+    private CartService cartService;
+
+    @InjectMocks
+    private CartController cartController;
+
+    @Test
+    void getCartContent_ShouldReturnNotModifiedForCurrentVersion() {
+        when(cartService.getCartVersion()).thenReturn("1-4");
+
+        ResponseEntity<CartContentResponse> response = cartController.getCartContent("W/\"1-3\", \"1-4\"");
+
+        assertEquals(304, response.getStatusCode().value());
+        assertEquals("\"1-4\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(cartService, never()).getCartContent();
+    }
+
+    @Test
+    void getCartContent_ShouldReturnContentForOutdatedVersion() {
+        CartContentResponse content = new CartContentResponse(1L, 0, 0.0, Collections.emptyList(), "1-5");
+        when(cartService.getCartVersion()).thenReturn("1-5");
+        when(cartService.getCartContent()).thenReturn(content);
+
+        ResponseEntity<CartContentResponse> response = cartController.getCartContent("\"1-4\"");
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("\"1-5\"", response.getHeaders().getETag());
+        assertEquals(content, response.getBody());
+    }
+
+    @Test
+    void getCartContent_ShouldSkipVersionLookupWithoutIfNoneMatch() {
+        CartContentResponse content = new CartContentResponse(1L, 0, 0.0, Collections.emptyList(), "1-5");
+        when(cartService.getCartContent()).thenReturn(content);
+
+        ResponseEntity<CartContentResponse> response = cartController.getCartContent(null);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("\"1-5\"", response.getHeaders().getETag());
+        verify(cartService, never()).getCartVersion();
+    }
+
+}
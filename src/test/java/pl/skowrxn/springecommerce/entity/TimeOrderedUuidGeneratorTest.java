@@ -0,0 +1,44 @@
+package pl.skowrxn.springecommerce.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void next_ShouldBeVersion7WithCurrentTime() {
+        long before = System.currentTimeMillis();
+        UUID uuid = TimeOrderedUuidGenerator.next();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        // Ahead of the clock only when ids were generated faster than the counter allows
+        assertTrue(timestamp >= before && timestamp < after + 1000);
+    }
+
+    @Test
+    void next_ShouldIncreaseAsStoredBytes() {
+        byte[] previous = toBytes(TimeOrderedUuidGenerator.next());
+        // More ids than the counter holds, so some share a millisecond and the counter also runs out
+        for (int i = 0; i < 10_000; i++) {
+            byte[] current = toBytes(TimeOrderedUuidGenerator.next());
+            assertTrue(Arrays.compareUnsigned(previous, current) < 0);
+            previous = current;
+        }
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+}
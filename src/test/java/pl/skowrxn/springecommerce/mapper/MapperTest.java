@@ -0,0 +1,133 @@
+package pl.skowrxn.springecommerce.mapper;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.OrderDTO;
+import pl.skowrxn.springecommerce.dto.ProductDTO;
+import pl.skowrxn.springecommerce.dto.UserDTO;
+import pl.skowrxn.springecommerce.entity.*;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringJUnitConfig(MapperTest.MapperTestConfig.class)
+public class MapperTest {
+
+    @Configuration
+    @ComponentScan(basePackageClasses = MapperConfiguration.class)
+    static class MapperTestConfig {
+    }
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @Autowired
+    private CartItemMapper cartItemMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private Product product() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Keyboard");
+        product.setPrice(90.0);
+        product.setRegularPrice(100.0);
+        product.setDiscount(10.0);
+        product.setStockQuantity(5);
+        product.setCategory(new Category(2L, "Peripherals"));
+        product.setUser(new User("seller", "seller@example.com", "hash"));
+        return product;
+    }
+
+    @Test
+    void testProductRoundTrip() {
+        ProductDTO productDTO = productMapper.toDTO(product());
+
+        assertEquals("Keyboard", productDTO.getName());
+        assertEquals(90.0, productDTO.getPrice());
+        assertEquals("Peripherals", productDTO.getCategory().getName());
+
+        Product product = productMapper.toEntity(productDTO);
+
+        assertEquals(1L, product.getId());
+        assertEquals(100.0, product.getRegularPrice());
+        assertNull(product.getUser());
+    }
+
+    @Test
+    void testCartItemToDTO() {
+        Cart cart = new Cart();
+        cart.setId(3L);
+
+        CartItem cartItem = new CartItem();
+        cartItem.setId(4L);
+        cartItem.setCart(cart);
+        cartItem.setProduct(product());
+        cartItem.setQuantity(2);
+        cartItem.setSinglePrice(90.0);
+        cartItem.setTotalPrice(180.0);
+
+        CartItemDTO cartItemDTO = cartItemMapper.toDTO(cartItem);
+
+        assertEquals(3L, cartItemDTO.getCartId());
+        assertEquals(1L, cartItemDTO.getProduct().getId());
+        assertEquals(180.0, cartItemDTO.getTotalPrice());
+    }
+
+    @Test
+    void testOrderToDTO() {
+        User user = new User("buyer", "buyer@example.com", "hash");
+        Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setUser(user);
+
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProduct(product());
+        orderItem.setQuantity(2);
+        orderItem.setOrder(order);
+        order.setOrderItems(List.of(orderItem));
+
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setPaymentMethod("Card");
+        order.setPayment(payment);
+
+        Address address = new Address();
+        address.setCity("Warsaw");
+        order.setShippingAddress(address);
+
+        OrderDTO orderDTO = orderMapper.toDTO(order);
+
+        assertEquals("buyer@example.com", orderDTO.getEmail());
+        assertEquals("buyer", orderDTO.getUser().getUsername());
+        assertEquals(1, orderDTO.getOrderItems().size());
+        assertEquals("Keyboard", orderDTO.getOrderItems().get(0).getProduct().getName());
+        assertEquals("Card", orderDTO.getPayment().getPaymentMethod());
+        assertNull(orderDTO.getPayment().getOrder());
+        assertEquals("Warsaw", orderDTO.getShippingAddress().getCity());
+    }
+
+    @Test
+    void testUserToDTOSkipsLazyCollections() {
+        User user = new User("buyer", "buyer@example.com", "hash");
+        user.setRoles(List.of(new Role(RoleType.ROLE_USER)));
+
+        UserDTO userDTO = userMapper.toDTO(user);
+
+        assertEquals("buyer", userDTO.getUsername());
+        assertEquals(1, userDTO.getRoles().size());
+        assertNull(userDTO.getProducts());
+        assertNull(userDTO.getAddresses());
+    }
+
+}
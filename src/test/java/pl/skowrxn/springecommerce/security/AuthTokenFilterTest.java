@@ -0,0 +1,114 @@
+package pl.skowrxn.springecommerce.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import pl.skowrxn.springecommerce.security.service.UserDetailsImpl;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthTokenFilterTest {
+
+    private static final String COOKIE = "JWT-TOKEN";
+    private static final String SECRET = "c2hvcC1lbmdpbmUtdGVzdC1zZWNyZXQtdGhhdC1pcy1sb25nLWVub3VnaC1mb3ItaHM1MTItc2lnbmluZy1rZXlzLTEyMzQ1Njc4OTA=";
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    private JWTUtils jwtUtils;
+    private JWTDenylist jwtDenylist;
+    private SimpleMeterRegistry meterRegistry;
+    private UserDetailsImpl user;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = new JWTUtils(SECRET, 3_600_000L, COOKIE, "primary", List.of());
+        jwtDenylist = new JWTDenylist(3_600_000L, 100);
+        meterRegistry = new SimpleMeterRegistry();
+        user = new UserDetailsImpl(1L, "user", "user@example.com", "hash",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private AuthTokenFilter createFilter(boolean statelessPrincipal) {
+        return new AuthTokenFilter(jwtUtils, userDetailsService, jwtDenylist, meterRegistry, statelessPrincipal);
+    }
+
+    private void filter(AuthTokenFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/carts/users/cart");
+        request.setCookies(new Cookie(COOKIE, token));
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @Test
+    void testDoFilter_LoadsPrincipalByDefault() throws Exception {
+        when(userDetailsService.loadUserByUsername("user")).thenReturn(user);
+
+        this.filter(this.createFilter(false), jwtUtils.generateJWTToken(user));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertSame(user, authentication.getPrincipal());
+        assertEquals(1.0, meterRegistry.get("auth.principal.lookups").counter().count());
+    }
+
+    @Test
+    void testDoFilter_RejectsTokenOfLoggedOutUser() throws Exception {
+        String token = jwtUtils.generateJWTToken(user);
+
+        jwtDenylist.revoke("user");
+        this.filter(this.createFilter(false), token);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testDoFilter_BuildsStatelessPrincipalFromClaims() throws Exception {
+        this.filter(this.createFilter(true), jwtUtils.generateJWTToken(user));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        assertEquals(1L, principal.getId());
+        assertEquals("user", principal.getUsername());
+        assertEquals("user@example.com", principal.getEmail());
+        assertNull(principal.getPassword());
+        assertEquals(List.of("ROLE_USER"),
+                principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        verifyNoInteractions(userDetailsService);
+        assertEquals(1.0, meterRegistry.get("auth.principal.lookups.avoided").counter().count());
+    }
+
+    @Test
+    void testDoFilter_StatelessPrincipalFallsBackToLookupForTokenWithoutClaims() throws Exception {
+        when(userDetailsService.loadUserByUsername("user")).thenReturn(user);
+
+        this.filter(this.createFilter(true), jwtUtils.generateJWTToken("user"));
+
+        assertSame(user, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        assertEquals(1.0, meterRegistry.get("auth.principal.lookups").counter().count());
+    }
+
+}
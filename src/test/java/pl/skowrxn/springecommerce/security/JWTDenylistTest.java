@@ -0,0 +1,67 @@
+package pl.skowrxn.springecommerce.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JWTDenylistTest {
+
+    private JWTDenylist jwtDenylist;
+
+    @BeforeEach
+    void setUp() {
+        jwtDenylist = new JWTDenylist(3_600_000L, 100);
+    }
+
+    private JWTClaims claims(String username, long issuedAtMillis) {
+        return new JWTClaims(username, "primary", new Date(issuedAtMillis / 1000 * 1000),
+                new Date(issuedAtMillis + 3_600_000L), 1L, username + "@example.com", List.of("ROLE_USER"),
+                issuedAtMillis);
+    }
+
+    @Test
+    void testIsRevoked_TokenIssuedBeforeLogout() {
+        JWTClaims claims = this.claims("user", System.currentTimeMillis() - 1000);
+
+        jwtDenylist.revoke("user");
+
+        assertTrue(jwtDenylist.isRevoked(claims));
+    }
+
+    @Test
+    void testIsRevoked_TokenIssuedAfterLogoutIsValid() {
+        jwtDenylist.revoke("user");
+
+        assertFalse(jwtDenylist.isRevoked(this.claims("user", System.currentTimeMillis() + 1000)));
+        assertFalse(jwtDenylist.isRevoked(this.claims("other", System.currentTimeMillis() - 1000)));
+    }
+
+    @Test
+    void testIsRevoked_LegacyTokenWithoutMilliseconds() {
+        long issuedAt = (System.currentTimeMillis() - 2000) / 1000 * 1000;
+        // Only "iat" in seconds, as in tokens issued before the millisecond claim was introduced
+        JWTClaims claims = new JWTClaims("user", null, new Date(issuedAt), new Date(issuedAt + 3_600_000L),
+                null, null, null, null);
+
+        jwtDenylist.revoke("user");
+
+        assertTrue(jwtDenylist.isRevoked(claims));
+    }
+
+    @Test
+    void testOnUserChanged_RevokesOnUpdateButNotOnCreate() {
+        JWTClaims claims = this.claims("user", System.currentTimeMillis() - 1000);
+
+        jwtDenylist.onUserChanged(new UserChangedEvent(1L, "user", UserChangedEvent.Type.CREATED));
+        assertFalse(jwtDenylist.isRevoked(claims));
+
+        jwtDenylist.onUserChanged(new UserChangedEvent(1L, "user", UserChangedEvent.Type.UPDATED));
+        assertTrue(jwtDenylist.isRevoked(claims));
+    }
+
+}
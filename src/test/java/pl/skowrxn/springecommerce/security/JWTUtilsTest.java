@@ -0,0 +1,104 @@
+package pl.skowrxn.springecommerce.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JWTUtilsTest {
+
+    private static final long EXPIRATION_MS = 3_600_000L;
+    private static final String COOKIE = "JWT-TOKEN";
+
+    private String currentSecret;
+    private String previousSecret;
+    private JWTUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        currentSecret = secret();
+        previousSecret = secret();
+        jwtUtils = new JWTUtils(currentSecret, EXPIRATION_MS, COOKIE, "current",
+                List.of("previous:" + previousSecret));
+    }
+
+    private static String secret() {
+        return Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded());
+    }
+
+    @Test
+    void testGenerateJWTToken_SignsWithCurrentKey() {
+        String token = jwtUtils.generateJWTToken("user");
+
+        JWTClaims claims = jwtUtils.parseJwtToken(token);
+
+        assertNotNull(claims);
+        assertEquals("user", claims.getUsername());
+        assertEquals("current", claims.getKeyId());
+        assertTrue(jwtUtils.validateJwtToken(token));
+    }
+
+    @Test
+    void testParseJwtToken_VerifiesTokenSignedWithPreviousKey() {
+        JWTUtils beforeRotation = new JWTUtils(previousSecret, EXPIRATION_MS, COOKIE, "previous", List.of());
+        String token = beforeRotation.generateJWTToken("user");
+
+        JWTClaims claims = jwtUtils.parseJwtToken(token);
+
+        assertNotNull(claims);
+        assertEquals("user", claims.getUsername());
+        assertEquals("previous", claims.getKeyId());
+    }
+
+    @Test
+    void testParseJwtToken_RejectsUnknownKeyId() {
+        JWTUtils otherIssuer = new JWTUtils(currentSecret, EXPIRATION_MS, COOKIE, "retired", List.of());
+        String token = otherIssuer.generateJWTToken("user");
+
+        assertNull(jwtUtils.parseJwtToken(token));
+        assertFalse(jwtUtils.validateJwtToken(token));
+    }
+
+    @Test
+    void testParseJwtToken_RejectsTamperedToken() {
+        String token = jwtUtils.generateJWTToken("user");
+        String forgedPayload = Encoders.BASE64URL.encode("{\"sub\":\"admin\"}".getBytes());
+        String[] parts = token.split("\\.");
+
+        assertNull(jwtUtils.parseJwtToken(parts[0] + "." + forgedPayload + "." + parts[2]));
+    }
+
+    @Test
+    void testParseJwtToken_RejectsTokenSignedWithUnlistedKey() {
+        JWTUtils stranger = new JWTUtils(secret(), EXPIRATION_MS, COOKIE, "current", List.of());
+
+        assertNull(jwtUtils.parseJwtToken(stranger.generateJWTToken("user")));
+    }
+
+    @Test
+    void testParseJwtToken_VerifiesTokenWithoutKeyIdWithCurrentKey() {
+        // Tokens issued before key ids were introduced
+        Date now = new Date();
+        String token = Jwts.builder()
+                .subject("user")
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + EXPIRATION_MS))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(currentSecret)))
+                .compact();
+
+        JWTClaims claims = jwtUtils.parseJwtToken(token);
+
+        assertNotNull(claims);
+        assertEquals("user", claims.getUsername());
+        assertNull(claims.getKeyId());
+        assertFalse(claims.hasPrincipal());
+    }
+
+}
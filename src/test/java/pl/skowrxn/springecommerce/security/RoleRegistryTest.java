@@ -0,0 +1,78 @@
+package pl.skowrxn.springecommerce.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.skowrxn.springecommerce.entity.Role;
+import pl.skowrxn.springecommerce.entity.RoleType;
+import pl.skowrxn.springecommerce.repository.RoleRepository;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RoleRegistryTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    private RoleRegistry roleRegistry;
+
+    @BeforeEach
+    void setUp() {
+        roleRegistry = new RoleRegistry(roleRepository);
+    }
+
+    private Role role(Integer id, RoleType roleType) {
+        Role role = new Role(roleType);
+        role.setId(id);
+        return role;
+    }
+
+    @Test
+    void testResolve_UsesReferencesWithoutQueries() {
+        Role admin = role(1, RoleType.ROLE_ADMIN);
+        Role seller = role(2, RoleType.ROLE_SELLER);
+        when(roleRepository.findAll()).thenReturn(List.of(admin, seller, role(3, RoleType.ROLE_USER)));
+        when(roleRepository.getReferenceById(1)).thenReturn(admin);
+        when(roleRepository.getReferenceById(2)).thenReturn(seller);
+        roleRegistry.refresh();
+
+        List<Role> roles = roleRegistry.resolve(Set.of("admin", "seller"));
+
+        assertEquals(2, roles.size());
+        assertTrue(roles.containsAll(List.of(admin, seller)));
+        verify(roleRepository, times(1)).findAll();
+        verify(roleRepository, never()).findRolesByRoleType(any());
+    }
+
+    @Test
+    void testResolveRoleTypes_DefaultsToUser() {
+        assertEquals(Set.of(RoleType.ROLE_USER), roleRegistry.resolveRoleTypes(null));
+        assertEquals(Set.of(RoleType.ROLE_USER), roleRegistry.resolveRoleTypes(Set.of("customer", "user")));
+    }
+
+    @Test
+    void testGetRoleId_RefreshesOnMiss() {
+        when(roleRepository.findAll())
+                .thenReturn(List.of())
+                .thenReturn(List.of(role(3, RoleType.ROLE_USER)));
+        roleRegistry.refresh();
+
+        assertEquals(3, roleRegistry.getRoleId(RoleType.ROLE_USER));
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testGetRoleId_ThrowsWhenRoleMissing() {
+        when(roleRepository.findAll()).thenReturn(List.of());
+
+        assertThrows(RuntimeException.class, () -> roleRegistry.getRoleId(RoleType.ROLE_ADMIN));
+    }
+
+}
@@ -0,0 +1,139 @@
+package pl.skowrxn.springecommerce.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import pl.skowrxn.springecommerce.entity.Role;
+import pl.skowrxn.springecommerce.entity.RoleType;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.exception.ErrorResponse;
+import pl.skowrxn.springecommerce.exception.GlobalExceptionHandler;
+import pl.skowrxn.springecommerce.exception.TooManyRequestsException;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.security.WebSecurityConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PasswordHashingServiceTest {
+
+    private static final int STRENGTH = 5;
+    private static final String PASSWORD = "password";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private PasswordHashingService passwordHashingService;
+
+    private DaoAuthenticationProvider authenticationProvider;
+
+    @BeforeEach
+    void setUp() {
+        passwordHashingService = new PasswordHashingService(
+                new WebSecurityConfig(null, null, STRENGTH, 0).passwordEncoder(), new SimpleMeterRegistry(), 1, 1, 3);
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(userRepository, 100,
+                Duration.ofMinutes(5));
+        authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(userDetailsService);
+        authenticationProvider.setPasswordEncoder(new PooledPasswordEncoder(passwordHashingService));
+        authenticationProvider.setUserDetailsPasswordService(userDetailsService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    private User createUser(String password) {
+        User user = new User("testuser", "test@example.com", password);
+        user.setId(1L);
+        user.setRoles(List.of(new Role(RoleType.ROLE_USER)));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    @Test
+    void testAuthenticate_UpgradesLegacyHashWithoutEncoderId() {
+        User user = this.createUser(new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("testuser", PASSWORD));
+
+        assertTrue(user.getPassword().startsWith("{bcrypt}$2a$05$"));
+    }
+
+    @Test
+    void testAuthenticate_UpgradesHashOfLowerStrength() {
+        User user = this.createUser("{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("testuser", PASSWORD));
+
+        assertTrue(user.getPassword().startsWith("{bcrypt}$2a$05$"));
+    }
+
+    @Test
+    void testAuthenticate_KeepsCurrentHash() {
+        String current = "{bcrypt}" + new BCryptPasswordEncoder(STRENGTH).encode(PASSWORD);
+        User user = this.createUser(current);
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("testuser", PASSWORD));
+
+        assertEquals(current, user.getPassword());
+    }
+
+    @Test
+    void testAuthenticate_WrongPasswordDoesNotUpgrade() {
+        String legacy = new BCryptPasswordEncoder(4).encode(PASSWORD);
+        User user = this.createUser(legacy);
+
+        assertThrows(BadCredentialsException.class, () -> authenticationProvider.authenticate(
+                new UsernamePasswordAuthenticationToken("testuser", "wrong")));
+        assertEquals(legacy, user.getPassword());
+    }
+
+    @Test
+    void testAuthenticate_RejectedWithRetryAfterWhenQueueIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        // One task occupies the only thread and another the only queue slot
+        CompletableFuture<Void> running = passwordHashingService.submit(() -> this.await(release));
+        CompletableFuture<Void> queued = passwordHashingService.submit(() -> this.await(release));
+
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> authenticationProvider.authenticate(
+                        new UsernamePasswordAuthenticationToken("testuser", PASSWORD)));
+        release.countDown();
+        running.join();
+        queued.join();
+
+        assertEquals(3, exception.getRetryAfterSeconds());
+        ResponseEntity<ErrorResponse> response = new GlobalExceptionHandler().handleTooManyRequestsException(exception);
+        assertEquals(429, response.getStatusCode().value());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    private Void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+}
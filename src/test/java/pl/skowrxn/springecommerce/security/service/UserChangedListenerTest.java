@@ -0,0 +1,78 @@
+package pl.skowrxn.springecommerce.security.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(UserDetailsServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserChangedListenerTest {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UserChangedEvent event;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(new User("cached", "cached@example.com", "hash"));
+        event = new UserChangedEvent(user.getId(), user.getUsername(), UserChangedEvent.Type.UPDATED);
+        userDetailsService.loadUserByUsername("cached");
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testOnUserChanged_InvalidatesAfterCommit() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventPublisher.publishEvent(event);
+            assertEquals(1, userDetailsService.getCacheSize());
+        });
+
+        assertEquals(0, userDetailsService.getCacheSize());
+    }
+
+    @Test
+    void testOnUserChanged_KeptOnRollback() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventPublisher.publishEvent(event);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1, userDetailsService.getCacheSize());
+    }
+
+    @Test
+    void testOnUserChanged_InvalidatesOutsideTransaction() {
+        eventPublisher.publishEvent(event);
+
+        assertEquals(0, userDetailsService.getCacheSize());
+    }
+
+}
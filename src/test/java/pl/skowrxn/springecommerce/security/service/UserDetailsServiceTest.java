@@ -0,0 +1,76 @@
+package pl.skowrxn.springecommerce.security.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import pl.skowrxn.springecommerce.entity.Role;
+import pl.skowrxn.springecommerce.entity.RoleType;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserDetailsServiceImpl userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = new UserDetailsServiceImpl(userRepository, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void testLoadUserByUsername_CachedAfterFirstLoad() {
+        User user = new User("testuser", "test@example.com", "hash");
+        user.setId(1L);
+        user.setRoles(List.of(new Role(RoleType.ROLE_USER)));
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        UserDetails first = userDetailsService.loadUserByUsername("testuser");
+        UserDetails second = userDetailsService.loadUserByUsername("testuser");
+
+        assertSame(first, second);
+        assertEquals("testuser", first.getUsername());
+        verify(userRepository, times(1)).findByUsername("testuser");
+        assertEquals(1, userDetailsService.getCacheStats().hitCount());
+        assertEquals(1, userDetailsService.getCacheStats().missCount());
+    }
+
+    @Test
+    void testLoadUserByUsername_ReloadedAfterUserChanged() {
+        User user = new User("testuser", "test@example.com", "hash");
+        user.setId(1L);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        userDetailsService.loadUserByUsername("testuser");
+        userDetailsService.onUserChanged(new UserChangedEvent(1L, "testuser", UserChangedEvent.Type.UPDATED));
+        userDetailsService.loadUserByUsername("testuser");
+
+        verify(userRepository, times(2)).findByUsername("testuser");
+    }
+
+    @Test
+    void testLoadUserByUsername_UserNotFound() {
+        when(userRepository.findByUsername("missing")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("missing"));
+        assertEquals(0, userDetailsService.getCacheSize());
+    }
+
+}
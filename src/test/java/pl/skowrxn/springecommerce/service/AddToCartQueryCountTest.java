@@ -0,0 +1,148 @@
+package pl.skowrxn.springecommerce.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.mapper.CartItemMapperImpl;
+import pl.skowrxn.springecommerce.mapper.ProductMapperImpl;
+import pl.skowrxn.springecommerce.repository.CartItemRepository;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartServiceImpl.class, StockReservationServiceImpl.class, CartItemMapperImpl.class, ProductMapperImpl.class})
+public class AddToCartQueryCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @Test
+    void testAddToCart_MergeQueryCountIndependentOfCartSize() {
+        List<Product> smallCart = this.createCart("small", 1);
+        List<Product> largeCart = this.createCart("large", 200);
+
+        long smallCartStatements = this.countStatements("small", smallCart.get(0), 3);
+        long largeCartStatements = this.countStatements("large", largeCart.get(199), 3);
+
+        assertEquals(smallCartStatements, largeCartStatements);
+    }
+
+    @Test
+    void testAddToCart_InsertQueryCountIndependentOfCartSize() {
+        this.createCart("small", 1);
+        this.createCart("large", 200);
+
+        long smallCartStatements = this.countStatements("small", this.createProduct("small-new"), 2);
+        long largeCartStatements = this.countStatements("large", this.createProduct("large-new"), 2);
+
+        assertEquals(smallCartStatements, largeCartStatements);
+    }
+
+    @Test
+    void testAddToCart_MergesIntoExistingLine() {
+        List<Product> products = this.createCart("buyer", 3);
+        Long userId = this.findUserId("buyer");
+        entityManager.flush();
+        entityManager.clear();
+        when(authUtil.getLoggedInUserId()).thenReturn(userId);
+
+        cartService.addToCart(products.get(1).getId(), 4);
+        entityManager.clear();
+
+        CartItem merged = cartItemRepository.findAll().stream()
+                .filter(item -> item.getProduct().getId().equals(products.get(1).getId()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(3, cartItemRepository.count());
+        assertEquals(5, merged.getQuantity());
+        assertEquals(50.0, merged.getTotalPrice());
+        assertEquals(70.0, merged.getCart().getTotalPrice());
+    }
+
+    private long countStatements(String username, Product product, int quantity) {
+        Long userId = this.findUserId(username);
+        entityManager.flush();
+        entityManager.clear();
+        when(authUtil.getLoggedInUserId()).thenReturn(userId);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        CartItemDTO cartItem = cartService.addToCart(product.getId(), quantity);
+
+        assertEquals(product.getId(), cartItem.getProduct().getId());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Long findUserId(String username) {
+        return entityManager.getEntityManager()
+                .createQuery("select u.id from User u where u.username = :username", Long.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+
+    private List<Product> createCart(String username, int items) {
+        User buyer = entityManager.persist(new User(username, username + "@example.com", "hash"));
+        Cart cart = new Cart();
+        cart.setUser(buyer);
+        entityManager.persist(cart);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Product product = this.createProduct(username + "-product-" + i);
+
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(1);
+            cartItem.setSinglePrice(10.0);
+            cartItem.setTotalPrice(10.0);
+            entityManager.persist(cartItem);
+            products.add(product);
+        }
+        cart.setTotalPrice(10.0 * items);
+        return products;
+    }
+
+    private Product createProduct(String name) {
+        User seller = entityManager.persist(new User(name + "-seller", name + "-seller@example.com", "hash"));
+        Category category = entityManager.persist(new Category(null, name + "-category"));
+
+        Product product = new Product();
+        product.setName(name);
+        product.setStockQuantity(100);
+        product.setPrice(10.0);
+        product.setRegularPrice(10.0);
+        product.setCategory(category);
+        product.setUser(seller);
+        return entityManager.persist(product);
+    }
+
+}
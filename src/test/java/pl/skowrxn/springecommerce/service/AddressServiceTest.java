@@ -5,12 +5,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import pl.skowrxn.springecommerce.dto.AddressDTO;
 import pl.skowrxn.springecommerce.dto.response.AddressListResponse;
 import pl.skowrxn.springecommerce.entity.Address;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.AddressMapper;
 import pl.skowrxn.springecommerce.repository.AddressRepository;
 import pl.skowrxn.springecommerce.repository.UserRepository;
 
@@ -29,7 +29,7 @@ public class AddressServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private ModelMapper modelMapper;
+    private AddressMapper addressMapper;
 
     @InjectMocks
     private AddressServiceImpl addressService;
@@ -66,9 +66,9 @@ public class AddressServiceTest {
         outputDTO.setStreet("Main Street");
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(modelMapper.map(inputDto, Address.class)).thenReturn(mappedAddress);
+        when(addressMapper.toEntity(inputDto)).thenReturn(mappedAddress);
         when(addressRepository.save(mappedAddress)).thenReturn(savedAddress);
-        when(modelMapper.map(savedAddress, AddressDTO.class)).thenReturn(outputDTO);
+        when(addressMapper.toDTO(savedAddress)).thenReturn(outputDTO);
 
         AddressDTO result = addressService.createAddress(inputDto, userId);
 
@@ -80,8 +80,8 @@ public class AddressServiceTest {
 
         verify(userRepository).findById(userId);
         verify(addressRepository).save(mappedAddress);
-        verify(modelMapper).map(inputDto, Address.class);
-        verify(modelMapper).map(savedAddress, AddressDTO.class);
+        verify(addressMapper).toEntity(inputDto);
+        verify(addressMapper).toDTO(savedAddress);
     }
 
     @Test
@@ -94,7 +94,7 @@ public class AddressServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> addressService.createAddress(inputDto, userId));
 
         verify(userRepository).findById(userId);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(addressMapper);
         verifyNoInteractions(addressRepository);
     }
 
@@ -107,7 +107,7 @@ public class AddressServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> addressService.getAllAddresses(userId));
 
         verify(userRepository).findById(userId);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(addressMapper);
         verifyNoInteractions(addressRepository);
     }
 
@@ -125,8 +125,8 @@ public class AddressServiceTest {
         AddressDTO addressDTO2 = new AddressDTO();
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(modelMapper.map(address1, AddressDTO.class)).thenReturn(addressDTO1);
-        when(modelMapper.map(address2, AddressDTO.class)).thenReturn(addressDTO2);
+        when(addressMapper.toDTO(address1)).thenReturn(addressDTO1);
+        when(addressMapper.toDTO(address2)).thenReturn(addressDTO2);
 
         AddressListResponse result = addressService.getAllAddresses(userId);
 
@@ -135,8 +135,8 @@ public class AddressServiceTest {
         assertEquals(2, result.getTotalAddresses());
 
         verify(userRepository).findById(userId);
-        verify(modelMapper).map(address1, AddressDTO.class);
-        verify(modelMapper).map(address2, AddressDTO.class);
+        verify(addressMapper).toDTO(address1);
+        verify(addressMapper).toDTO(address2);
         verifyNoInteractions(addressRepository);
     }
 
@@ -158,7 +158,7 @@ public class AddressServiceTest {
         AddressDTO expectedDTO = new AddressDTO();
 
         when(userRepository.findById(id)).thenReturn(Optional.of(user));
-        when(modelMapper.map(defaultAddress, AddressDTO.class)).thenReturn(expectedDTO);
+        when(addressMapper.toDTO(defaultAddress)).thenReturn(expectedDTO);
 
         AddressDTO result = addressService.getDefaultAddress(id);
 
@@ -166,7 +166,7 @@ public class AddressServiceTest {
         assertSame(expectedDTO, result);
 
         verify(userRepository).findById(id);
-        verify(modelMapper).map(defaultAddress, AddressDTO.class);
+        verify(addressMapper).toDTO(defaultAddress);
         verifyNoInteractions(addressRepository);
     }
 
@@ -188,7 +188,7 @@ public class AddressServiceTest {
         AddressDTO expectedDTO = new AddressDTO();
 
         when(userRepository.findById(id)).thenReturn(Optional.of(user));
-        when(modelMapper.map(address1, AddressDTO.class)).thenReturn(expectedDTO);
+        when(addressMapper.toDTO(address1)).thenReturn(expectedDTO);
 
         AddressDTO result = addressService.getDefaultAddress(id);
 
@@ -196,7 +196,7 @@ public class AddressServiceTest {
         assertSame(expectedDTO, result);
 
         verify(userRepository).findById(id);
-        verify(modelMapper).map(address1, AddressDTO.class);
+        verify(addressMapper).toDTO(address1);
         verifyNoInteractions(addressRepository);
     }
 
@@ -211,7 +211,7 @@ public class AddressServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> addressService.getDefaultAddress(id));
 
         verify(userRepository).findById(id);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(addressMapper);
         verifyNoInteractions(addressRepository);
     }
 
@@ -240,7 +240,7 @@ public class AddressServiceTest {
         user.setAddresses(Arrays.asList(newAddress, oldAddress));
 
         when(userRepository.findById(id)).thenReturn(Optional.of(user));
-        when(modelMapper.map(newAddress, AddressDTO.class)).thenReturn(expectedDTO);
+        when(addressMapper.toDTO(newAddress)).thenReturn(expectedDTO);
         when(addressRepository.findById(newId)).thenReturn(Optional.of(newAddress));
 
         AddressDTO result = addressService.setDefaultAddress(id, newId);
@@ -259,7 +259,7 @@ public class AddressServiceTest {
         verify(userRepository).findById(id);
         verify(addressRepository).findById(newId);
         verify(userRepository).save(user);
-        verify(modelMapper).map(newAddress, AddressDTO.class);
+        verify(addressMapper).toDTO(newAddress);
     }
 
 }
@@ -0,0 +1,154 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.CartOperationDTO;
+import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.exception.ProductOutOfStockException;
+import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.CartItemMapperImpl;
+import pl.skowrxn.springecommerce.mapper.ProductMapperImpl;
+import pl.skowrxn.springecommerce.repository.*;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CartServiceImpl.class, StockReservationServiceImpl.class, CartItemMapperImpl.class, ProductMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CartBatchTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testApplyBatch_AppliesAllOperations() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Product first = this.createProduct(seller, 8);
+        Product second = this.createProduct(seller, 9);
+        Product third = this.createProduct(seller, 10);
+        Cart cart = this.createCart("buyer");
+        CartItem firstLine = this.createItem(cart, first, 2);
+        CartItem secondLine = this.createItem(cart, second, 1);
+
+        CartContentResponse response = cartService.applyBatch(List.of(
+                new CartOperationDTO(CartOperationDTO.Type.UPDATE, null, firstLine.getId(), 5),
+                new CartOperationDTO(CartOperationDTO.Type.REMOVE, null, secondLine.getId(), null),
+                new CartOperationDTO(CartOperationDTO.Type.ADD, third.getId(), null, 3),
+                new CartOperationDTO(CartOperationDTO.Type.ADD, third.getId(), null, 1)));
+
+        Map<Long, Integer> quantities = response.getCartItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItemDTO::getQuantity));
+        assertEquals(Map.of(first.getId(), 5, third.getId(), 4), quantities);
+        assertEquals(90.0, response.getTotalPrice());
+        assertEquals(90.0, cartRepository.findById(cart.getId()).orElseThrow().getTotalPrice());
+        assertEquals(5, productRepository.findStockQuantityById(first.getId()).orElseThrow());
+        assertEquals(10, productRepository.findStockQuantityById(second.getId()).orElseThrow());
+        assertEquals(6, productRepository.findStockQuantityById(third.getId()).orElseThrow());
+    }
+
+    @Test
+    void testApplyBatch_OutOfStockChangesNothing() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Product available = this.createProduct(seller, 10);
+        Product scarce = this.createProduct(seller, 1);
+        Cart cart = this.createCart("buyer");
+
+        assertThrows(ProductOutOfStockException.class, () -> cartService.applyBatch(List.of(
+                new CartOperationDTO(CartOperationDTO.Type.ADD, available.getId(), null, 2),
+                new CartOperationDTO(CartOperationDTO.Type.ADD, scarce.getId(), null, 5))));
+
+        assertEquals(0, cartItemRepository.count());
+        assertEquals(0.0, cartRepository.findById(cart.getId()).orElseThrow().getTotalPrice());
+        assertEquals(10, productRepository.findStockQuantityById(available.getId()).orElseThrow());
+        assertEquals(1, productRepository.findStockQuantityById(scarce.getId()).orElseThrow());
+    }
+
+    @Test
+    void testApplyBatch_ItemOfAnotherCart() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Product product = this.createProduct(seller, 10);
+        CartItem otherLine = this.createItem(this.createCart("other"), product, 1);
+        this.createCart("buyer");
+
+        assertThrows(ResourceNotFoundException.class, () -> cartService.applyBatch(List.of(
+                new CartOperationDTO(CartOperationDTO.Type.REMOVE, null, otherLine.getId(), null))));
+
+        assertTrue(cartItemRepository.existsById(otherLine.getId()));
+        assertEquals(10, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+    }
+
+    private Product createProduct(User seller, int stock) {
+        Category category = categoryRepository.save(new Category(null, "category"));
+        Product product = new Product();
+        product.setName("product");
+        product.setStockQuantity(stock);
+        product.setPrice(10.0);
+        product.setRegularPrice(10.0);
+        product.setCategory(category);
+        product.setUser(seller);
+        return productRepository.save(product);
+    }
+
+    private Cart createCart(String username) {
+        User buyer = userRepository.save(new User(username, username + "@example.com", "hash"));
+        when(authUtil.getLoggedInUserId()).thenReturn(buyer.getId());
+        Cart cart = new Cart();
+        cart.setUser(buyer);
+        return cartRepository.save(cart);
+    }
+
+    private CartItem createItem(Cart cart, Product product, int quantity) {
+        CartItem cartItem = new CartItem();
+        cartItem.setCart(cart);
+        cartItem.setProduct(product);
+        cartItem.setQuantity(quantity);
+        cartItem.setSinglePrice(10.0);
+        cartItem.setTotalPrice(10.0 * quantity);
+        CartItem savedCartItem = cartItemRepository.save(cartItem);
+        cartRepository.addToTotals(cart.getId(), savedCartItem.getTotalPriceMinor(), 1, Instant.now());
+        return savedCartItem;
+    }
+
+}
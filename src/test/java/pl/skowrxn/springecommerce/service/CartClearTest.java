@@ -0,0 +1,173 @@
+package pl.skowrxn.springecommerce.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.mapper.CartItemMapperImpl;
+import pl.skowrxn.springecommerce.mapper.ProductMapperImpl;
+import pl.skowrxn.springecommerce.repository.*;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartServiceImpl.class, StockReservationServiceImpl.class, CartItemMapperImpl.class, ProductMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CartClearTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductStockShardRepository productStockShardRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productStockShardRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testClearCart_RestoresStockInConstantStatements() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Category category = categoryRepository.save(new Category(null, "category"));
+        List<Product> smallProducts = this.createProducts(seller, category, 1);
+        List<Product> largeProducts = this.createProducts(seller, category, 50);
+        Cart smallCart = this.createCart("small", smallProducts);
+        Cart largeCart = this.createCart("large", largeProducts);
+
+        long smallCartStatements = this.countStatements(smallCart);
+        long largeCartStatements = this.countStatements(largeCart);
+
+        assertEquals(smallCartStatements, largeCartStatements);
+        assertEquals(0, cartItemRepository.count());
+        for (Product product : largeProducts) {
+            assertEquals(10, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        }
+        assertEquals(0.0, cartRepository.findById(largeCart.getId()).orElseThrow().getTotalPrice());
+    }
+
+    @Test
+    void testClearCart_RestoresShardedStock() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Category category = categoryRepository.save(new Category(null, "category"));
+        List<Product> products = this.createProducts(seller, category, 2);
+        stockReservationService.shard(products.get(1).getId(), 4);
+        Cart cart = this.createCart("buyer", products);
+        when(authUtil.getLoggedInUserId()).thenReturn(cart.getUser().getId());
+
+        cartService.clearCart();
+
+        assertEquals(10, productRepository.findStockQuantityById(products.get(0).getId()).orElseThrow());
+        assertEquals(10, productStockShardRepository.sumQuantityByProductId(products.get(1).getId()));
+        assertEquals(0, cartItemRepository.count());
+    }
+
+    @Test
+    void testClearCart_AfterCheckoutKeepsStockTaken() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Category category = categoryRepository.save(new Category(null, "category"));
+        List<Product> products = this.createProducts(seller, category, 1);
+        Cart cart = this.createCart("buyer", products);
+        when(authUtil.getLoggedInUserId()).thenReturn(cart.getUser().getId());
+
+        cartService.clearCart(false);
+
+        assertEquals(7, productRepository.findStockQuantityById(products.get(0).getId()).orElseThrow());
+        assertEquals(0, cartItemRepository.count());
+    }
+
+    private long countStatements(Cart cart) {
+        when(authUtil.getLoggedInUserId()).thenReturn(cart.getUser().getId());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        cartService.clearCart();
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private List<Product> createProducts(User seller, Category category, int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setName("product-" + i);
+            product.setStockQuantity(10);
+            product.setPrice(10.0);
+            product.setCategory(category);
+            product.setUser(seller);
+            products.add(productRepository.save(product));
+        }
+        return products;
+    }
+
+    /**
+     * Puts 3 of every product in the cart, taking them out of stock as adding to the cart would.
+     */
+    private Cart createCart(String username, List<Product> products) {
+        User buyer = userRepository.save(new User(username, username + "@example.com", "hash"));
+        Cart cart = new Cart();
+        cart.setUser(buyer);
+        cart = cartRepository.save(cart);
+        for (Product product : products) {
+            stockReservationService.reserve(productRepository.findById(product.getId()).orElseThrow(), 3);
+
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(3);
+            cartItem.setSinglePrice(10.0);
+            cartItem.setTotalPrice(30.0);
+            cartItemRepository.save(cartItem);
+            cartRepository.addToTotals(cart.getId(), cartItem.getTotalPriceMinor(), 1, Instant.now());
+        }
+        return cart;
+    }
+
+}
@@ -0,0 +1,99 @@
+package pl.skowrxn.springecommerce.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.mapper.CartItemMapperImpl;
+import pl.skowrxn.springecommerce.mapper.ProductMapperImpl;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartServiceImpl.class, StockReservationServiceImpl.class, CartItemMapperImpl.class, ProductMapperImpl.class})
+public class CartContentQueryCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartService cartService;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @Test
+    void testGetCartContent_QueryCountIndependentOfCartSize() {
+        long smallCartStatements = this.countStatements(this.createCart("small", 1), 1);
+        long largeCartStatements = this.countStatements(this.createCart("large", 25), 25);
+
+        assertEquals(1, smallCartStatements);
+        assertEquals(smallCartStatements, largeCartStatements);
+    }
+
+    private long countStatements(Long userId, int expectedItems) {
+        entityManager.flush();
+        entityManager.clear();
+        when(authUtil.getLoggedInUserId()).thenReturn(userId);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        CartContentResponse response = cartService.getCartContent();
+
+        assertEquals(expectedItems, response.getCartItems().size());
+        // Rows are read into a projection, neither products nor their sellers are loaded as entities
+        assertEquals(0, statistics.getEntityLoadCount());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Long createCart(String username, int items) {
+        User buyer = entityManager.persist(new User(username, username + "@example.com", "hash"));
+        Cart cart = new Cart();
+        cart.setUser(buyer);
+        entityManager.persist(cart);
+
+        double total = 0;
+        for (int i = 0; i < items; i++) {
+            // Every product has its own seller and category, the worst case for per-item lookups
+            User seller = entityManager.persist(
+                    new User(username + "-seller-" + i, username + "-seller-" + i + "@example.com", "hash"));
+            Category category = entityManager.persist(new Category(null, username + "-category-" + i));
+
+            Product product = new Product();
+            product.setName(username + "-product-" + i);
+            product.setStockQuantity(10);
+            product.setPrice(10.0);
+            product.setRegularPrice(10.0);
+            product.setCategory(category);
+            product.setUser(seller);
+            entityManager.persist(product);
+
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(1);
+            cartItem.setSinglePrice(10.0);
+            cartItem.setTotalPrice(10.0);
+            entityManager.persist(cartItem);
+            total += 10.0;
+        }
+        cart.setTotalPrice(total);
+        return buyer.getId();
+    }
+
+}
@@ -0,0 +1,75 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CartRecoveryLogTest {
+
+    @TempDir
+    private Path logDirectory;
+
+    private CartRecoveryLog.Entry entry(long cartId, long productId) {
+        return new CartRecoveryLog.Entry(cartId, productId, 2, 1000L, Instant.ofEpochMilli(1_700_000_000_000L), false);
+    }
+
+    @Test
+    void testAppend_ParallelSyncedAppendsAreAllKept() throws Exception {
+        CartRecoveryLog recoveryLog = new CartRecoveryLog(logDirectory.resolve("cart.log"), true);
+        int threads = 8;
+        int appendsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                long cartId = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (long productId = 0; productId < appendsPerThread; productId++) {
+                        recoveryLog.append(List.of(this.entry(cartId, productId)));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            recoveryLog.close();
+        }
+
+        Set<String> lines = new HashSet<>();
+        for (CartRecoveryLog.Entry entry : new CartRecoveryLog(logDirectory.resolve("cart.log"), true).readAll()) {
+            lines.add(entry.getCartId() + "/" + entry.getProductId());
+        }
+        assertEquals(threads * appendsPerThread, lines.size());
+    }
+
+    @Test
+    void testRewrite_KeepsEntriesAppendedSinceMark() {
+        CartRecoveryLog recoveryLog = new CartRecoveryLog(logDirectory.resolve("cart.log"), true);
+        recoveryLog.append(List.of(this.entry(1, 1)));
+        recoveryLog.mark();
+        recoveryLog.append(List.of(this.entry(1, 2)));
+
+        recoveryLog.rewrite(List.of(this.entry(1, 3)));
+        recoveryLog.append(List.of(this.entry(1, 4)));
+
+        List<Long> productIds = recoveryLog.readAll().stream().map(CartRecoveryLog.Entry::getProductId).toList();
+        assertEquals(List.of(3L, 2L, 4L), productIds);
+        recoveryLog.close();
+    }
+
+}
@@ -0,0 +1,125 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.repository.*;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(StockReservationServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CartReservationSweeperTest {
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testSweep_ReleasesOnlyExpiredReservations() {
+        Instant now = Instant.now();
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Product product = this.createProduct(seller, 10);
+        Product otherProduct = this.createProduct(seller, 10);
+        Cart cart = this.createCart("buyer");
+        // A cart holds one line per product
+        CartItem expired = this.createItem(cart, product, 2, now.minus(Duration.ofMinutes(1)));
+        CartItem active = this.createItem(cart, otherProduct, 3, now.plus(Duration.ofMinutes(10)));
+        CartReservationSweeper sweeper = new CartReservationSweeper(stockReservationService, cartItemRepository,
+                new SimpleMeterRegistry(), 100);
+
+        assertEquals(1, sweeper.sweep(now));
+
+        assertFalse(cartItemRepository.existsById(expired.getId()));
+        assertTrue(cartItemRepository.existsById(active.getId()));
+        assertEquals(12, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(10, productRepository.findStockQuantityById(otherProduct.getId()).orElseThrow());
+        assertEquals(30.0, cartRepository.findById(cart.getId()).orElseThrow().getTotalPrice());
+    }
+
+    @Test
+    void testSweep_WorksThroughBacklogInBatches() {
+        Instant now = Instant.now();
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Product first = this.createProduct(seller, 0);
+        Product second = this.createProduct(seller, 0);
+        for (int i = 0; i < 5; i++) {
+            Cart cart = this.createCart("buyer" + i);
+            this.createItem(cart, i % 2 == 0 ? first : second, 1, now.minus(Duration.ofMinutes(i + 1)));
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CartReservationSweeper sweeper = new CartReservationSweeper(stockReservationService, cartItemRepository,
+                meterRegistry, 2);
+
+        assertEquals(5, sweeper.sweep(now));
+
+        assertEquals(0, cartItemRepository.count());
+        assertEquals(3, productRepository.findStockQuantityById(first.getId()).orElseThrow());
+        assertEquals(2, productRepository.findStockQuantityById(second.getId()).orElseThrow());
+        assertEquals(5.0, meterRegistry.get("cart.reservations.expired").counter().count());
+        cartRepository.findAll().forEach(cart -> assertEquals(0.0, cart.getTotalPrice()));
+    }
+
+    private Product createProduct(User seller, int stock) {
+        Category category = categoryRepository.save(new Category(null, "category"));
+        Product product = new Product();
+        product.setName("product");
+        product.setStockQuantity(stock);
+        product.setPrice(10.0);
+        product.setCategory(category);
+        product.setUser(seller);
+        return productRepository.save(product);
+    }
+
+    private Cart createCart(String username) {
+        User buyer = userRepository.save(new User(username, username + "@example.com", "hash"));
+        Cart cart = new Cart();
+        cart.setUser(buyer);
+        return cartRepository.save(cart);
+    }
+
+    private CartItem createItem(Cart cart, Product product, int quantity, Instant reservedUntil) {
+        CartItem cartItem = new CartItem();
+        cartItem.setCart(cart);
+        cartItem.setProduct(product);
+        cartItem.setQuantity(quantity);
+        cartItem.setSinglePrice(10.0);
+        cartItem.setTotalPrice(10.0 * quantity);
+        cartItem.setReservedUntil(reservedUntil);
+        return cartItemRepository.save(cartItem);
+    }
+
+}
@@ -5,21 +5,24 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import pl.skowrxn.springecommerce.dto.CartContentRow;
 import pl.skowrxn.springecommerce.dto.CartItemDTO;
 import pl.skowrxn.springecommerce.dto.ProductDTO;
 import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.dto.response.CartSummaryResponse;
 import pl.skowrxn.springecommerce.entity.Cart;
 import pl.skowrxn.springecommerce.entity.CartItem;
 import pl.skowrxn.springecommerce.entity.Product;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.exception.ProductOutOfStockException;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.CartItemMapper;
 import pl.skowrxn.springecommerce.repository.CartItemRepository;
 import pl.skowrxn.springecommerce.repository.CartRepository;
 import pl.skowrxn.springecommerce.repository.ProductRepository;
 import pl.skowrxn.springecommerce.util.AuthUtil;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,11 +43,14 @@ public class CartServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private StockReservationService stockReservationService;
+
     @Mock
     private AuthUtil authUtil;
 
     @Mock
-    private ModelMapper modelMapper;
+    private CartItemMapper cartItemMapper;
 
     @InjectMocks
     private CartServiceImpl cartService;
@@ -59,7 +65,7 @@ public class CartServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> cartService.addToCart(productId, quantity));
 
         verify(productRepository).findById(productId);
-        verifyNoInteractions(cartRepository, cartItemRepository, modelMapper);
+        verifyNoInteractions(cartRepository, cartItemRepository, cartItemMapper, stockReservationService);
     }
 
     @Test
@@ -72,11 +78,13 @@ public class CartServiceTest {
         product.setStockQuantity(5);
 
         when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+        when(stockReservationService.reserve(product, quantity))
+                .thenThrow(new ProductOutOfStockException(product, 5, quantity));
 
         assertThrows(ProductOutOfStockException.class, () -> cartService.addToCart(productId, quantity));
 
         verify(productRepository).findById(productId);
-        verifyNoInteractions(cartRepository, cartItemRepository, modelMapper);
+        verifyNoInteractions(cartRepository, cartItemRepository, cartItemMapper);
     }
 
     @Test
@@ -115,12 +123,17 @@ public class CartServiceTest {
         productDTO.setId(productId);
         productDTO.setPrice(product.getPrice());
 
+        cartItemDTO.setProduct(productDTO);
+
         when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+        when(stockReservationService.reserve(product, quantity)).thenReturn(8);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findIdByUserId(1L)).thenReturn(Optional.empty());
         when(authUtil.getLoggedInUser()).thenReturn(user);
         when(cartRepository.save(any(Cart.class))).thenReturn(newCart);
+        when(cartRepository.getReferenceById(1L)).thenReturn(newCart);
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(cartItem);
-        when(modelMapper.map(cartItem, CartItemDTO.class)).thenReturn(cartItemDTO);
-        when(modelMapper.map(product, ProductDTO.class)).thenReturn(productDTO);
+        when(cartItemMapper.toDTO(cartItem)).thenReturn(cartItemDTO);
 
         CartItemDTO result = cartService.addToCart(productId, quantity);
 
@@ -131,12 +144,15 @@ public class CartServiceTest {
         verify(productRepository).findById(productId);
         verify(authUtil).getLoggedInUser();
         verify(cartRepository).save(any(Cart.class));
+        verify(cartItemRepository).mergeQuantity(eq(1L), eq(productId), eq(quantity), any());
         verify(cartItemRepository).save(any(CartItem.class));
-        verify(productRepository).save(product);
-        verify(modelMapper).map(cartItem, CartItemDTO.class);
-        verify(modelMapper).map(product, ProductDTO.class);
+        verify(cartRepository).addToTotals(eq(1L), eq(20000L), eq(1), any());
+        verify(stockReservationService).reserve(product, quantity);
+        verify(productRepository, never()).save(any(Product.class));
+        verify(cartItemMapper).toDTO(cartItem);
 
-        assertEquals(8, product.getStockQuantity());
+        assertEquals(8, result.getProduct().getStockQuantity());
+        assertEquals(10, product.getStockQuantity());
     }
 
     @Test
@@ -149,23 +165,8 @@ public class CartServiceTest {
         product.setStockQuantity(10);
         product.setPrice(100.0);
 
-        CartItem existingCartItem = new CartItem();
-        existingCartItem.setId(1L);
-        existingCartItem.setProduct(product);
-        existingCartItem.setQuantity(3);
-        existingCartItem.setSinglePrice(product.getPrice());
-        existingCartItem.setTotalPrice(product.getPrice() * 3);
-
         Cart cart = new Cart();
         cart.setId(1L);
-        cart.setItems(new ArrayList<>(List.of(existingCartItem)));
-        cart.setTotalPrice(existingCartItem.getTotalPrice());
-
-        existingCartItem.setCart(cart);
-
-        User user = new User();
-        user.setId(1L);
-        user.setCart(cart);
 
         CartItem updatedCartItem = new CartItem();
         updatedCartItem.setId(1L);
@@ -184,12 +185,18 @@ public class CartServiceTest {
         productDTO.setId(productId);
         productDTO.setPrice(product.getPrice());
 
+        cartItemDTO.setProduct(productDTO);
+
+        Instant holdUntil = Instant.now().plusSeconds(1800);
+
         when(productRepository.findById(productId)).thenReturn(Optional.of(product));
-        when(authUtil.getLoggedInUser()).thenReturn(user);
-        when(cartItemRepository.save(any(CartItem.class))).thenReturn(updatedCartItem);
-        when(cartRepository.save(cart)).thenReturn(cart);
-        when(modelMapper.map(updatedCartItem, CartItemDTO.class)).thenReturn(cartItemDTO);
-        when(modelMapper.map(product, ProductDTO.class)).thenReturn(productDTO);
+        when(stockReservationService.reserve(product, quantity)).thenReturn(8);
+        when(stockReservationService.holdUntil(product)).thenReturn(holdUntil);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findIdByUserId(1L)).thenReturn(Optional.of(1L));
+        when(cartItemRepository.mergeQuantity(1L, productId, quantity, holdUntil)).thenReturn(1);
+        when(cartItemRepository.findByCartIdAndProductId(1L, productId)).thenReturn(Optional.of(updatedCartItem));
+        when(cartItemMapper.toDTO(updatedCartItem)).thenReturn(cartItemDTO);
 
         CartItemDTO result = cartService.addToCart(productId, quantity);
 
@@ -198,14 +205,14 @@ public class CartServiceTest {
         assertEquals(product.getPrice() * 5, result.getTotalPrice());
 
         verify(productRepository).findById(productId);
-        verify(authUtil).getLoggedInUser();
-        verify(cartItemRepository).save(any(CartItem.class));
-        verify(cartRepository).save(cart);
-        verify(productRepository).save(product);
-        verify(modelMapper).map(updatedCartItem, CartItemDTO.class);
-        verify(modelMapper).map(product, ProductDTO.class);
-
-        assertEquals(8, product.getStockQuantity());
+        verify(authUtil, never()).getLoggedInUser();
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verify(cartRepository).addToTotals(eq(1L), eq(20000L), eq(0), any());
+        verify(cartRepository, never()).save(any(Cart.class));
+        verify(stockReservationService).reserve(product, quantity);
+        verify(cartItemMapper).toDTO(updatedCartItem);
+
+        assertEquals(8, result.getProduct().getStockQuantity());
     }
 
     @Test
@@ -217,7 +224,7 @@ public class CartServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> cartService.removeFromCart(cartItemId));
 
         verify(cartItemRepository).findById(cartItemId);
-        verifyNoInteractions(cartRepository, productRepository);
+        verifyNoInteractions(cartRepository, productRepository, stockReservationService);
     }
 
     @Test
@@ -246,118 +253,107 @@ public class CartServiceTest {
         cartService.removeFromCart(cartItemId);
 
         verify(cartItemRepository).findById(cartItemId);
-        verify(productRepository).save(product);
+        verify(stockReservationService).release(1L, 2);
         verify(cartItemRepository).delete(cartItem);
-        verify(cartRepository).save(cart);
+        verify(cartRepository).addToTotals(eq(1L), eq(-20000L), eq(-1), any());
+        verify(cartRepository, never()).save(any(Cart.class));
 
-        assertEquals(10, product.getStockQuantity());
-        assertEquals(0.0, cart.getTotalPrice());
         assertTrue(cart.getItems().isEmpty());
     }
 
     @Test
     void testClearCart() {
-        User user = new User();
-        user.setId(1L);
-
-        Cart cart = new Cart();
-        cart.setId(1L);
-        cart.setUser(user);
-        cart.setItems(new ArrayList<>());
-        cart.setTotalPrice(300.0);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findIdByUserId(1L)).thenReturn(Optional.of(1L));
 
-        user.setCart(cart);
+        cartService.clearCart();
 
-        when(authUtil.getLoggedInUser()).thenReturn(user);
+        verify(stockReservationService).releaseCart(1L);
+        verify(cartItemRepository).deleteAllByCartId(1L);
+        verify(cartRepository).resetTotals(eq(1L), any());
+        verify(cartItemRepository, never()).findById(any());
+    }
 
-        cartService.clearCart();
+    @Test
+    void testClearCart_AfterCheckoutKeepsStock() {
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findIdByUserId(1L)).thenReturn(Optional.of(1L));
 
-        verify(authUtil).getLoggedInUser();
-        verify(cartItemRepository).deleteAll(cart.getItems());
-        verify(cartRepository).save(cart);
+        cartService.clearCart(false);
 
-        assertEquals(0.0, cart.getTotalPrice());
-        assertTrue(cart.getItems().isEmpty());
+        verify(cartItemRepository).deleteAllByCartId(1L);
+        verify(cartRepository).resetTotals(eq(1L), any());
+        verifyNoInteractions(stockReservationService);
     }
 
     @Test
-    void testClearCart_NullCart() {
-        User user = new User();
-        user.setId(1L);
-        user.setCart(null);
+    void testDiscardCart_TouchesNothing() {
+        cartService.discardCart();
 
-        Cart newCart = new Cart();
-        newCart.setUser(user);
+        verifyNoInteractions(cartRepository, cartItemRepository, stockReservationService);
+    }
 
-        when(authUtil.getLoggedInUser()).thenReturn(user);
-        when(cartRepository.save(any(Cart.class))).thenReturn(newCart);
+    @Test
+    void testClearCart_NullCart() {
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findIdByUserId(1L)).thenReturn(Optional.empty());
 
         cartService.clearCart();
 
-        verify(authUtil, times(2)).getLoggedInUser();
-        verify(cartRepository).save(any(Cart.class));
-        verify(cartItemRepository).deleteAll(Collections.emptyList());
+        verifyNoInteractions(stockReservationService, cartItemRepository);
+        verify(cartRepository, never()).resetTotals(any(), any());
     }
 
     @Test
     void testGetTotalPrice() {
-        User user = new User();
-        user.setId(1L);
-
-        Cart cart = new Cart();
-        cart.setId(1L);
-        cart.setTotalPrice(300.0);
-
-        user.setCart(cart);
-
-        when(authUtil.getLoggedInUser()).thenReturn(user);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findSummaryByUserId(1L))
+                .thenReturn(Optional.of(new CartSummaryResponse(1L, 2, 30000L, Instant.now(), 4L)));
 
         Double result = cartService.getTotalPrice();
 
         assertEquals(300.0, result);
-        verify(authUtil).getLoggedInUser();
+        verify(authUtil, never()).getLoggedInUser();
     }
 
     @Test
     void testGetTotalPrice_NullCart() {
-        User user = new User();
-        user.setId(1L);
-        user.setCart(null);
-
-        Cart newCart = new Cart();
-        newCart.setUser(user);
-        newCart.setTotalPrice(0.0);
-
-        when(authUtil.getLoggedInUser()).thenReturn(user);
-        when(cartRepository.save(any(Cart.class))).thenReturn(newCart);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findSummaryByUserId(1L)).thenReturn(Optional.empty());
 
         Double result = cartService.getTotalPrice();
 
         assertEquals(0.0, result);
-        verify(authUtil, times(2)).getLoggedInUser();
-        verify(cartRepository).save(any(Cart.class));
+        verify(cartRepository, never()).save(any(Cart.class));
     }
 
     @Test
     void testGetTotalQuantity() {
-        User user = new User();
-        user.setId(1L);
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findSummaryByUserId(1L))
+                .thenReturn(Optional.of(new CartSummaryResponse(1L, 2, 30000L, Instant.now(), 4L)));
 
-        CartItem item1 = new CartItem();
-        CartItem item2 = new CartItem();
-
-        Cart cart = new Cart();
-        cart.setId(1L);
-        cart.setItems(new ArrayList<>(List.of(item1, item2)));
+        Integer result = cartService.getTotalQuantity();
 
-        user.setCart(cart);
+        assertEquals(2, result);
+        verify(authUtil, never()).getLoggedInUser();
+    }
 
-        when(authUtil.getLoggedInUser()).thenReturn(user);
+    @Test
+    void testGetCartSummary() {
+        Instant lastModified = Instant.now();
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findSummaryByUserId(1L))
+                .thenReturn(Optional.of(new CartSummaryResponse(1L, 2, 30050L, lastModified, 4L)));
 
-        Integer result = cartService.getTotalQuantity();
+        CartSummaryResponse result = cartService.getCartSummary();
 
-        assertEquals(2, result);
-        verify(authUtil).getLoggedInUser();
+        assertEquals(1L, result.getId());
+        assertEquals(2, result.getQuantity());
+        assertEquals(300.5, result.getTotalPrice());
+        assertEquals(lastModified, result.getLastModified());
+        assertEquals("1-4", result.getVersion());
+        verify(cartRepository, never()).findContentByUserId(any());
     }
 
     @Test
@@ -370,7 +366,7 @@ public class CartServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> cartService.updateCartItemQuantity(cartItemId, quantity));
 
         verify(cartItemRepository).findById(cartItemId);
-        verifyNoInteractions(cartRepository, modelMapper);
+        verifyNoInteractions(cartRepository, cartItemMapper);
     }
 
     @Test
@@ -386,7 +382,7 @@ public class CartServiceTest {
         assertThrows(IllegalArgumentException.class, () -> cartService.updateCartItemQuantity(cartItemId, quantity));
 
         verify(cartItemRepository).findById(cartItemId);
-        verifyNoInteractions(cartRepository, modelMapper);
+        verifyNoInteractions(cartRepository, cartItemMapper);
     }
 
     @Test
@@ -415,6 +411,7 @@ public class CartServiceTest {
 
         assertNull(result);
         verify(cartItemRepository).findById(cartItemId);
+        verify(stockReservationService).release(product.getId(), 5);
     }
 
     @Test
@@ -457,70 +454,96 @@ public class CartServiceTest {
         productDTO.setId(1L);
         productDTO.setPrice(100.0);
 
+        Instant holdUntil = Instant.now().plusSeconds(1800);
+
         when(cartItemRepository.findById(cartItemId)).thenReturn(Optional.of(cartItem));
+        when(stockReservationService.holdUntil(product)).thenReturn(holdUntil);
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(updatedCartItem);
-        when(cartRepository.save(cart)).thenReturn(cart);
-        when(modelMapper.map(updatedCartItem, CartItemDTO.class)).thenReturn(cartItemDTO);
-        when(modelMapper.map(product, ProductDTO.class)).thenReturn(productDTO);
+        when(cartItemMapper.toDTO(updatedCartItem)).thenReturn(cartItemDTO);
 
         CartItemDTO result = cartService.updateCartItemQuantity(cartItemId, quantity);
 
         assertNotNull(result);
         assertEquals(quantity, result.getQuantity());
         assertEquals(500.0, result.getTotalPrice());
+        assertEquals(holdUntil, cartItem.getReservedUntil());
 
         verify(cartItemRepository).findById(cartItemId);
         verify(cartItemRepository).save(any(CartItem.class));
-        verify(cartRepository).save(cart);
-        verify(modelMapper).map(updatedCartItem, CartItemDTO.class);
-        verify(modelMapper).map(product, ProductDTO.class);
+        verify(cartRepository).addToTotals(eq(1L), eq(30000L), eq(0), any());
+        verify(stockReservationService).reserve(product, 3);
+        verify(cartItemMapper).toDTO(updatedCartItem);
     }
 
     @Test
-    void testGetCartContent() {
-        User user = new User();
-        user.setId(1L);
-
-        Product product1 = new Product();
-        product1.setId(1L);
-
-        Product product2 = new Product();
-        product2.setId(2L);
+    void testUpdateCartItemQuantity_Decrease() {
+        Long cartItemId = 1L;
+        Integer quantity = 1;
 
-        CartItem item1 = new CartItem();
-        item1.setId(1L);
-        item1.setProduct(product1);
+        Product product = new Product();
+        product.setId(1L);
+        product.setPrice(100.0);
 
-        CartItem item2 = new CartItem();
-        item2.setId(2L);
-        item2.setProduct(product2);
+        CartItem cartItem = new CartItem();
+        cartItem.setId(cartItemId);
+        cartItem.setProduct(product);
+        cartItem.setQuantity(4);
+        cartItem.setSinglePrice(100.0);
+        cartItem.setTotalPrice(400.0);
 
         Cart cart = new Cart();
         cart.setId(1L);
-        cart.setItems(new ArrayList<>(List.of(item1, item2)));
-        cart.setTotalPrice(300.0);
+        cart.setTotalPrice(400.0);
+        cart.setItems(new ArrayList<>(List.of(cartItem)));
 
-        item1.setCart(cart);
-        item2.setCart(cart);
-        user.setCart(cart);
+        cartItem.setCart(cart);
 
-        CartItemDTO itemDTO1 = new CartItemDTO();
-        itemDTO1.setId(1L);
+        CartItemDTO cartItemDTO = new CartItemDTO();
+        cartItemDTO.setId(cartItemId);
+        cartItemDTO.setQuantity(quantity);
+        cartItemDTO.setTotalPrice(100.0);
 
-        CartItemDTO itemDTO2 = new CartItemDTO();
-        itemDTO2.setId(2L);
+        when(cartItemRepository.findById(cartItemId)).thenReturn(Optional.of(cartItem));
+        when(cartItemRepository.save(cartItem)).thenReturn(cartItem);
+        when(cartItemMapper.toDTO(cartItem)).thenReturn(cartItemDTO);
 
-        ProductDTO productDTO1 = new ProductDTO();
-        productDTO1.setId(1L);
+        CartItemDTO result = cartService.updateCartItemQuantity(cartItemId, quantity);
 
-        ProductDTO productDTO2 = new ProductDTO();
-        productDTO2.setId(2L);
+        assertEquals(quantity, result.getQuantity());
+        assertEquals(100.0, cartItem.getTotalPrice());
+        verify(cartRepository).addToTotals(eq(1L), eq(-30000L), eq(0), any());
+        verify(stockReservationService).release(1L, 3);
+        verify(stockReservationService, never()).reserve(any(), anyInt());
+    }
 
-        when(authUtil.getLoggedInUser()).thenReturn(user);
-        when(modelMapper.map(item1, CartItemDTO.class)).thenReturn(itemDTO1);
-        when(modelMapper.map(item2, CartItemDTO.class)).thenReturn(itemDTO2);
-        when(modelMapper.map(product1, ProductDTO.class)).thenReturn(productDTO1);
-        when(modelMapper.map(product2, ProductDTO.class)).thenReturn(productDTO2);
+    @Test
+    void testGetCartVersion() {
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findSummaryByUserId(1L))
+                .thenReturn(Optional.of(new CartSummaryResponse(1L, 2, 30000L, Instant.now(), 4L)));
+
+        assertEquals("1-4", cartService.getCartVersion());
+        verify(cartRepository, never()).findContentByUserId(any());
+    }
+
+    @Test
+    void testGetCartVersion_NullCart() {
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findSummaryByUserId(1L)).thenReturn(Optional.empty());
+
+        assertNull(cartService.getCartVersion());
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void testGetCartContent() {
+        CartContentRow row1 = new CartContentRow(1L, 300.0, 7L, 1L, 1, 100.0, 100.0,
+                1L, "Product 1", "desc", "image.png", 5, 100.0, 100.0, 0.0, 1L, "Category");
+        CartContentRow row2 = new CartContentRow(1L, 300.0, 7L, 2L, 2, 100.0, 200.0,
+                2L, "Product 2", "desc", "image.png", 5, 100.0, 100.0, 0.0, 1L, "Category");
+
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findContentByUserId(1L)).thenReturn(List.of(row1, row2));
 
         CartContentResponse result = cartService.getCartContent();
 
@@ -529,10 +552,29 @@ public class CartServiceTest {
         assertEquals(2, result.getQuantity());
         assertEquals(300.0, result.getTotalPrice());
         assertEquals(2, result.getCartItems().size());
+        assertEquals(2L, result.getCartItems().get(1).getProduct().getId());
+        assertEquals("Category", result.getCartItems().get(1).getProduct().getCategory().getName());
+        assertEquals(1L, result.getCartItems().get(0).getCartId());
+        assertEquals("1-7", result.getVersion());
 
-        verify(authUtil).getLoggedInUser();
-        verify(modelMapper, times(2)).map(any(CartItem.class), eq(CartItemDTO.class));
-        verify(modelMapper, times(2)).map(any(Product.class), eq(ProductDTO.class));
+        verify(authUtil, never()).getLoggedInUser();
+        verifyNoInteractions(cartItemMapper);
+    }
+
+    @Test
+    void testGetCartContent_EmptyCart() {
+        CartContentRow row = new CartContentRow(1L, 0.0, 0L, null, null, null, null,
+                null, null, null, null, null, null, null, null, null, null);
+
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findContentByUserId(1L)).thenReturn(List.of(row));
+
+        CartContentResponse result = cartService.getCartContent();
+
+        assertEquals(1L, result.getId());
+        assertEquals(0, result.getQuantity());
+        assertTrue(result.getCartItems().isEmpty());
+        verify(cartRepository, never()).save(any(Cart.class));
     }
 
     @Test
@@ -545,6 +587,8 @@ public class CartServiceTest {
         newCart.setId(1L);
         newCart.setUser(user);
 
+        when(authUtil.getLoggedInUserId()).thenReturn(1L);
+        when(cartRepository.findContentByUserId(1L)).thenReturn(Collections.emptyList());
         when(authUtil.getLoggedInUser()).thenReturn(user);
         when(cartRepository.save(any(Cart.class))).thenReturn(newCart);
 
@@ -556,7 +600,7 @@ public class CartServiceTest {
         assertEquals(0.0, result.getTotalPrice());
         assertTrue(result.getCartItems().isEmpty());
 
-        verify(authUtil, times(2)).getLoggedInUser();
+        verify(authUtil).getLoggedInUser();
         verify(cartRepository).save(any(Cart.class));
     }
 }
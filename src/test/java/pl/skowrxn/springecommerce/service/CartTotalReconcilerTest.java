@@ -0,0 +1,97 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.repository.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CartTotalReconcilerTest {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testReconcile_RepairsOnlyDriftedCartsAcrossBatches() {
+        Product product = this.createProduct();
+        Cart correct = this.createCart("correct", product, 0.1, 3, 0.3);
+        Cart drifted = this.createCart("drifted", product, 0.1, 3, 0.30000000000000004 + 5.0);
+        Cart emptyDrifted = this.createCart("empty", null, 0, 0, 12.5);
+        Cart alsoCorrect = this.createCart("also-correct", product, 19.99, 2, 39.98);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CartTotalReconciler reconciler = new CartTotalReconciler(cartRepository, meterRegistry, 2);
+
+        assertEquals(2, reconciler.reconcile());
+
+        assertEquals(0.3, this.totalOf(correct));
+        assertEquals(0.3, this.totalOf(drifted));
+        assertEquals(0.0, this.totalOf(emptyDrifted));
+        assertEquals(39.98, this.totalOf(alsoCorrect));
+        assertEquals(2.0, meterRegistry.get("cart.totals.repaired").counter().count());
+        assertEquals(0, reconciler.reconcile());
+    }
+
+    private double totalOf(Cart cart) {
+        return cartRepository.findById(cart.getId()).orElseThrow().getTotalPrice();
+    }
+
+    private Product createProduct() {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Category category = categoryRepository.save(new Category(null, "category"));
+        Product product = new Product();
+        product.setName("product");
+        product.setStockQuantity(10);
+        product.setPrice(0.1);
+        product.setCategory(category);
+        product.setUser(seller);
+        return productRepository.save(product);
+    }
+
+    private Cart createCart(String username, Product product, double singlePrice, int quantity, double storedTotal) {
+        User buyer = userRepository.save(new User(username, username + "@example.com", "hash"));
+        Cart cart = new Cart();
+        cart.setUser(buyer);
+        cart.setTotalPrice(storedTotal);
+        cart = cartRepository.save(cart);
+        if (product != null) {
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(quantity);
+            cartItem.setSinglePrice(singlePrice);
+            cartItem.setTotalPriceMinor(cartItem.getSinglePriceMinor() * quantity);
+            cartItemRepository.save(cartItem);
+        }
+        return cart;
+    }
+
+}
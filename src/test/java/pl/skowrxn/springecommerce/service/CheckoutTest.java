@@ -0,0 +1,221 @@
+package pl.skowrxn.springecommerce.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.dto.OrderDTO;
+import pl.skowrxn.springecommerce.dto.OrderRequestDTO;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
+import pl.skowrxn.springecommerce.mapper.*;
+import pl.skowrxn.springecommerce.repository.*;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderServiceImpl.class, CartServiceImpl.class, StockReservationServiceImpl.class, OrderMapperImpl.class,
+        UserMapperImpl.class, AddressMapperImpl.class, CartItemMapperImpl.class, ProductMapperImpl.class})
+@AutoConfigureJson
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CheckoutTest {
+
+    private static final int ORDER_ITEM_ID_BLOCK_SIZE = 50;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private AddressRepository addressRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @AfterEach
+    void tearDown() {
+        // Deleting orders one by one would cascade to their users
+        idempotencyKeyRepository.deleteAllInBatch();
+        orderOutboxRepository.deleteAllInBatch();
+        orderItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        addressRepository.deleteAllInBatch();
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testPlaceNewOrder_StatementCountIndependentOfCartSize() {
+        // The first checkout loads the entity metadata and its ids are drawn from the first block of the sequence
+        this.checkout(this.fillCart("warmup", 1));
+        User smallBuyer = this.fillCart("small", 1);
+        User largeBuyer = this.fillCart("large", 40);
+
+        long smallCartStatements = this.countStatements(smallBuyer);
+        long largeCartStatements = this.countStatements(largeBuyer);
+
+        assertEquals(smallCartStatements, largeCartStatements);
+        assertEquals(3, orderRepository.count());
+        assertEquals(42, orderItemRepository.count());
+    }
+
+    @Test
+    void testPlaceNewOrder_EmptiesCartAndKeepsStockTaken() {
+        User buyer = this.fillCart("buyer", 2);
+
+        OrderDTO order = this.checkout(buyer);
+
+        assertEquals(2, order.getOrderItems().size());
+        assertEquals(20.0, order.getTotalPrice());
+        assertEquals(0, cartItemRepository.count());
+        Cart cart = cartRepository.findByUserId(buyer.getId()).orElseThrow();
+        assertEquals(0.0, cart.getTotalPrice());
+        assertEquals(0, cart.getItemCount());
+        for (Product product : productRepository.findAll()) {
+            assertEquals(9, product.getStockQuantity());
+        }
+        List<OrderOutboxEvent> events = orderOutboxRepository.findAll();
+        assertEquals(2, events.size());
+        for (OrderOutboxEvent event : events) {
+            assertEquals(order.getId(), event.getOrderId());
+            assertEquals(OrderOutboxEvent.Status.PENDING, event.getStatus());
+        }
+    }
+
+    @Test
+    void testPlaceNewOrder_ReplaysOrderPlacedWithSameIdempotencyKey() {
+        User buyer = this.fillCart("buyer", 1);
+        OrderRequestDTO request = new OrderRequestDTO(this.createAddress(buyer).getId(), "Card");
+
+        OrderDTO order = orderService.placeNewOrder(request, buyer.getId(), "retry-1");
+
+        OrderDTO replayed = orderService.findPlacedOrder(request, buyer.getId(), "retry-1").orElseThrow();
+        assertEquals(order.getId(), replayed.getId());
+        assertEquals(order.getOrderItems().size(), replayed.getOrderItems().size());
+        assertThrows(ResourceConflictException.class,
+                () -> orderService.placeNewOrder(request, buyer.getId(), "retry-1"));
+        assertThrows(ResourceConflictException.class, () -> orderService.findPlacedOrder(
+                new OrderRequestDTO(request.getAddressId(), "Cash"), buyer.getId(), "retry-1"));
+        assertEquals(1, orderRepository.count());
+        assertEquals(1, idempotencyKeyRepository.count());
+    }
+
+    /**
+     * Counts the statements of a checkout, leaving out fetches of order item id blocks: whether one falls into a
+     * checkout depends on the ids used before it, not on the size of the cart.
+     */
+    private long countStatements(User buyer) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long sequenceBefore = this.orderItemSequenceValue();
+        statistics.clear();
+
+        this.checkout(buyer);
+
+        long statements = statistics.getPrepareStatementCount();
+        long sequenceFetches = (this.orderItemSequenceValue() - sequenceBefore) / ORDER_ITEM_ID_BLOCK_SIZE;
+        return statements - sequenceFetches;
+    }
+
+    private long orderItemSequenceValue() {
+        return jdbcTemplate.queryForObject("select base_value from information_schema.sequences " +
+                "where sequence_name = 'ORDER_ITEM_SEQ'", Long.class);
+    }
+
+    private OrderDTO checkout(User buyer) {
+        Address address = this.createAddress(buyer);
+        return orderService.placeNewOrder(new OrderRequestDTO(address.getId(), "Card"), buyer.getId());
+    }
+
+    private Address createAddress(User buyer) {
+        Address address = new Address();
+        address.setUser(buyer);
+        address.setStreet("Street 1");
+        address.setCity("Warsaw");
+        address.setProvince("Mazowieckie");
+        address.setCountry("Poland");
+        address.setPostalCode("00-001");
+        address.setPhoneNumber("123456789");
+        return addressRepository.save(address);
+    }
+
+    /**
+     * Adds one of each of {@code size} new products to the cart of a new user.
+     */
+    private User fillCart(String username, int size) {
+        User seller = userRepository.save(new User(username + "-seller", username + "-seller@example.com", "hash"));
+        User buyer = userRepository.save(new User(username, username + "@example.com", "hash"));
+        Category category = categoryRepository.save(new Category(null, "category"));
+        when(authUtil.getLoggedInUserId()).thenReturn(buyer.getId());
+        when(authUtil.getLoggedInUser()).thenReturn(buyer);
+
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Product product = new Product();
+            product.setName("product-" + i);
+            product.setStockQuantity(10);
+            product.setPrice(10.0);
+            product.setRegularPrice(10.0);
+            product.setCategory(category);
+            product.setUser(seller);
+            productIds.add(productRepository.save(product).getId());
+        }
+        productIds.forEach(productId -> cartService.addToCart(productId, 1));
+        return buyer;
+    }
+
+}
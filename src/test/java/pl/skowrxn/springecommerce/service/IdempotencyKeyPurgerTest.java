@@ -0,0 +1,58 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.IdempotencyKey;
+import pl.skowrxn.springecommerce.repository.IdempotencyKeyRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class IdempotencyKeyPurgerTest {
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @AfterEach
+    void tearDown() {
+        idempotencyKeyRepository.deleteAll();
+    }
+
+    @Test
+    void testPurge_DeletesExpiredKeysAcrossBatches() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 5; i++) {
+            this.createKey("expired-" + i, now.minus(Duration.ofHours(25)));
+        }
+        IdempotencyKey recent = this.createKey("recent", now.minus(Duration.ofHours(23)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyKeyPurger purger = new IdempotencyKeyPurger(idempotencyKeyRepository, meterRegistry, 24, 2);
+
+        assertEquals(5, purger.purge(now));
+
+        assertEquals(1, idempotencyKeyRepository.count());
+        assertTrue(idempotencyKeyRepository.existsById(recent.getId()));
+        assertEquals(5.0, meterRegistry.get("orders.idempotency.purged").counter().count());
+        assertEquals(0, purger.purge(now));
+    }
+
+    private IdempotencyKey createKey(String key, Instant createdAt) {
+        IdempotencyKey idempotencyKey = new IdempotencyKey();
+        idempotencyKey.setUserId(1L);
+        idempotencyKey.setKey(key);
+        idempotencyKey.setRequestHash("0".repeat(64));
+        idempotencyKey.setResponse("{}");
+        idempotencyKey.setCreatedAt(createdAt);
+        return idempotencyKeyRepository.save(idempotencyKey);
+    }
+
+}
@@ -0,0 +1,176 @@
+package pl.skowrxn.springecommerce.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.skowrxn.springecommerce.dto.OrderDTO;
+import pl.skowrxn.springecommerce.dto.OrderSummaryDTO;
+import pl.skowrxn.springecommerce.dto.response.OrderListResponse;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.*;
+import pl.skowrxn.springecommerce.repository.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderServiceImpl.class, OrderMapperImpl.class, UserMapperImpl.class, AddressMapperImpl.class,
+        ProductMapperImpl.class})
+@AutoConfigureJson
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OrderHistoryTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        // Deleting orders one by one would cascade to their users
+        orderItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testGetOrders_PagesThroughOrdersOfUserNewestFirst() {
+        User buyer = userRepository.save(new User("buyer", "buyer@example.com", "hash"));
+        User other = userRepository.save(new User("other", "other@example.com", "hash"));
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Two orders a day, so pages also break between orders of the same date
+            orders.add(this.createOrder(buyer, LocalDate.of(2025, 3, 1).plusDays(i / 2), List.of()));
+        }
+        this.createOrder(other, LocalDate.of(2025, 3, 10), List.of());
+
+        List<UUID> paged = new ArrayList<>();
+        String cursor = null;
+        OrderListResponse page;
+        do {
+            page = orderService.getOrders(buyer.getId(), cursor, 3);
+            page.getOrders().stream().map(OrderSummaryDTO::getId).forEach(paged::add);
+            cursor = page.getNextCursor();
+        } while (!page.isLastPage());
+
+        assertEquals(7, paged.size());
+        assertEquals(orders.stream().map(Order::getId).sorted().toList(), paged.stream().sorted().toList());
+        List<LocalDate> dates = orderService.getOrders(buyer.getId(), null, 7).getOrders().stream()
+                .map(OrderSummaryDTO::getOrderDate).toList();
+        assertEquals(dates.stream().sorted(Comparator.reverseOrder()).toList(), dates);
+    }
+
+    @Test
+    void testGetOrder_LoadsItemsInConstantStatements() {
+        User buyer = userRepository.save(new User("buyer", "buyer@example.com", "hash"));
+        List<Product> products = this.createProducts(buyer, 5);
+        Order smallOrder = this.createOrder(buyer, LocalDate.now(), products.subList(0, 1));
+        Order largeOrder = this.createOrder(buyer, LocalDate.now(), products);
+
+        long smallOrderStatements = this.countStatements(buyer, smallOrder);
+        long largeOrderStatements = this.countStatements(buyer, largeOrder);
+
+        assertEquals(smallOrderStatements, largeOrderStatements);
+        OrderDTO order = orderService.getOrder(buyer.getId(), largeOrder.getId());
+        assertEquals(5, order.getOrderItems().size());
+        assertEquals("buyer@example.com", order.getEmail());
+    }
+
+    @Test
+    void testGetOrder_OrderOfAnotherUser() {
+        User buyer = userRepository.save(new User("buyer", "buyer@example.com", "hash"));
+        User other = userRepository.save(new User("other", "other@example.com", "hash"));
+        Order order = this.createOrder(buyer, LocalDate.now(), List.of());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.getOrder(other.getId(), order.getId()));
+    }
+
+    private long countStatements(User buyer, Order order) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        orderService.getOrder(buyer.getId(), order.getId());
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private List<Product> createProducts(User seller, int count) {
+        Category category = categoryRepository.save(new Category(null, "category"));
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setName("product-" + i);
+            product.setStockQuantity(10);
+            product.setPrice(10.0);
+            product.setCategory(category);
+            product.setUser(seller);
+            products.add(productRepository.save(product));
+        }
+        return products;
+    }
+
+    /**
+     * Saves the order in a transaction, since saving it cascades to its user.
+     */
+    private Order createOrder(User buyer, LocalDate orderDate, List<Product> products) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Order order = new Order();
+            order.setUser(userRepository.getReferenceById(buyer.getId()));
+            order.setOrderDate(orderDate);
+            order.setStatus("Pending payment");
+            order.setTotalPrice(10.0 * products.size());
+            List<OrderItem> orderItems = new ArrayList<>();
+            for (Product product : products) {
+                OrderItem orderItem = new OrderItem();
+                orderItem.setProduct(productRepository.getReferenceById(product.getId()));
+                orderItem.setQuantity(1);
+                orderItem.setPrice(10.0);
+                orderItem.setOrder(order);
+                orderItems.add(orderItem);
+            }
+            order.setOrderItems(orderItems);
+            return orderRepository.save(order);
+        });
+    }
+
+}
@@ -0,0 +1,137 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.Order;
+import pl.skowrxn.springecommerce.entity.OrderOutboxEvent;
+import pl.skowrxn.springecommerce.entity.Payment;
+import pl.skowrxn.springecommerce.repository.OrderOutboxRepository;
+import pl.skowrxn.springecommerce.repository.OrderRepository;
+import pl.skowrxn.springecommerce.repository.PaymentRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OrderOutboxDispatcherTest {
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        orderOutboxRepository.deleteAllInBatch();
+        // Orders and payments reference each other
+        orderRepository.findAll().forEach(order -> orderRepository.setPayment(order.getId(), null));
+        paymentRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void testPoll_InitiatesPaymentOfOrder() throws InterruptedException {
+        Order order = new Order();
+        order.setStatus("Pending payment");
+        order = orderRepository.save(order);
+        OrderOutboxEvent event = orderOutboxRepository.save(new OrderOutboxEvent(order.getId(),
+                OrderOutboxEvent.Type.PAYMENT_INITIATION, "Card", Instant.now()));
+        OrderOutboxDispatcher dispatcher = this.createDispatcher(10,
+                new PaymentInitiationHandler(paymentRepository, orderRepository));
+
+        assertEquals(1, dispatcher.poll(Instant.now()));
+        dispatcher.shutdown();
+
+        OrderOutboxEvent processed = orderOutboxRepository.findById(event.getId()).orElseThrow();
+        assertEquals(OrderOutboxEvent.Status.DONE, processed.getStatus());
+        assertEquals(1, processed.getAttempts());
+        assertNotNull(processed.getProcessedAt());
+        Payment payment = orderRepository.findById(order.getId()).orElseThrow().getPayment();
+        assertNotNull(payment);
+        assertEquals("Card", payment.getPaymentMethod());
+        assertEquals(1, paymentRepository.count());
+        assertEquals(1.0, meterRegistry.get("orders.outbox.processed").counter().count());
+    }
+
+    @Test
+    void testPoll_RetriesFailedEventUntilMaxAttempts() throws InterruptedException {
+        Instant placedAt = Instant.now();
+        OrderOutboxEvent event = orderOutboxRepository.save(new OrderOutboxEvent(UUID.randomUUID(),
+                OrderOutboxEvent.Type.ORDER_CONFIRMATION, "1", placedAt));
+
+        OrderOutboxDispatcher first = this.createDispatcher(2, new FailingHandler());
+        assertEquals(1, first.poll(placedAt));
+        first.shutdown();
+
+        OrderOutboxEvent retried = orderOutboxRepository.findById(event.getId()).orElseThrow();
+        assertEquals(OrderOutboxEvent.Status.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+        assertEquals("Mail server unavailable", retried.getLastError());
+        assertNull(retried.getClaimToken());
+        assertTrue(retried.getNextAttemptAt().isAfter(placedAt));
+
+        OrderOutboxDispatcher second = this.createDispatcher(2, new FailingHandler());
+        assertEquals(0, second.poll(placedAt));
+        assertEquals(1, second.poll(retried.getNextAttemptAt()));
+        second.shutdown();
+
+        OrderOutboxEvent failed = orderOutboxRepository.findById(event.getId()).orElseThrow();
+        assertEquals(OrderOutboxEvent.Status.FAILED, failed.getStatus());
+        assertEquals(2, failed.getAttempts());
+        assertEquals(1.0, meterRegistry.get("orders.outbox.retried").counter().count());
+        assertEquals(1.0, meterRegistry.get("orders.outbox.failed").counter().count());
+    }
+
+    @Test
+    void testPoll_SkipsEventsClaimedByAnotherDispatcher() throws InterruptedException {
+        Instant now = Instant.now();
+        OrderOutboxEvent event = orderOutboxRepository.save(new OrderOutboxEvent(UUID.randomUUID(),
+                OrderOutboxEvent.Type.ORDER_CONFIRMATION, "1", now));
+        orderOutboxRepository.claim(List.of(event.getId()), UUID.randomUUID(), now, now.plusSeconds(60));
+        OrderOutboxDispatcher dispatcher = this.createDispatcher(10, new FailingHandler());
+
+        assertEquals(0, dispatcher.poll(now));
+        dispatcher.shutdown();
+
+        assertEquals(0, orderOutboxRepository.findById(event.getId()).orElseThrow().getAttempts());
+    }
+
+    private OrderOutboxDispatcher createDispatcher(int maxAttempts, OrderEventHandler handler) {
+        return new OrderOutboxDispatcher(orderOutboxRepository, List.of(handler), transactionManager, meterRegistry,
+                2, 10, maxAttempts, 1000, 60);
+    }
+
+    private static class FailingHandler implements OrderEventHandler {
+
+        @Override
+        public OrderOutboxEvent.Type getType() {
+            return OrderOutboxEvent.Type.ORDER_CONFIRMATION;
+        }
+
+        @Override
+        public void handle(OrderOutboxEvent event) {
+            throw new IllegalStateException("Mail server unavailable");
+        }
+
+    }
+
+}
@@ -1,21 +1,23 @@
 package pl.skowrxn.springecommerce.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
-import pl.skowrxn.springecommerce.dto.AddressDTO;
+import org.springframework.dao.DataIntegrityViolationException;
 import pl.skowrxn.springecommerce.dto.OrderDTO;
-import pl.skowrxn.springecommerce.dto.OrderItemDTO;
 import pl.skowrxn.springecommerce.dto.OrderRequestDTO;
+import pl.skowrxn.springecommerce.dto.OrderSummaryDTO;
+import pl.skowrxn.springecommerce.dto.response.OrderListResponse;
 import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
-import pl.skowrxn.springecommerce.repository.AddressRepository;
-import pl.skowrxn.springecommerce.repository.OrderItemRepository;
-import pl.skowrxn.springecommerce.repository.OrderRepository;
-import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.mapper.OrderMapper;
+import pl.skowrxn.springecommerce.repository.*;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -30,7 +32,10 @@ public class OrderServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private OrderItemRepository orderItemRepository;
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
 
     @Mock
     private OrderRepository orderRepository;
@@ -39,160 +44,238 @@ public class OrderServiceTest {
     private AddressRepository addressRepository;
 
     @Mock
-    private ModelMapper modelMapper;
-
-    @InjectMocks
-    private OrderServiceImpl orderService;
+    private IdempotencyKeyRepository idempotencyKeyRepository;
 
-    @Test
-    void testPlaceNewOrder_userNotExists(){
-        Long userId = 999L;
-        User user = new User();
-        user.setId(userId);
+    @Mock
+    private OrderOutboxRepository orderOutboxRepository;
 
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+    @Mock
+    private OrderMapper orderMapper;
 
-        assertThrows(ResourceNotFoundException.class, () -> orderService.placeNewOrder(new OrderRequestDTO(), userId));
-        verify(userRepository).findById(userId);
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
 
-        verifyNoInteractions(orderItemRepository, orderRepository, addressRepository, modelMapper);
-    }
+    @InjectMocks
+    private OrderServiceImpl orderService;
 
     @Test
     void placeNewOrder_success() {
         Long userId = 1L;
         UUID addressId = UUID.randomUUID();
-
-        User user = new User();
-        user.setId(userId);
-
-        Cart cart = new Cart();
-        cart.setItems(new ArrayList<>());
-        user.setCart(cart);
-
+        Cart cart = this.createCart(3L);
         Product product = new Product();
         product.setId(1L);
         product.setStockQuantity(10);
-
         CartItem cartItem = new CartItem();
         cartItem.setProduct(product);
         cartItem.setQuantity(2);
-        cartItem.setTotalPrice(10.0);
-
-        cart.setItems(List.of(cartItem));
-        cart.setTotalPrice(20.0);
+        cartItem.setTotalPrice(20.0);
 
         Address address = new Address();
         address.setId(addressId);
+        OrderRequestDTO requestDTO = new OrderRequestDTO(addressId, "Card");
+        User user = new User();
+        user.setId(userId);
 
-        OrderRequestDTO requestDTO = new OrderRequestDTO();
-        requestDTO.setAddressId(addressId);
-        requestDTO.setPaymentMethod("Card");
-
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(cartRepository.findByUserId(userId)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findAllWithProductByCartId(cart.getId())).thenReturn(List.of(cartItem));
         when(addressRepository.findAddressById(addressId)).thenReturn(address);
-
-        Order savedOrder = new Order();
-        savedOrder.setId(UUID.randomUUID());
-        savedOrder.setOrderDate(LocalDate.now());
-        savedOrder.setOrderItems(List.of());
-        savedOrder.setShippingAddress(address);
-        savedOrder.setOrderItems(new ArrayList<>());
-
-        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
-
+        when(cartRepository.resetTotalsAtRevision(eq(cart.getId()), eq(3L), any())).thenReturn(1);
+        when(userRepository.getReferenceById(userId)).thenReturn(user);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
         OrderDTO expectedOrderDTO = new OrderDTO();
-        when(modelMapper.map(savedOrder, OrderDTO.class)).thenReturn(expectedOrderDTO);
-        when(modelMapper.map(any(OrderItem.class), eq(OrderItemDTO.class))).thenReturn(new OrderItemDTO());
-        when(modelMapper.map(address, AddressDTO.class)).thenReturn(new AddressDTO());
+        when(orderMapper.toDTO(any(Order.class))).thenReturn(expectedOrderDTO);
 
         OrderDTO result = orderService.placeNewOrder(requestDTO, userId);
 
-        assertNotNull(result);
-        verify(userRepository).findById(userId);
-        verify(addressRepository).findAddressById(addressId);
-        verify(orderItemRepository).saveAll(any());
-        verify(orderRepository).save(any());
-        verify(modelMapper).map(savedOrder, OrderDTO.class);
-        verify(modelMapper, atLeastOnce()).map(any(OrderItem.class), eq(OrderItemDTO.class));
-        verify(modelMapper).map(address, AddressDTO.class);
-
         assertEquals(expectedOrderDTO, result);
-        assertEquals(8, product.getStockQuantity());
+        ArgumentCaptor<Order> orderCaptor = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository).save(orderCaptor.capture());
+        Order order = orderCaptor.getValue();
+        assertEquals(user, order.getUser());
+        assertEquals(address, order.getShippingAddress());
+        assertEquals(20.0, order.getTotalPrice());
+        assertEquals(1, order.getOrderItems().size());
+        assertEquals(2, order.getOrderItems().get(0).getQuantity());
+        assertSame(order, order.getOrderItems().get(0).getOrder());
+        verify(cartItemRepository).deleteAllByCartId(cart.getId());
+        // Taken from stock when it was added to the cart
+        assertEquals(10, product.getStockQuantity());
+        verify(userRepository, never()).findById(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<OrderOutboxEvent>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(orderOutboxRepository).saveAll(eventsCaptor.capture());
+        List<OrderOutboxEvent> events = eventsCaptor.getValue();
+        assertEquals(List.of(OrderOutboxEvent.Type.PAYMENT_INITIATION, OrderOutboxEvent.Type.ORDER_CONFIRMATION),
+                events.stream().map(OrderOutboxEvent::getType).toList());
+        assertEquals("Card", events.get(0).getPayload());
+        assertEquals(OrderOutboxEvent.Status.PENDING, events.get(0).getStatus());
     }
 
     @Test
     void placeNewOrder_cartIsNull() {
-        Long userId = 1L;
-        User user = new User();
-        user.setId(userId);
-        user.setCart(null);
-
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-
-        OrderRequestDTO requestDTO = new OrderRequestDTO();
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class,
-                () -> orderService.placeNewOrder(requestDTO, userId));
+                () -> orderService.placeNewOrder(new OrderRequestDTO(), 1L));
 
-        verify(userRepository).findById(userId);
+        verifyNoInteractions(orderRepository, addressRepository, orderOutboxRepository, orderMapper);
     }
 
     @Test
     void placeNewOrder_cartIsEmpty() {
-        Long userId = 1L;
-        User user = new User();
-        user.setId(userId);
-        Cart cart = new Cart();
-        cart.setItems(List.of());
-        user.setCart(cart);
-
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-
-        OrderRequestDTO requestDTO = new OrderRequestDTO();
+        Cart cart = this.createCart(0L);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findAllWithProductByCartId(cart.getId())).thenReturn(List.of());
 
         ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class,
-                () -> orderService.placeNewOrder(requestDTO, userId));
+                () -> orderService.placeNewOrder(new OrderRequestDTO(), 1L));
 
         assertEquals("Cart is null or empty", ex.getMessage());
-        verify(userRepository).findById(userId);
+        verify(cartRepository, never()).resetTotalsAtRevision(any(), anyLong(), any());
     }
 
     @Test
     void placeNewOrder_addressNotFound() {
-        Long userId = 1L;
         UUID addressId = UUID.randomUUID();
+        Cart cart = this.createCart(0L);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findAllWithProductByCartId(cart.getId())).thenReturn(List.of(new CartItem()));
+        when(addressRepository.findAddressById(addressId)).thenReturn(null);
 
-        User user = new User();
-        user.setId(userId);
-        Cart cart = new Cart();
+        assertThrows(ResourceNotFoundException.class,
+                () -> orderService.placeNewOrder(new OrderRequestDTO(addressId, "Card"), 1L));
 
-        Product product = new Product();
-        product.setId(1L);
-        product.setStockQuantity(10);
+        verify(addressRepository).findAddressById(addressId);
+        verify(cartRepository, never()).resetTotalsAtRevision(any(), anyLong(), any());
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void placeNewOrder_cartChangedWhileCheckingOut() {
+        UUID addressId = UUID.randomUUID();
+        Cart cart = this.createCart(3L);
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findAllWithProductByCartId(cart.getId())).thenReturn(List.of(new CartItem()));
+        when(addressRepository.findAddressById(addressId)).thenReturn(new Address());
+        when(cartRepository.resetTotalsAtRevision(eq(cart.getId()), eq(3L), any())).thenReturn(0);
+
+        assertThrows(ResourceConflictException.class,
+                () -> orderService.placeNewOrder(new OrderRequestDTO(addressId, "Card"), 1L));
+
+        verify(cartItemRepository, never()).deleteAllByCartId(any());
+        verifyNoInteractions(orderRepository);
+    }
 
+    @Test
+    void placeNewOrder_storesResponseUnderIdempotencyKey() {
+        UUID addressId = UUID.randomUUID();
+        Cart cart = this.createCart(3L);
         CartItem cartItem = new CartItem();
-        cartItem.setProduct(product);
-        cartItem.setQuantity(2);
+        cartItem.setQuantity(1);
         cartItem.setTotalPrice(20.0);
+        OrderRequestDTO requestDTO = new OrderRequestDTO(addressId, "Card");
+        OrderDTO orderDTO = new OrderDTO();
+        orderDTO.setId(UUID.randomUUID());
+        orderDTO.setTotalPrice(20.0);
+
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(cartRepository.findByUserId(1L)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findAllWithProductByCartId(cart.getId())).thenReturn(List.of(cartItem));
+        when(addressRepository.findAddressById(addressId)).thenReturn(new Address());
+        when(cartRepository.resetTotalsAtRevision(eq(cart.getId()), eq(3L), any())).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(orderMapper.toDTO(any(Order.class))).thenReturn(orderDTO);
+
+        orderService.placeNewOrder(requestDTO, 1L, "retry-1");
+
+        ArgumentCaptor<IdempotencyKey> keyCaptor = ArgumentCaptor.forClass(IdempotencyKey.class);
+        verify(idempotencyKeyRepository).saveAndFlush(keyCaptor.capture());
+        IdempotencyKey key = keyCaptor.getValue();
+        assertEquals(1L, key.getUserId());
+        assertEquals("retry-1", key.getKey());
+        assertNotNull(key.getResponse());
+
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "retry-1")).thenReturn(Optional.of(key));
+        OrderDTO replayed = orderService.findPlacedOrder(requestDTO, 1L, "retry-1").orElseThrow();
+        assertEquals(orderDTO.getId(), replayed.getId());
+        assertEquals(20.0, replayed.getTotalPrice());
+    }
 
-        cart.setItems(List.of(cartItem));
-        user.setCart(cart);
+    @Test
+    void placeNewOrder_idempotencyKeyAlreadyUsed() {
+        when(idempotencyKeyRepository.saveAndFlush(any(IdempotencyKey.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_idempotency_keys_user_key"));
 
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(addressRepository.findAddressById(addressId)).thenReturn(null);
+        assertThrows(ResourceConflictException.class,
+                () -> orderService.placeNewOrder(new OrderRequestDTO(UUID.randomUUID(), "Card"), 1L, "retry-1"));
 
-        OrderRequestDTO requestDTO = new OrderRequestDTO();
-        requestDTO.setAddressId(addressId);
+        verifyNoInteractions(cartRepository, cartItemRepository, orderRepository);
+    }
 
-        assertThrows(ResourceNotFoundException.class,
-                () -> orderService.placeNewOrder(requestDTO, userId));
+    @Test
+    void findPlacedOrder_idempotencyKeyUsedForAnotherRequest() {
+        IdempotencyKey key = new IdempotencyKey();
+        key.setRequestHash("0".repeat(64));
+        key.setResponse("{}");
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "retry-1")).thenReturn(Optional.of(key));
+
+        assertThrows(ResourceConflictException.class,
+                () -> orderService.findPlacedOrder(new OrderRequestDTO(UUID.randomUUID(), "Card"), 1L, "retry-1"));
+    }
 
-        verify(userRepository).findById(userId);
-        verify(addressRepository).findAddressById(addressId);
+    @Test
+    void findPlacedOrder_newIdempotencyKey() {
+        when(idempotencyKeyRepository.findByUserIdAndKey(1L, "retry-1")).thenReturn(Optional.empty());
+
+        assertTrue(orderService.findPlacedOrder(new OrderRequestDTO(), 1L, "retry-1").isEmpty());
     }
 
+    @Test
+    void getOrders_pagesWithCursorOfLastOrder() {
+        OrderSummaryDTO newest = this.createSummary(LocalDate.of(2025, 3, 2));
+        OrderSummaryDTO older = this.createSummary(LocalDate.of(2025, 3, 1));
+        OrderSummaryDTO oldest = this.createSummary(LocalDate.of(2025, 2, 1));
+        when(orderRepository.findSummariesByUserId(eq(1L), any())).thenReturn(List.of(newest, older, oldest));
+        when(orderRepository.findSummariesByUserIdAfter(eq(1L), eq(older.getOrderDate()), eq(older.getId()), any()))
+                .thenReturn(List.of(oldest));
+
+        OrderListResponse first = orderService.getOrders(1L, null, 2);
+        OrderListResponse second = orderService.getOrders(1L, first.getNextCursor(), 2);
+
+        assertEquals(List.of(newest, older), first.getOrders());
+        assertFalse(first.isLastPage());
+        assertEquals(List.of(oldest), second.getOrders());
+        assertTrue(second.isLastPage());
+        assertNull(second.getNextCursor());
+    }
 
+    @Test
+    void getOrders_invalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrders(1L, "not-a-cursor", 20));
 
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void getOrder_orderOfAnotherUser() {
+        UUID orderId = UUID.randomUUID();
+        when(orderRepository.findWithItemsByIdAndUserId(orderId, 1L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.getOrder(1L, orderId));
+    }
+
+    private OrderSummaryDTO createSummary(LocalDate orderDate) {
+        return new OrderSummaryDTO(UUID.randomUUID(), orderDate, 10.0, "Pending payment");
+    }
+
+    private Cart createCart(long revision) {
+        Cart cart = new Cart();
+        cart.setId(5L);
+        cart.setRevision(revision);
+        cart.setTotalPrice(20.0);
+        return cart;
+    }
 
 }
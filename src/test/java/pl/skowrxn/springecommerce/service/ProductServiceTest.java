@@ -5,7 +5,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -17,6 +16,7 @@ import pl.skowrxn.springecommerce.entity.Category;
 import pl.skowrxn.springecommerce.entity.Product;
 import pl.skowrxn.springecommerce.entity.User;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.ProductMapper;
 import pl.skowrxn.springecommerce.repository.CategoryRepository;
 import pl.skowrxn.springecommerce.repository.ProductRepository;
 import pl.skowrxn.springecommerce.util.AuthUtil;
@@ -50,7 +50,10 @@ public class ProductServiceTest {
     private AuthUtil authUtil;
 
     @Mock
-    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
+
+    @Mock
+    private StockReservationService stockReservationService;
 
     @InjectMocks
     private ProductServiceImpl productService;
@@ -100,9 +103,9 @@ public class ProductServiceTest {
 
         when(authUtil.getLoggedInUser()).thenReturn(user);
         when(categoryRepository.findById(categoryId)).thenReturn(Optional.of(category));
-        when(modelMapper.map(productDTO, Product.class)).thenReturn(product);
+        when(productMapper.toEntity(productDTO)).thenReturn(product);
         when(productRepository.save(product)).thenReturn(savedProduct);
-        when(modelMapper.map(savedProduct, ProductDTO.class)).thenReturn(savedProductDTO);
+        when(productMapper.toDTO(savedProduct)).thenReturn(savedProductDTO);
 
         ProductDTO result = productService.createProduct(categoryId, productDTO);
 
@@ -116,9 +119,9 @@ public class ProductServiceTest {
 
         verify(authUtil).getLoggedInUser();
         verify(categoryRepository).findById(categoryId);
-        verify(modelMapper).map(productDTO, Product.class);
+        verify(productMapper).toEntity(productDTO);
         verify(productRepository).save(product);
-        verify(modelMapper).map(savedProduct, ProductDTO.class);
+        verify(productMapper).toDTO(savedProduct);
     }
 
     @Test
@@ -132,7 +135,7 @@ public class ProductServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> productService.createProduct(categoryId, productDTO));
 
         verify(categoryRepository).findById(categoryId);
-        verifyNoInteractions(authUtil, modelMapper, productRepository);
+        verifyNoInteractions(authUtil, productMapper, productRepository);
     }
 
     @Test
@@ -166,8 +169,8 @@ public class ProductServiceTest {
         productDTO2.setPrice(80.0);
 
         when(productRepository.findAll(any(Pageable.class))).thenReturn(productPage);
-        when(modelMapper.map(product1, ProductDTO.class)).thenReturn(productDTO1);
-        when(modelMapper.map(product2, ProductDTO.class)).thenReturn(productDTO2);
+        when(productMapper.toDTO(product1)).thenReturn(productDTO1);
+        when(productMapper.toDTO(product2)).thenReturn(productDTO2);
 
         ProductListResponse result = productService.getAllProducts(pageNumber, pageSize, sortBy, sortDir);
 
@@ -180,8 +183,8 @@ public class ProductServiceTest {
         assertEquals(2, result.getProducts().size());
 
         verify(productRepository).findAll(any(Pageable.class));
-        verify(modelMapper).map(product1, ProductDTO.class);
-        verify(modelMapper).map(product2, ProductDTO.class);
+        verify(productMapper).toDTO(product1);
+        verify(productMapper).toDTO(product2);
     }
 
     @Test
@@ -219,8 +222,8 @@ public class ProductServiceTest {
 
         when(categoryRepository.findById(categoryId)).thenReturn(Optional.of(category));
         when(productRepository.findByCategory(eq(category), any(Pageable.class))).thenReturn(productPage);
-        when(modelMapper.map(product1, ProductDTO.class)).thenReturn(productDTO1);
-        when(modelMapper.map(product2, ProductDTO.class)).thenReturn(productDTO2);
+        when(productMapper.toDTO(product1)).thenReturn(productDTO1);
+        when(productMapper.toDTO(product2)).thenReturn(productDTO2);
 
         ProductListResponse result = productService.getProductsByCategoryId(categoryId, pageNumber, pageSize, sortBy, sortDir);
 
@@ -234,8 +237,8 @@ public class ProductServiceTest {
 
         verify(categoryRepository).findById(categoryId);
         verify(productRepository).findByCategory(eq(category), any(Pageable.class));
-        verify(modelMapper).map(product1, ProductDTO.class);
-        verify(modelMapper).map(product2, ProductDTO.class);
+        verify(productMapper).toDTO(product1);
+        verify(productMapper).toDTO(product2);
     }
 
     @Test
@@ -252,7 +255,7 @@ public class ProductServiceTest {
             productService.getProductsByCategoryId(categoryId, pageNumber, pageSize, sortBy, sortDir));
 
         verify(categoryRepository).findById(categoryId);
-        verifyNoInteractions(productRepository, modelMapper);
+        verifyNoInteractions(productRepository, productMapper);
     }
 
     @Test
@@ -283,8 +286,8 @@ public class ProductServiceTest {
         productDTO2.setName("Test Product 2");
 
         when(productRepository.findByNameLikeIgnoreCase(eq("%" + keyword + "%"), any(Pageable.class))).thenReturn(productPage);
-        when(modelMapper.map(product1, ProductDTO.class)).thenReturn(productDTO1);
-        when(modelMapper.map(product2, ProductDTO.class)).thenReturn(productDTO2);
+        when(productMapper.toDTO(product1)).thenReturn(productDTO1);
+        when(productMapper.toDTO(product2)).thenReturn(productDTO2);
 
         ProductListResponse result = productService.getProductsByKeyword(keyword, pageNumber, pageSize, sortBy, sortDir);
 
@@ -297,8 +300,8 @@ public class ProductServiceTest {
         assertEquals(2, result.getProducts().size());
 
         verify(productRepository).findByNameLikeIgnoreCase(eq("%" + keyword + "%"), any(Pageable.class));
-        verify(modelMapper).map(product1, ProductDTO.class);
-        verify(modelMapper).map(product2, ProductDTO.class);
+        verify(productMapper).toDTO(product1);
+        verify(productMapper).toDTO(product2);
     }
 
     @Test
@@ -341,7 +344,7 @@ public class ProductServiceTest {
 
         when(productRepository.findById(productId)).thenReturn(Optional.of(existingProduct));
         when(productRepository.save(existingProduct)).thenReturn(updatedProduct);
-        when(modelMapper.map(updatedProduct, ProductDTO.class)).thenReturn(updatedProductDTO);
+        when(productMapper.toDTO(updatedProduct)).thenReturn(updatedProductDTO);
 
         ProductDTO result = productService.updateProduct(productId, productDTO);
 
@@ -356,7 +359,7 @@ public class ProductServiceTest {
 
         verify(productRepository).findById(productId);
         verify(productRepository).save(existingProduct);
-        verify(modelMapper).map(updatedProduct, ProductDTO.class);
+        verify(productMapper).toDTO(updatedProduct);
     }
 
     @Test
@@ -371,7 +374,7 @@ public class ProductServiceTest {
 
         verify(productRepository).findById(productId);
         verify(productRepository, never()).save(any(Product.class));
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(productMapper);
     }
 
     @Test
@@ -429,7 +432,7 @@ public class ProductServiceTest {
         when(productRepository.findById(productId)).thenReturn(Optional.of(existingProduct));
         when(fileService.uploadImage(image)).thenReturn("new-image.jpg");
         when(productRepository.save(existingProduct)).thenReturn(updatedProduct);
-        when(modelMapper.map(updatedProduct, ProductDTO.class)).thenReturn(updatedProductDTO);
+        when(productMapper.toDTO(updatedProduct)).thenReturn(updatedProductDTO);
 
         ProductDTO result = productService.updateProductImage(productId, image);
 
@@ -441,7 +444,7 @@ public class ProductServiceTest {
         verify(productRepository).findById(productId);
         verify(fileService).uploadImage(image);
         verify(productRepository).save(existingProduct);
-        verify(modelMapper).map(updatedProduct, ProductDTO.class);
+        verify(productMapper).toDTO(updatedProduct);
     }
 
     @Test
@@ -458,6 +461,6 @@ public class ProductServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> productService.updateProductImage(productId, image));
 
         verify(productRepository).findById(productId);
-        verifyNoInteractions(fileService, modelMapper);
+        verifyNoInteractions(fileService, productMapper);
     }
 }
\ No newline at end of file
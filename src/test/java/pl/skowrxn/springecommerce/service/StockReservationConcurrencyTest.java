@@ -0,0 +1,153 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.Category;
+import pl.skowrxn.springecommerce.entity.Product;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.exception.ProductOutOfStockException;
+import pl.skowrxn.springecommerce.repository.CategoryRepository;
+import pl.skowrxn.springecommerce.repository.ProductRepository;
+import pl.skowrxn.springecommerce.repository.ProductStockShardRepository;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(StockReservationServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class StockReservationConcurrencyTest {
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductStockShardRepository productStockShardRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        productStockShardRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testReserve_ParallelReservationsNeverOversell() throws Exception {
+        Product product = this.createProduct(500);
+
+        this.raceReservations(product, 500);
+
+        assertEquals(0, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+    }
+
+    @Test
+    void testReserve_ParallelReservationsOnShardedStockNeverOversell() throws Exception {
+        Product product = this.createProduct(500);
+        stockReservationService.shard(product.getId(), 8);
+
+        this.raceReservations(productRepository.findById(product.getId()).orElseThrow(), 500);
+
+        assertEquals(0, productStockShardRepository.sumQuantityByProductId(product.getId()));
+    }
+
+    @Test
+    void testReserve_RebalancesWhenNoShardHoldsQuantity() {
+        Product product = this.createProduct(4);
+        stockReservationService.shard(product.getId(), 3);
+        Product shardedProduct = productRepository.findById(product.getId()).orElseThrow();
+
+        assertEquals(1, stockReservationService.reserve(shardedProduct, 3));
+        assertThrows(ProductOutOfStockException.class, () -> stockReservationService.reserve(shardedProduct, 2));
+        assertEquals(3, stockReservationService.release(product.getId(), 2));
+    }
+
+    @Test
+    void testShard_UnshardingMovesStockBack() {
+        Product product = this.createProduct(10);
+        stockReservationService.shard(product.getId(), 4);
+        stockReservationService.reserve(productRepository.findById(product.getId()).orElseThrow(), 3);
+
+        stockReservationService.shard(product.getId(), 0);
+
+        assertEquals(0, productStockShardRepository.count());
+        assertEquals(7, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(6, stockReservationService.reserve(productRepository.findById(product.getId()).orElseThrow(), 1));
+    }
+
+    @Test
+    void testRelease_ReturnsStock() {
+        Product product = this.createProduct(3);
+
+        assertEquals(1, stockReservationService.reserve(product, 2));
+        assertThrows(ProductOutOfStockException.class, () -> stockReservationService.reserve(product, 2));
+        assertEquals(3, stockReservationService.release(product.getId(), 2));
+        assertEquals(3, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+    }
+
+    private void raceReservations(Product product, int stock) throws Exception {
+        int attempts = 2000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < attempts; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return stockReservationService.reserve(product, 1);
+                    } catch (ProductOutOfStockException e) {
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            for (Future<Integer> result : results) {
+                Integer remaining = result.get(60, TimeUnit.SECONDS);
+                if (remaining != null) {
+                    assertTrue(remaining >= 0);
+                    reserved++;
+                }
+            }
+
+            assertEquals(stock, reserved);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Product createProduct(int stock) {
+        User seller = userRepository.save(new User("seller", "seller@example.com", "hash"));
+        Category category = categoryRepository.save(new Category(null, "category"));
+
+        Product product = new Product();
+        product.setName("product");
+        product.setStockQuantity(stock);
+        product.setPrice(10.0);
+        product.setCategory(category);
+        product.setUser(seller);
+        return productRepository.save(product);
+    }
+
+}
@@ -0,0 +1,142 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.dto.UserImportDTO;
+import pl.skowrxn.springecommerce.dto.response.UserImportResponse;
+import pl.skowrxn.springecommerce.entity.Role;
+import pl.skowrxn.springecommerce.entity.RoleType;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
+import pl.skowrxn.springecommerce.repository.RoleRepository;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.security.RoleRegistry;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.app.userImport.batchSize=2"
+})
+@Import({UserImportServiceImpl.class, RoleRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserImportServiceTest {
+
+    private static final String PASSWORD_HASH = "{bcrypt}$2a$10$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ01";
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private RoleRegistry roleRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        roleRepository.saveAll(List.of(new Role(RoleType.ROLE_USER), new Role(RoleType.ROLE_SELLER),
+                new Role(RoleType.ROLE_ADMIN)));
+        roleRegistry.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from user_roles");
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+    }
+
+    private UserImportDTO user(String username, String email, String... roles) {
+        return new UserImportDTO(username, email, PASSWORD_HASH, roles.length == 0 ? null : Set.of(roles));
+    }
+
+    private Map<String, Set<String>> rolesByUsername() {
+        Map<String, Set<String>> roles = new HashMap<>();
+        jdbcTemplate.query("select u.username, r.role_type from user_roles ur " +
+                        "join users u on u.id = ur.user_id join roles r on r.id = ur.role_id",
+                rs -> {
+                    roles.computeIfAbsent(rs.getString("username"), username -> new HashSet<>())
+                            .add(rs.getString("role_type"));
+                });
+        return roles;
+    }
+
+    @Test
+    void testImportUsers_LinksRolesToGeneratedIds() {
+        UserImportResponse response = userImportService.importUsers(List.of(
+                user("alice", "alice@example.com", "admin", "seller"),
+                user("bob", "bob@example.com"),
+                user("carol", "carol@example.com", "seller")));
+
+        assertEquals(3, response.getImportedUsers());
+        assertEquals(2, response.getBatches());
+        assertEquals(Map.of(
+                "alice", Set.of("ROLE_ADMIN", "ROLE_SELLER"),
+                "bob", Set.of("ROLE_USER"),
+                "carol", Set.of("ROLE_SELLER")), this.rolesByUsername());
+    }
+
+    @Test
+    void testImportUsers_StoresNormalizedColumns() {
+        userImportService.importUsers(List.of(user(" Alice", "Alice@Example.com")));
+
+        User user = userRepository.findAll().get(0);
+        assertEquals(" Alice", user.getUsername());
+        assertEquals("Alice@Example.com", user.getEmail());
+        assertEquals("alice", user.getNormalizedUsername());
+        assertEquals("alice@example.com", user.getNormalizedEmail());
+        assertEquals(PASSWORD_HASH, user.getPassword());
+    }
+
+    @Test
+    void testImportUsers_DuplicateUsernameInBatch() {
+        List<UserImportDTO> users = List.of(user("alice", "alice@example.com"), user("ALICE", "other@example.com"));
+
+        ResourceConflictException exception = assertThrows(ResourceConflictException.class,
+                () -> userImportService.importUsers(users));
+
+        assertEquals("username", exception.getFieldName());
+        assertEquals(0, userRepository.count());
+    }
+
+    @Test
+    void testImportUsers_DuplicateEmailInBatch() {
+        List<UserImportDTO> users = List.of(user("alice", "alice@example.com"), user("bob", " alice@EXAMPLE.com"));
+
+        ResourceConflictException exception = assertThrows(ResourceConflictException.class,
+                () -> userImportService.importUsers(users));
+
+        assertEquals("email", exception.getFieldName());
+        assertEquals(0, userRepository.count());
+    }
+
+    @Test
+    void testImportUsers_ConflictWithExistingUserRollsBackAllBatches() {
+        userImportService.importUsers(List.of(user("carol", "carol@example.com")));
+
+        assertThrows(ResourceConflictException.class, () -> userImportService.importUsers(List.of(
+                user("alice", "alice@example.com"),
+                user("bob", "bob@example.com"),
+                user("Carol", "new-carol@example.com"))));
+
+        assertEquals(1, userRepository.count());
+        assertEquals(Set.of("carol"), this.rolesByUsername().keySet());
+    }
+
+}
@@ -1,11 +1,13 @@
 package pl.skowrxn.springecommerce.service;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -16,10 +18,13 @@ import pl.skowrxn.springecommerce.entity.Address;
 import pl.skowrxn.springecommerce.entity.Product;
 import pl.skowrxn.springecommerce.entity.Role;
 import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.event.UserChangedEvent;
 import pl.skowrxn.springecommerce.exception.ResourceConflictException;
 import pl.skowrxn.springecommerce.exception.ResourceNotFoundException;
+import pl.skowrxn.springecommerce.mapper.UserMapper;
 import pl.skowrxn.springecommerce.repository.UserRepository;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -35,7 +40,10 @@ public class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private ModelMapper modelMapper;
+    private UserMapper userMapper;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private UserServiceImpl userService;
@@ -55,7 +63,7 @@ public class UserServiceTest {
         UserDTO userDTO = new UserDTO(userId, "testuser", "test@example.com", roles, products, addresses);
 
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDTO.class)).thenReturn(userDTO);
+        when(userMapper.toDTO(user)).thenReturn(userDTO);
 
         UserDTO result = userService.getUserDTOById(userId);
 
@@ -65,7 +73,7 @@ public class UserServiceTest {
         assertEquals("test@example.com", result.getEmail());
 
         verify(userRepository).findById(userId);
-        verify(modelMapper).map(user, UserDTO.class);
+        verify(userMapper).toDTO(user);
     }
 
     @Test
@@ -77,7 +85,7 @@ public class UserServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> userService.getUserDTOById(userId));
 
         verify(userRepository).findById(userId);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -95,7 +103,7 @@ public class UserServiceTest {
         UserDTO userDTO = new UserDTO(1L, "testuser", email, roles, products, addresses);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDTO.class)).thenReturn(userDTO);
+        when(userMapper.toDTO(user)).thenReturn(userDTO);
 
         UserDTO result = userService.getUserDTOByEmail(email);
 
@@ -105,7 +113,7 @@ public class UserServiceTest {
         assertEquals(email, result.getEmail());
 
         verify(userRepository).findByEmail(email);
-        verify(modelMapper).map(user, UserDTO.class);
+        verify(userMapper).toDTO(user);
     }
 
     @Test
@@ -117,7 +125,7 @@ public class UserServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> userService.getUserDTOByEmail(email));
 
         verify(userRepository).findByEmail(email);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -135,7 +143,7 @@ public class UserServiceTest {
         UserDTO userDTO = new UserDTO(1L, username, "test@example.com", roles, products, addresses);
 
         when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
-        when(modelMapper.map(user, UserDTO.class)).thenReturn(userDTO);
+        when(userMapper.toDTO(user)).thenReturn(userDTO);
 
         UserDTO result = userService.getUserDTOByUsername(username);
 
@@ -145,7 +153,7 @@ public class UserServiceTest {
         assertEquals("test@example.com", result.getEmail());
 
         verify(userRepository).findByUsername(username);
-        verify(modelMapper).map(user, UserDTO.class);
+        verify(userMapper).toDTO(user);
     }
 
     @Test
@@ -157,7 +165,7 @@ public class UserServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> userService.getUserDTOByUsername(username));
 
         verify(userRepository).findByUsername(username);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -272,11 +280,9 @@ public class UserServiceTest {
 
         UserDTO savedUserDTO = new UserDTO(1L, "newuser", "new@example.com", roles, products, addresses);
 
-                when(userRepository.findByEmail(userDTO.getEmail())).thenReturn(Optional.empty());
-        when(userRepository.findByUsername(userDTO.getUsername())).thenReturn(Optional.empty());
-        when(modelMapper.map(userDTO, User.class)).thenReturn(user);
-        when(userRepository.save(user)).thenReturn(savedUser);
-        when(modelMapper.map(savedUser, UserDTO.class)).thenReturn(savedUserDTO);
+                when(userMapper.toEntity(userDTO)).thenReturn(user);
+        when(userRepository.saveAndFlush(user)).thenReturn(savedUser);
+        when(userMapper.toDTO(savedUser)).thenReturn(savedUserDTO);
 
                 UserDTO result = userService.saveUser(userDTO);
 
@@ -285,11 +291,10 @@ public class UserServiceTest {
         assertEquals("newuser", result.getUsername());
         assertEquals("new@example.com", result.getEmail());
 
-                verify(userRepository).findByEmail(userDTO.getEmail());
-        verify(userRepository).findByUsername(userDTO.getUsername());
-        verify(modelMapper).map(userDTO, User.class);
-        verify(userRepository).save(user);
-        verify(modelMapper).map(savedUser, UserDTO.class);
+                verify(userMapper).toEntity(userDTO);
+        verify(userRepository).saveAndFlush(user);
+        verify(userMapper).toDTO(savedUser);
+        verifyNoMoreInteractions(userRepository);
     }
 
     @Test
@@ -300,18 +305,20 @@ public class UserServiceTest {
 
         UserDTO userDTO = new UserDTO(null, "newuser", "existing@example.com", roles, products, addresses);
 
-        User existingUser = new User();
-        existingUser.setId(1L);
-        existingUser.setUsername("existinguser");
-        existingUser.setEmail("existing@example.com");
+        User user = new User();
+        user.setUsername("newuser");
+        user.setEmail("existing@example.com");
 
-                when(userRepository.findByEmail(userDTO.getEmail())).thenReturn(Optional.of(existingUser));
+                when(userMapper.toEntity(userDTO)).thenReturn(user);
+        when(userRepository.saveAndFlush(user)).thenThrow(uniqueViolation(User.EMAIL_UNIQUE_CONSTRAINT));
 
+                ResourceConflictException exception =
                 assertThrows(ResourceConflictException.class, () -> userService.saveUser(userDTO));
 
-                verify(userRepository).findByEmail(userDTO.getEmail());
+                assertEquals("email", exception.getFieldName());
+        verify(userRepository).saveAndFlush(user);
         verifyNoMoreInteractions(userRepository);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -322,20 +329,20 @@ public class UserServiceTest {
 
         UserDTO userDTO = new UserDTO(null, "existinguser", "new@example.com", roles, products, addresses);
 
-        User existingUser = new User();
-        existingUser.setId(1L);
-        existingUser.setUsername("existinguser");
-        existingUser.setEmail("existing@example.com");
+        User user = new User();
+        user.setUsername("existinguser");
+        user.setEmail("new@example.com");
 
-                when(userRepository.findByEmail(userDTO.getEmail())).thenReturn(Optional.empty());
-        when(userRepository.findByUsername(userDTO.getUsername())).thenReturn(Optional.of(existingUser));
+                when(userMapper.toEntity(userDTO)).thenReturn(user);
+        when(userRepository.saveAndFlush(user)).thenThrow(uniqueViolation(User.USERNAME_UNIQUE_CONSTRAINT));
 
+                ResourceConflictException exception =
                 assertThrows(ResourceConflictException.class, () -> userService.saveUser(userDTO));
 
-                verify(userRepository).findByEmail(userDTO.getEmail());
-        verify(userRepository).findByUsername(userDTO.getUsername());
+                assertEquals("username", exception.getFieldName());
+        verify(userRepository).saveAndFlush(user);
         verifyNoMoreInteractions(userRepository);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -349,9 +356,7 @@ public class UserServiceTest {
         savedUser.setUsername("newuser");
         savedUser.setEmail("new@example.com");
 
-                when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.empty());
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.empty());
-        when(userRepository.save(user)).thenReturn(savedUser);
+                when(userRepository.saveAndFlush(user)).thenReturn(savedUser);
 
                 User result = userService.saveUser(user);
 
@@ -360,9 +365,9 @@ public class UserServiceTest {
         assertEquals("newuser", result.getUsername());
         assertEquals("new@example.com", result.getEmail());
 
-                verify(userRepository).findByEmail(user.getEmail());
-        verify(userRepository).findByUsername(user.getUsername());
-        verify(userRepository).save(user);
+                verify(userRepository).saveAndFlush(user);
+        verifyNoMoreInteractions(userRepository);
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
     }
 
     @Test
@@ -371,16 +376,13 @@ public class UserServiceTest {
         user.setUsername("newuser");
         user.setEmail("existing@example.com");
 
-        User existingUser = new User();
-        existingUser.setId(1L);
-        existingUser.setUsername("existinguser");
-        existingUser.setEmail("existing@example.com");
-
-                when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(existingUser));
+                when(userRepository.saveAndFlush(user)).thenThrow(uniqueViolation(User.EMAIL_UNIQUE_CONSTRAINT));
 
+                ResourceConflictException exception =
                 assertThrows(ResourceConflictException.class, () -> userService.saveUser(user));
 
-                verify(userRepository).findByEmail(user.getEmail());
+                assertEquals("email", exception.getFieldName());
+        verify(userRepository).saveAndFlush(user);
         verifyNoMoreInteractions(userRepository);
     }
 
@@ -390,21 +392,50 @@ public class UserServiceTest {
         user.setUsername("existinguser");
         user.setEmail("new@example.com");
 
-        User existingUser = new User();
-        existingUser.setId(1L);
-        existingUser.setUsername("existinguser");
-        existingUser.setEmail("existing@example.com");
-
-                when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.empty());
-        when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.of(existingUser));
+                when(userRepository.saveAndFlush(user)).thenThrow(uniqueViolation(User.USERNAME_UNIQUE_CONSTRAINT));
 
+                ResourceConflictException exception =
                 assertThrows(ResourceConflictException.class, () -> userService.saveUser(user));
 
-                verify(userRepository).findByEmail(user.getEmail());
-        verify(userRepository).findByUsername(user.getUsername());
+                assertEquals("username", exception.getFieldName());
+        verify(userRepository).saveAndFlush(user);
         verifyNoMoreInteractions(userRepository);
     }
 
+    @Test
+    void testSaveUser_UnknownViolationIsRethrown() {
+                User user = new User();
+        user.setUsername("newuser");
+        user.setEmail("new@example.com");
+
+                when(userRepository.saveAndFlush(user)).thenThrow(uniqueViolation("fk_unknown"));
+
+                assertThrows(DataIntegrityViolationException.class, () -> userService.saveUser(user));
+    }
+
+    @Test
+    void testSaveUser_GeneratedUniqueKeyConflict() {
+                User user = new User();
+        user.setUsername("existinguser");
+        user.setEmail("new@example.com");
+
+                when(userRepository.saveAndFlush(user)).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new ConstraintViolationException("Duplicate entry",
+                new SQLException("Duplicate entry"), ConstraintViolationException.ConstraintKind.UNIQUE,
+                "users.uk_r43af9ap4edm43mmtq01oddj6e")));
+
+                ResourceConflictException exception =
+                assertThrows(ResourceConflictException.class, () -> userService.saveUser(user));
+
+                assertEquals("User", exception.getObjectName());
+        assertNull(exception.getFieldName());
+    }
+
+    private DataIntegrityViolationException uniqueViolation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("Duplicate entry", new SQLException("Duplicate entry"), constraintName));
+    }
+
     @Test
     void testUpdateUser_Success() {
                 Long userId = 1L;
@@ -431,7 +462,7 @@ public class UserServiceTest {
 
                 when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
         when(userRepository.save(existingUser)).thenReturn(updatedUser);
-        when(modelMapper.map(updatedUser, UserDTO.class)).thenReturn(updatedUserDTO);
+        when(userMapper.toDTO(updatedUser)).thenReturn(updatedUserDTO);
 
                 UserDTO result = userService.updateUser(userDTO);
 
@@ -442,7 +473,9 @@ public class UserServiceTest {
 
                 verify(userRepository).findById(userId);
         verify(userRepository).save(existingUser);
-        verify(modelMapper).map(updatedUser, UserDTO.class);
+        verify(userMapper).toDTO(updatedUser);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof UserChangedEvent changed
+                && "originaluser".equals(changed.getUsername())));
     }
 
     @Test
@@ -460,7 +493,7 @@ public class UserServiceTest {
 
                 verify(userRepository).findById(userId);
         verifyNoMoreInteractions(userRepository);
-        verifyNoInteractions(modelMapper);
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -478,6 +511,8 @@ public class UserServiceTest {
 
                 verify(userRepository).findById(userId);
         verify(userRepository).delete(user);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof UserChangedEvent changed
+                && "testuser".equals(changed.getUsername())));
     }
 
     @Test
@@ -518,8 +553,8 @@ public class UserServiceTest {
         UserDTO userDTO2 = new UserDTO(2L, "user2", "user2@example.com", roles, products, addresses);
 
                 when(userRepository.findAll(any(Pageable.class))).thenReturn(userPage);
-        when(modelMapper.map(user1, UserDTO.class)).thenReturn(userDTO1);
-        when(modelMapper.map(user2, UserDTO.class)).thenReturn(userDTO2);
+        when(userMapper.toDTO(user1)).thenReturn(userDTO1);
+        when(userMapper.toDTO(user2)).thenReturn(userDTO2);
 
                 UserListResponse result = userService.getAllUsers(page, size);
 
@@ -532,59 +567,7 @@ public class UserServiceTest {
         assertEquals(2, result.getUsers().size());
 
                 verify(userRepository).findAll(any(Pageable.class));
-        verify(modelMapper).map(user1, UserDTO.class);
-        verify(modelMapper).map(user2, UserDTO.class);
-    }
-
-    @Test
-    void testExistsByUsernameIgnoreCase_True() {
-                String username = "testuser";
-
-                when(userRepository.existsByUsernameIgnoreCase(username)).thenReturn(true);
-
-                boolean result = userService.existsByUsernameIgnoreCase(username);
-
-                assertTrue(result);
-
-                verify(userRepository).existsByUsernameIgnoreCase(username);
-    }
-
-    @Test
-    void testExistsByUsernameIgnoreCase_False() {
-                String username = "nonexistent";
-
-                when(userRepository.existsByUsernameIgnoreCase(username)).thenReturn(false);
-
-                boolean result = userService.existsByUsernameIgnoreCase(username);
-
-                assertFalse(result);
-
-                verify(userRepository).existsByUsernameIgnoreCase(username);
-    }
-
-    @Test
-    void testExistsByEmailIgnoreCase_True() {
-                String email = "test@example.com";
-
-                when(userRepository.existsByEmailIgnoreCase(email)).thenReturn(true);
-
-                boolean result = userService.existsByEmailIgnoreCase(email);
-
-                assertTrue(result);
-
-                verify(userRepository).existsByEmailIgnoreCase(email);
-    }
-
-    @Test
-    void testExistsByEmailIgnoreCase_False() {
-                String email = "nonexistent@example.com";
-
-                when(userRepository.existsByEmailIgnoreCase(email)).thenReturn(false);
-
-                boolean result = userService.existsByEmailIgnoreCase(email);
-
-                assertFalse(result);
-
-                verify(userRepository).existsByEmailIgnoreCase(email);
+        verify(userMapper).toDTO(user1);
+        verify(userMapper).toDTO(user2);
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package pl.skowrxn.springecommerce.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.skowrxn.springecommerce.entity.User;
+import pl.skowrxn.springecommerce.exception.ResourceConflictException;
+import pl.skowrxn.springecommerce.mapper.UserMapperImpl;
+import pl.skowrxn.springecommerce.repository.UserRepository;
+import pl.skowrxn.springecommerce.util.QueryCountInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({UserServiceImpl.class, UserMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UserSignupConcurrencyTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testSaveUser_IssuesSingleInsert() {
+        QueryCountInspector.reset();
+
+        User savedUser = userService.saveUser(new User("newuser", "new@example.com", "hash"));
+
+        assertNotNull(savedUser.getId());
+        assertEquals(1, QueryCountInspector.getCount());
+    }
+
+    @Test
+    void testSaveUser_ConflictIgnoresCase() {
+        userService.saveUser(new User("Alice", "alice@example.com", "hash"));
+
+        ResourceConflictException usernameConflict = assertThrows(ResourceConflictException.class,
+                () -> userService.saveUser(new User(" alice", "other@example.com", "hash")));
+        ResourceConflictException emailConflict = assertThrows(ResourceConflictException.class,
+                () -> userService.saveUser(new User("bob", "ALICE@example.com", "hash")));
+
+        assertEquals("username", usernameConflict.getFieldName());
+        assertEquals("email", emailConflict.getFieldName());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    void testSaveUser_ParallelSignupsCreateSingleAccount() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                String username = i % 2 == 0 ? "racer" : "RACER";
+                String email = "racer" + i + "@example.com";
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        userService.saveUser(new User(username, email, "hash"));
+                        return true;
+                    } catch (ResourceConflictException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    created++;
+                }
+            }
+
+            assertEquals(1, created);
+            assertEquals(1, userRepository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
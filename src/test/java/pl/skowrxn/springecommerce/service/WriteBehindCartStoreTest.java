@@ -0,0 +1,285 @@
+package pl.skowrxn.springecommerce.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.skowrxn.springecommerce.dto.CartItemDTO;
+import pl.skowrxn.springecommerce.dto.response.CartContentResponse;
+import pl.skowrxn.springecommerce.entity.*;
+import pl.skowrxn.springecommerce.mapper.CartItemMapper;
+import pl.skowrxn.springecommerce.mapper.CartItemMapperImpl;
+import pl.skowrxn.springecommerce.mapper.ProductMapper;
+import pl.skowrxn.springecommerce.mapper.ProductMapperImpl;
+import pl.skowrxn.springecommerce.repository.*;
+import pl.skowrxn.springecommerce.util.AuthUtil;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({CartServiceImpl.class, StockReservationServiceImpl.class, CartItemMapperImpl.class, ProductMapperImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class WriteBehindCartStoreTest {
+
+    @Autowired
+    private CartServiceImpl jpaCartService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CartItemMapper cartItemMapper;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @MockitoBean
+    private AuthUtil authUtil;
+
+    @TempDir
+    private Path logDirectory;
+
+    private User buyer;
+
+    @BeforeEach
+    void setUp() {
+        this.buyer = userRepository.save(new User("buyer", "buyer@example.com", "hash"));
+        when(authUtil.getLoggedInUserId()).thenReturn(this.buyer.getId());
+        when(authUtil.getLoggedInUser()).thenReturn(this.buyer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testFlush_CoalescesChangesIntoOneWrite() {
+        Product product = this.createProduct(10);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindCartStore cartStore = this.createStore(meterRegistry);
+        WriteBehindCartService cartService = this.createService(cartStore);
+
+        cartService.addToCart(product.getId(), 1);
+        CartItemDTO cartItem = cartService.addToCart(product.getId(), 2);
+        cartService.updateCartItemQuantity(cartItem.getId(), 4);
+
+        // Stock is reserved right away, the cart row waits for the flush
+        assertEquals(6, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(0, cartItemRepository.count());
+        CartContentResponse content = cartService.getCartContent();
+        assertEquals(1, content.getQuantity());
+        assertEquals(40.0, content.getTotalPrice());
+
+        cartStore.flushAll();
+
+        // The item got its database id, which clients must see
+        assertNotEquals(content.getVersion(), cartService.getCartVersion());
+        List<CartItem> cartItems = cartItemRepository.findAll();
+        assertEquals(1, cartItems.size());
+        assertEquals(4, cartItems.get(0).getQuantity());
+        assertEquals(40.0, cartRepository.findById(content.getId()).orElseThrow().getTotalPrice());
+        assertEquals(1.0, meterRegistry.get("cart.writebehind.written").counter().count());
+        assertEquals(cartItems.get(0).getId(), cartService.getCartContent().getCartItems().get(0).getId());
+    }
+
+    @Test
+    void testFlush_WritesRemovals() {
+        Product product = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        WriteBehindCartService cartService = this.createService(cartStore);
+        cartService.addToCart(product.getId(), 3);
+        cartStore.flushAll();
+
+        cartService.removeFromCart(cartItemRepository.findAll().get(0).getId());
+        cartStore.flushAll();
+
+        assertEquals(0, cartItemRepository.count());
+        assertEquals(10, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(0, cartService.getTotalQuantity());
+    }
+
+    @Test
+    void testUpdate_FindsWrittenItemAfterReload() {
+        Product product = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        WriteBehindCartService cartService = this.createService(cartStore);
+        cartService.addToCart(product.getId(), 3);
+        cartStore.evict(this.buyer.getId());
+        Long cartItemId = cartItemRepository.findAll().get(0).getId();
+
+        CartItemDTO cartItem = cartService.updateCartItemQuantity(cartItemId, 1);
+        cartStore.flushAll();
+
+        assertEquals(cartItemId, cartItem.getId());
+        assertEquals(1, cartItemRepository.findById(cartItemId).orElseThrow().getQuantity());
+        assertEquals(9, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+    }
+
+    @Test
+    void testFlush_KeepsEditedLineRemovedBySweeper() {
+        Product product = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        WriteBehindCartService cartService = this.createService(cartStore);
+        cartService.addToCart(product.getId(), 3);
+        cartStore.flushAll();
+
+        cartService.updateCartItemQuantity(cartItemRepository.findAll().get(0).getId(), 5);
+        // The row still carries the reservation of the first write, which the sweeper sees as expired
+        stockReservationService.releaseExpired(Instant.now().plus(Duration.ofDays(1)), 100);
+        assertEquals(8, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        cartStore.flushAll();
+
+        List<CartItem> cartItems = cartItemRepository.findAll();
+        assertEquals(1, cartItems.size());
+        assertEquals(5, cartItems.get(0).getQuantity());
+        assertEquals(5, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(cartItems.get(0).getId(), cartService.getCartContent().getCartItems().get(0).getId());
+    }
+
+    @Test
+    void testFlush_SettlesDecreaseOfLineRemovedBySweeper() {
+        Product product = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        WriteBehindCartService cartService = this.createService(cartStore);
+        cartService.addToCart(product.getId(), 3);
+        cartStore.flushAll();
+
+        cartService.updateCartItemQuantity(cartItemRepository.findAll().get(0).getId(), 1);
+        stockReservationService.releaseExpired(Instant.now().plus(Duration.ofDays(1)), 100);
+        cartStore.flushAll();
+
+        assertEquals(1, cartItemRepository.findAll().get(0).getQuantity());
+        assertEquals(9, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+    }
+
+    @Test
+    void testFlush_DropsLineRemovedBySweeperWhenStockRanOut() {
+        Product product = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        WriteBehindCartService cartService = this.createService(cartStore);
+        cartService.addToCart(product.getId(), 3);
+        cartStore.flushAll();
+
+        cartService.updateCartItemQuantity(cartItemRepository.findAll().get(0).getId(), 5);
+        stockReservationService.releaseExpired(Instant.now().plus(Duration.ofDays(1)), 100);
+        // Another buyer takes the stock the sweeper gave back
+        stockReservationService.reserve(productRepository.findById(product.getId()).orElseThrow(), 7);
+        cartStore.flushAll();
+
+        // Nothing is left in the cart, so only the other buyer holds stock
+        assertEquals(0, cartItemRepository.count());
+        assertEquals(3, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(0, cartService.getTotalQuantity());
+    }
+
+    @Test
+    void testDiscard_SettlesChangesMadeAfterCheckoutRead() {
+        Product ordered = this.createProduct(10);
+        Product added = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        WriteBehindCartService cartService = this.createService(cartStore);
+        cartService.addToCart(ordered.getId(), 3);
+        cartStore.flushAll();
+        String revision = cartService.getCartVersion();
+
+        // Edits racing the checkout, which orders the written rows and deletes them
+        cartService.updateCartItemQuantity(cartItemRepository.findAll().get(0).getId(), 4);
+        cartService.addToCart(added.getId(), 2);
+        transactionTemplate().executeWithoutResult(status ->
+                cartItemRepository.deleteAllByCartId(cartRepository.findIdByUserId(this.buyer.getId()).orElseThrow()));
+        cartService.discardCart();
+        cartStore.flushAll();
+
+        assertEquals(7, productRepository.findStockQuantityById(ordered.getId()).orElseThrow());
+        assertEquals(10, productRepository.findStockQuantityById(added.getId()).orElseThrow());
+        assertEquals(0, cartItemRepository.count());
+        // Nothing was written, the cart reloads as checkout left it
+        assertEquals(revision.substring(0, revision.lastIndexOf('.')) + ".0", cartService.getCartVersion());
+        assertEquals(0, cartService.getTotalQuantity());
+    }
+
+    @Test
+    void testRecover_WritesChangesLoggedBeforeRestart() {
+        Product product = this.createProduct(10);
+        WriteBehindCartStore cartStore = this.createStore(new SimpleMeterRegistry());
+        this.createService(cartStore).addToCart(product.getId(), 2);
+
+        // A new store on the same log stands in for the node after a crash, the first one is never flushed
+        WriteBehindCartStore restartedStore = this.createStore(new SimpleMeterRegistry());
+        restartedStore.recover();
+
+        List<CartItem> cartItems = cartItemRepository.findAll();
+        assertEquals(1, cartItems.size());
+        assertEquals(2, cartItems.get(0).getQuantity());
+        assertEquals(8, productRepository.findStockQuantityById(product.getId()).orElseThrow());
+        assertEquals(20.0, this.createService(restartedStore).getTotalPrice());
+    }
+
+    private WriteBehindCartStore createStore(SimpleMeterRegistry meterRegistry) {
+        return new WriteBehindCartStore(cartItemRepository, cartRepository, productRepository, stockReservationService,
+                transactionManager, meterRegistry, this.logDirectory.resolve("cart.log").toString(), false, 30);
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    private WriteBehindCartService createService(WriteBehindCartStore cartStore) {
+        return new WriteBehindCartService(jpaCartService, cartStore, cartRepository, cartItemRepository,
+                productRepository, stockReservationService, authUtil, cartItemMapper, productMapper);
+    }
+
+    private Product createProduct(int stock) {
+        User seller = userRepository.findByUsername("seller")
+                .orElseGet(() -> userRepository.save(new User("seller", "seller@example.com", "hash")));
+        Category category = categoryRepository.findAll().stream().findFirst()
+                .orElseGet(() -> categoryRepository.save(new Category(null, "category")));
+        Product product = new Product();
+        product.setName("product");
+        product.setStockQuantity(stock);
+        product.setPrice(10.0);
+        product.setRegularPrice(10.0);
+        product.setCategory(category);
+        product.setUser(seller);
+        return productRepository.save(product);
+    }
+
+}